@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are
+ * reported alongside the timings, and writes the results as JSON so
+ * they can be kept as a baseline and compared with later runs.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class BenchmarkRunner
+{
+    /** The default results file. */
+    private static final String DEFAULT_RESULTS = "jmh-result.json"; //$NON-NLS-1$
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private BenchmarkRunner()
+    {
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args [0] the benchmarks to run as a regular expression (optional, defaults to all),
+     *             [1] the results file (optional)
+     *
+     * @throws RunnerException error running the benchmarks
+     */
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        String include = (args.length > 0) ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*"; //$NON-NLS-1$
+        String results = (args.length > 1) ? args[1] : DEFAULT_RESULTS;
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results)
+                .build();
+        new Runner(options).run();
+    }
+}
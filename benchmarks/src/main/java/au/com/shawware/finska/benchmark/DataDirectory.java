@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Creates and removes data directories for the {@link DataGenerator}
+ * to write to.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class DataDirectory
+{
+    /** The store sub-directories expected by the repository. */
+    private static final String[] STORE_DIRS = { "player", "competition", "round", "match" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private DataDirectory()
+    {
+    }
+
+    /**
+     * Creates an empty temporary data directory.
+     *
+     * @return The root of the data directory.
+     *
+     * @throws IOException error creating the directories
+     */
+    public static Path create()
+        throws IOException
+    {
+        return prepare(Files.createTempDirectory("finska-benchmark")); //$NON-NLS-1$
+    }
+
+    /**
+     * Creates the given data directory's store directories, and the
+     * data directory itself, if they do not already exist.
+     *
+     * @param root the root of the data directory
+     *
+     * @return The root of the data directory.
+     *
+     * @throws IOException error creating the directories
+     */
+    public static Path prepare(Path root)
+        throws IOException
+    {
+        for (String dir : STORE_DIRS)
+        {
+            Files.createDirectories(root.resolve(dir));
+        }
+        return root;
+    }
+
+    /**
+     * Removes the given data directory and everything in it.
+     *
+     * @param root the root of the data directory
+     *
+     * @throws IOException error removing the directory
+     */
+    public static void delete(Path root)
+        throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(root))
+        {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator)
+            {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.finska.persistence.EntityRepository;
+import au.com.shawware.finska.persistence.IEntityRepository;
+import au.com.shawware.util.persistence.PersistenceException;
+import au.com.shawware.util.persistence.PersistenceFactory;
+
+/**
+ * Generates realistic Finska data of a given size for benchmarks and soak
+ * tests, either in memory or written through a repository.
+ *
+ * Every player enters every season (competition) and attends each round
+ * at their own rate, so attendance varies from round to round. Stronger
+ * players win more often, a match's winner often wins the next match too,
+ * a match occasionally has two winners and some wins are fast.
+ *
+ * The same seed always produces the same data. Seasons are generated in
+ * parallel but stored in order, and only a few seasons are held at once,
+ * so large data sets can be streamed to a repository.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class DataGenerator
+{
+    /** The start date of the first season. */
+    private static final LocalDate START_DATE = LocalDate.of(2010, 1, 2);
+
+    /** The random seed. */
+    private final long mSeed;
+    /** The number of seasons. */
+    private final int mSeasons;
+    /** The number of players. */
+    private final int mPlayers;
+    /** The number of rounds in each season. */
+    private final int mRounds;
+    /** The number of matches in each round. */
+    private final int mMatchesPerRound;
+    /** The executor for parallel generation (null for serial generation). */
+    private Executor mExecutor;
+
+    /**
+     * A generated season whose rounds and matches are not yet stored.
+     */
+    private static final class Season
+    {
+        /** The season's competition. */
+        private final FinskaCompetition mCompetition;
+        /** The season's rounds (without their matches). */
+        private final List<FinskaRound> mRounds;
+        /** The matches of each round. */
+        private final List<List<FinskaMatch>> mMatches;
+
+        /**
+         * Constructs a new season.
+         *
+         * @param competition the season's competition
+         * @param rounds the number of rounds
+         */
+        private Season(FinskaCompetition competition, int rounds)
+        {
+            mCompetition = competition;
+            mRounds      = new ArrayList<>(rounds);
+            mMatches     = new ArrayList<>(rounds);
+        }
+    }
+
+    /**
+     * Stores each generated season.
+     */
+    @FunctionalInterface
+    private interface ISeasonWriter
+    {
+        /**
+         * Stores the given season.
+         *
+         * @param season the season to store
+         *
+         * @throws PersistenceException error storing the season
+         */
+        void write(Season season)
+            throws PersistenceException;
+    }
+
+    /**
+     * Constructs a new generator that uses the common fork/join pool.
+     *
+     * @param seed the random seed
+     * @param seasons the number of seasons
+     * @param players the number of players
+     * @param rounds the number of rounds in each season
+     * @param matchesPerRound the number of matches in each round
+     *
+     * @throws IllegalArgumentException invalid sizes
+     */
+    public DataGenerator(long seed, int seasons, int players, int rounds, int matchesPerRound)
+        throws IllegalArgumentException
+    {
+        if ((seasons < 1) || (players < 2) || (rounds < 1) || (matchesPerRound < 1))
+        {
+            throw new IllegalArgumentException("Invalid data size: " + seasons + ", " + players + ", " + rounds + ", " + matchesPerRound); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        }
+        mSeed            = seed;
+        mSeasons         = seasons;
+        mPlayers         = players;
+        mRounds          = rounds;
+        mMatchesPerRound = matchesPerRound;
+        mExecutor        = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Specifies an executor to generate seasons in parallel.
+     * A null executor generates the seasons serially.
+     * The data generated is the same either way.
+     *
+     * @param executor the executor to use (may be null)
+     */
+    public void setExecutor(Executor executor)
+    {
+        mExecutor = executor;
+    }
+
+    /**
+     * Generates the data in memory. The entities are linked and given
+     * the same IDs an empty repository would give them.
+     *
+     * @return The competitions, keyed by ID.
+     */
+    public Map<Integer, FinskaCompetition> generate()
+    {
+        List<Player> players = new ArrayList<>(mPlayers);
+        for (int p = 1; p <= mPlayers; p++)
+        {
+            players.add(new Player(p, playerName(p)));
+        }
+        Map<Integer, FinskaCompetition> competitions = new HashMap<>();
+        int[] nextIDs = { 1, 1 };
+        try
+        {
+            generate(players, season -> {
+                FinskaCompetition competition = season.mCompetition;
+                competition.setId(competitions.size() + 1);
+                for (int r = 0; r < season.mRounds.size(); r++)
+                {
+                    FinskaRound round = season.mRounds.get(r);
+                    for (FinskaMatch match : season.mMatches.get(r))
+                    {
+                        match.setId(nextIDs[1]++);
+                        round.addMatch(match);
+                    }
+                    round.setId(nextIDs[0]++);
+                    competition.addRound(round);
+                }
+                competitions.put(competition.getId(), competition);
+            });
+        }
+        catch (PersistenceException e)
+        {
+            throw new IllegalStateException("Unexpected error generating in memory", e); //$NON-NLS-1$
+        }
+        return competitions;
+    }
+
+    /**
+     * Generates the data and writes it through the given repository,
+     * which is expected to be empty. The seasons are written as they are
+     * generated, so they are not all held in memory.
+     *
+     * @param repository the repository to write to
+     *
+     * @throws PersistenceException error writing the data
+     */
+    public void generate(IEntityRepository repository)
+        throws PersistenceException
+    {
+        List<Player> players = new ArrayList<>(mPlayers);
+        for (int p = 1; p <= mPlayers; p++)
+        {
+            players.add(repository.createPlayer(new Player(playerName(p))));
+        }
+        generate(players, season -> {
+            FinskaCompetition competition = repository.createCompetition(season.mCompetition);
+            for (int r = 0; r < season.mRounds.size(); r++)
+            {
+                repository.createRound(competition, season.mRounds.get(r), season.mMatches.get(r));
+            }
+        });
+    }
+
+    /**
+     * Generates the data and writes it to the stores under the given root.
+     * The store directories are expected to exist and be empty.
+     *
+     * @param factory the factory for the stores to write to
+     *
+     * @throws PersistenceException error writing the data
+     */
+    public void generate(PersistenceFactory factory)
+        throws PersistenceException
+    {
+        generate(EntityRepository.getRepository(factory));
+    }
+
+    /**
+     * Generates the seasons and passes them to the given writer in order.
+     * While one season is being written, the following seasons are being
+     * generated, up to a few per processor.
+     *
+     * @param players the players (with their IDs)
+     * @param writer the writer for each season
+     *
+     * @throws PersistenceException error writing a season
+     */
+    private void generate(List<Player> players, ISeasonWriter writer)
+        throws PersistenceException
+    {
+        // Draw everything that spans seasons up front so each season
+        // depends only on its own seed, whichever thread generates it.
+        SplittableRandom random = new SplittableRandom(mSeed);
+        double[] attendance = new double[mPlayers];
+        int[] strength = new int[mPlayers];
+        for (int p = 0; p < mPlayers; p++)
+        {
+            attendance[p] = 0.3 + random.nextDouble() * 0.65;
+            strength[p]   = random.nextInt(100);
+        }
+        long[] seeds = new long[mSeasons];
+        for (int s = 0; s < mSeasons; s++)
+        {
+            seeds[s] = random.nextLong();
+        }
+
+        Executor executor = mExecutor;
+        if (executor == null)
+        {
+            for (int s = 1; s <= mSeasons; s++)
+            {
+                writer.write(generateSeason(s, seeds[s - 1], players, attendance, strength));
+            }
+            return;
+        }
+        int lookAhead = 2 * Runtime.getRuntime().availableProcessors();
+        Deque<CompletableFuture<Season>> pending = new ArrayDeque<>(lookAhead);
+        int next = 1;
+        try
+        {
+            while ((next <= mSeasons) || !pending.isEmpty())
+            {
+                while ((next <= mSeasons) && (pending.size() < lookAhead))
+                {
+                    int season = next++;
+                    pending.add(CompletableFuture.supplyAsync(
+                            () -> generateSeason(season, seeds[season - 1], players, attendance, strength), executor));
+                }
+                writer.write(pending.remove().join());
+            }
+        }
+        finally
+        {
+            pending.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Generates a single season.
+     *
+     * @param number the season's number
+     * @param seed the season's random seed
+     * @param players the players
+     * @param attendance the chance of each player attending a round
+     * @param strength each player's strength (higher wins more often)
+     *
+     * @return The season.
+     */
+    private Season generateSeason(int number, long seed, List<Player> players, double[] attendance, int[] strength)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate startDate = START_DATE.plusYears(number - 1);
+        FinskaCompetition competition = new FinskaCompetition("Season " + number, startDate); //$NON-NLS-1$
+        players.forEach(competition::addEntrant);
+        Season season = new Season(competition, mRounds);
+
+        int[] attendees = new int[mPlayers];
+        for (int r = 1; r <= mRounds; r++)
+        {
+            LocalDate date = startDate.plusWeeks(r - 1);
+            FinskaRound round = new FinskaRound(r, date);
+            int count = 0;
+            for (int p = 0; p < mPlayers; p++)
+            {
+                if (random.nextDouble() < attendance[p])
+                {
+                    attendees[count++] = p;
+                }
+            }
+            if (count < 2)
+            {
+                // Too few for a match, so fall back to the first two.
+                attendees[0] = 0;
+                attendees[1] = 1;
+                count = 2;
+            }
+            for (int a = 0; a < count; a++)
+            {
+                round.addPlayer(players.get(attendees[a]));
+            }
+
+            List<FinskaMatch> matches = new ArrayList<>(mMatchesPerRound);
+            int lastWinner = -1;
+            for (int m = 1; m <= mMatchesPerRound; m++)
+            {
+                FinskaMatch match = new FinskaMatch(m, date);
+                int winner;
+                if ((lastWinner >= 0) && (random.nextInt(100) < 35))
+                {
+                    winner = lastWinner;
+                }
+                else
+                {
+                    // The stronger of two random attendees.
+                    int first  = attendees[random.nextInt(count)];
+                    int second = attendees[random.nextInt(count)];
+                    winner = (strength[first] >= strength[second]) ? first : second;
+                }
+                match.addWinner(players.get(winner));
+                if (random.nextInt(10) == 0)
+                {
+                    int partner = attendees[random.nextInt(count)];
+                    if (partner != winner)
+                    {
+                        match.addWinner(players.get(partner));
+                    }
+                }
+                match.setFastWin(random.nextInt(5) == 0);
+                matches.add(match);
+                lastWinner = winner;
+            }
+            season.mRounds.add(round);
+            season.mMatches.add(matches);
+        }
+        return season;
+    }
+
+    /**
+     * @param number the player's number
+     *
+     * @return The name of the given player.
+     */
+    private static String playerName(int number)
+    {
+        return "Player " + number; //$NON-NLS-1$
+    }
+
+    /**
+     * Generates data into the given directory, creating the store
+     * directories as required, eg. for a soak test.
+     *
+     * @param args [0] the data directory,
+     *             [1] the number of seasons,
+     *             [2] the number of players,
+     *             [3] the number of rounds in each season,
+     *             [4] the number of matches in each round,
+     *             [5] the random seed (optional, defaults to 2018)
+     *
+     * @throws IOException error creating the store directories
+     * @throws PersistenceException error writing the data
+     */
+    @SuppressWarnings("nls")
+    public static void main(String[] args)
+        throws IOException, PersistenceException
+    {
+        if ((args.length < 5) || (args.length > 6))
+        {
+            System.err.println("Usage: DataGenerator <directory> <seasons> <players> <rounds> <matches per round> [<seed>]");
+            System.exit(1);
+        }
+        long seed = (args.length > 5) ? Long.parseLong(args[5]) : 2018L;
+        DataGenerator generator = new DataGenerator(seed, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        generator.generate(PersistenceFactory.getFactory(DataDirectory.prepare(Paths.get(args[0])).toString()));
+    }
+}
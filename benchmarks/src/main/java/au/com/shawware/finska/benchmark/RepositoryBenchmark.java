@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.persistence.CachedEntityRepository;
+import au.com.shawware.finska.persistence.EntityRepository;
+import au.com.shawware.finska.persistence.IEntityRepository;
+import au.com.shawware.util.persistence.PersistenceException;
+import au.com.shawware.util.persistence.PersistenceFactory;
+
+/**
+ * Measures the repository's load and write paths over a data directory
+ * of various sizes, created in a temporary directory for each trial.
+ *
+ * The "cold" benchmarks read through the file-based repository, which
+ * loads from the stores on every call, using the given loading strategy.
+ * The "warm" benchmarks read through the cached repository after it has
+ * loaded once. The write benchmarks each write a match through the
+ * file-based repository and read its competition back. Creating a match
+ * grows the data, so it is measured one call at a time.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark
+{
+    /** Load from the stores one after the other. */
+    private static final String SERIAL = "serial"; //$NON-NLS-1$
+    /** Load from the stores in parallel. */
+    private static final String PARALLEL = "parallel"; //$NON-NLS-1$
+    /** Load from the binary snapshot when it is current. */
+    private static final String SNAPSHOT = "snapshot"; //$NON-NLS-1$
+    /** Load the competitions up front and their rounds on demand. */
+    private static final String LAZY = "lazy"; //$NON-NLS-1$
+
+    /*
+     * JMH names each parameter after its field and sets it directly,
+     * hence these fields are public and named for the command line.
+     */
+    /** The number of seasons (competitions). */
+    @Param({ "1", "10" })
+    public int seasons;
+    /** The number of players. */
+    @Param({ "20", "200" })
+    public int players;
+    /** The number of rounds in each season. */
+    @Param({ "20", "50" })
+    public int rounds;
+    /** The loading strategy of the file-based repository. */
+    @Param({ SERIAL, PARALLEL, SNAPSHOT, LAZY })
+    public String loading;
+
+    /** The root of the data directory. */
+    private Path mRoot;
+    /** The executor for parallel loading (null if not used). */
+    private ExecutorService mExecutor;
+    /** The file-based repository. */
+    private EntityRepository mRepository;
+    /** The cached repository. */
+    private IEntityRepository mCachedRepository;
+    /** The ID of the latest competition. */
+    private int mCompetitionID;
+    /** The latest competition, as loaded at the start of the trial. */
+    private FinskaCompetition mCompetition;
+    /** The latest round of the latest competition. */
+    private FinskaRound mRound;
+    /** The first match of the latest round. */
+    private FinskaMatch mMatch;
+
+    /**
+     * Creates and loads the data directory.
+     *
+     * @throws IOException error creating the data directory
+     * @throws PersistenceException error creating or loading the data
+     */
+    @Setup
+    public void setup()
+        throws IOException, PersistenceException
+    {
+        mRoot = DataDirectory.create();
+        PersistenceFactory factory = PersistenceFactory.getFactory(mRoot.toString());
+        new DataGenerator(2018L, seasons, players, rounds, 4).generate(factory);
+        mRepository = EntityRepository.getRepository(factory);
+        switch (loading)
+        {
+            case SERIAL:
+                break;
+            case PARALLEL:
+                mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                mRepository.setExecutor(mExecutor);
+                break;
+            case SNAPSHOT:
+                mRepository.setSnapshotEnabled(true);
+                break;
+            case LAZY:
+                mRepository.setLazyLoading(true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown loading strategy: " + loading); //$NON-NLS-1$
+        }
+        mCachedRepository = CachedEntityRepository.getRepository(factory);
+        mCachedRepository.getCompetitions();
+
+        mCompetitionID = seasons;
+        mCompetition   = mRepository.getCompetition(mCompetitionID);
+        mRound         = mCompetition.getRound(rounds);
+        mMatch         = mRound.getMatch(1);
+    }
+
+    /**
+     * Removes the data directory.
+     *
+     * @throws IOException error removing the data directory
+     */
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        if (mExecutor != null)
+        {
+            mExecutor.shutdown();
+        }
+        DataDirectory.delete(mRoot);
+    }
+
+    /**
+     * @return All the competitions, loaded from the stores.
+     *
+     * @throws PersistenceException error loading the data
+     */
+    @Benchmark
+    public Map<Integer, FinskaCompetition> getCompetitionsCold()
+        throws PersistenceException
+    {
+        return mRepository.getCompetitions();
+    }
+
+    /**
+     * @return All the competitions, from the cache.
+     *
+     * @throws PersistenceException error loading the data
+     */
+    @Benchmark
+    public Map<Integer, FinskaCompetition> getCompetitionsWarm()
+        throws PersistenceException
+    {
+        return mCachedRepository.getCompetitions();
+    }
+
+    /**
+     * @return The latest competition, loaded from the stores.
+     *
+     * @throws PersistenceException error loading the data
+     */
+    @Benchmark
+    public FinskaCompetition getCompetitionCold()
+        throws PersistenceException
+    {
+        return mRepository.getCompetition(mCompetitionID);
+    }
+
+    /**
+     * @return The latest competition, from the cache.
+     *
+     * @throws PersistenceException error loading the data
+     */
+    @Benchmark
+    public FinskaCompetition getCompetitionWarm()
+        throws PersistenceException
+    {
+        return mCachedRepository.getCompetition(mCompetitionID);
+    }
+
+    /**
+     * Adds a match to the latest round and reads the competition back.
+     *
+     * @return The competition, as re-loaded.
+     *
+     * @throws PersistenceException error writing or loading the data
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public FinskaCompetition createMatch()
+        throws PersistenceException
+    {
+        FinskaMatch match = new FinskaMatch(mRound.getMatches().size() + 1, mRound.getRoundDate());
+        match.addWinner(mRound.getPlayers().get(0));
+        mRepository.createMatch(mCompetition, mRound, match);
+        return mRepository.getCompetition(mCompetitionID);
+    }
+
+    /**
+     * Changes a match in the latest round and reads the competition back.
+     *
+     * @return The competition, as re-loaded.
+     *
+     * @throws PersistenceException error writing or loading the data
+     */
+    @Benchmark
+    public FinskaCompetition updateMatch()
+        throws PersistenceException
+    {
+        mMatch.setFastWin(!mMatch.isFastWin());
+        mRepository.updateMatch(mCompetition, mRound, mMatch);
+        return mRepository.getCompetition(mCompetitionID);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import au.com.shawware.compadmin.scoring.EntrantHistory;
+import au.com.shawware.compadmin.scoring.EntrantResult;
+import au.com.shawware.compadmin.scoring.LeaderBoardGenerator;
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.scoring.CompetitionAnalyser;
+import au.com.shawware.finska.scoring.ResultItem;
+import au.com.shawware.finska.scoring.ScoringSystem;
+
+/**
+ * Measures the scoring and leader board hot paths over generated
+ * competitions of various sizes.
+ *
+ * The "cold" benchmarks build a new analyser each time, as happens after
+ * every change to a competition. The "warm" benchmark re-uses an analyser
+ * whose per-round results have already been compiled, so it measures the
+ * sorting and ranking alone.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark
+{
+    /*
+     * JMH names each parameter after its field and sets it directly,
+     * hence these fields are public and named for the command line.
+     */
+    /** The number of players in the competition. */
+    @Param({ "16", "128", "1024" })
+    public int players;
+    /** The number of rounds in the competition. */
+    @Param({ "20", "200" })
+    public int rounds;
+    /** The number of matches in each round. */
+    @Param({ "2", "6" })
+    public int matchesPerRound;
+
+    /** The competition to score. */
+    private FinskaCompetition mCompetition;
+    /** The scoring system to use (which scores every kind of result). */
+    private ScoringSystem mScoringSystem;
+    /** An analyser that has already compiled its results. */
+    private CompetitionAnalyser mWarmAnalyser;
+
+    /**
+     * Builds the competition and the warm analyser.
+     */
+    @Setup
+    public void setup()
+    {
+        mCompetition   = new DataGenerator(2018L, 1, players, rounds, matchesPerRound).generate().get(1);
+        mScoringSystem = new ScoringSystem(1, 1, 1, 1, 0);
+        mWarmAnalyser  = new CompetitionAnalyser(mCompetition, mScoringSystem);
+        mWarmAnalyser.compileCurrentResults();
+    }
+
+    /**
+     * @return The current results, compiled from scratch.
+     */
+    @Benchmark
+    public List<EntrantResult> compileCurrentResults()
+    {
+        return new CompetitionAnalyser(mCompetition, mScoringSystem).compileCurrentResults();
+    }
+
+    /**
+     * @return The results of each round, compiled from scratch.
+     */
+    @Benchmark
+    public List<List<EntrantResult>> compileRoundResults()
+    {
+        return new CompetitionAnalyser(mCompetition, mScoringSystem).compileRoundResults();
+    }
+
+    /**
+     * @return The leader board, compiled from scratch.
+     */
+    @Benchmark
+    public List<EntrantResult> generateLeaderBoardCold()
+    {
+        return LeaderBoardGenerator.generateLeaderBoard(new CompetitionAnalyser(mCompetition, mScoringSystem));
+    }
+
+    /**
+     * @return The leader board, from results that have already been compiled.
+     */
+    @Benchmark
+    public List<EntrantResult> generateLeaderBoardWarm()
+    {
+        return LeaderBoardGenerator.generateLeaderBoard(mWarmAnalyser);
+    }
+
+    /**
+     * @return The rank history, compiled from scratch.
+     */
+    @Benchmark
+    public List<EntrantHistory> generateRankHistory()
+    {
+        return LeaderBoardGenerator.generateRankHistory(new CompetitionAnalyser(mCompetition, mScoringSystem), rounds);
+    }
+
+    /**
+     * @return The points history, compiled from scratch.
+     */
+    @Benchmark
+    public List<EntrantHistory> generateResultHistory()
+    {
+        return LeaderBoardGenerator.generateResultHistory(new CompetitionAnalyser(mCompetition, mScoringSystem),
+                rounds, ResultItem.POINTS.toString());
+    }
+}
@@ -13,6 +13,8 @@ import java.util.List;
 import java.util.Map;
 
 import au.com.shawware.compadmin.entity.Entrant;
+import au.com.shawware.compadmin.metrics.Metrics;
+import au.com.shawware.compadmin.metrics.Operation;
 import au.com.shawware.compadmin.scoring.EntrantResult;
 import au.com.shawware.compadmin.scoring.ResultSpec;
 import au.com.shawware.util.html.HtmlGenerator;
@@ -44,15 +46,17 @@ public class HtmlConverter implements IConverter
     public void convertOverallResults(Map<Integer, ? extends Entrant> entrants, List<EntrantResult> results, Writer output)
         throws IOException
     {
+        long start = Metrics.start();
         HtmlGenerator generator = new HtmlGenerator(output, CSS_CLASS_PREFIX, mCssClassPrefix);
         generateHtml(entrants, results, generator, true);
-
+        Metrics.record(Operation.HTML_OVERALL_RESULTS, Metrics.NO_COMPETITION, start);
     }
 
     @Override
     public void convertRoundResults(Map<Integer, ? extends Entrant> entrants, List<List<EntrantResult>> results, Writer output)
             throws IOException
     {
+        long start = Metrics.start();
         HtmlGenerator generator = new HtmlGenerator(output, CSS_CLASS_PREFIX, mCssClassPrefix);
         for (List<EntrantResult> result : results)
         {
@@ -60,6 +64,7 @@ public class HtmlConverter implements IConverter
             generator.openTag("p");
             generator.closeTag();
         }
+        Metrics.record(Operation.HTML_ROUND_RESULTS, Metrics.NO_COMPETITION, start);
     }
 
     /**
@@ -8,13 +8,14 @@
 package au.com.shawware.compadmin.entity;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -29,6 +30,11 @@ import au.com.shawware.util.persistence.AbstractEntity;
 /**
  * Models a competition.
  * 
+ * The sorted and indexed views of the entrants and rounds are built on
+ * first use and kept until a change discards them. They are built while
+ * holding this competition's lock, as are the changes, so a view built
+ * from the old entrants or rounds is never kept after a change.
+ * 
  * @param <EntrantType> the type of entrants we support
  * @param <RoundType> the type of rounds we support
  * @param <MatchType> the type of matches we support
@@ -47,6 +53,17 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
     private final Map<Integer, RoundType> mRounds;
     /** The set of round IDs. */
     private final Set<Integer> mRoundIds;
+    /** Adds the rounds when they are first needed (null once they have been). */
+    private Runnable mRoundLoader;
+    /** The entrants ordered by name (null until needed). */
+    private volatile List<EntrantType> mSortedEntrants;
+    /** The rounds ordered by round number (null until needed). */
+    private volatile List<RoundType> mSortedRounds;
+    /** The rounds by round number (null until needed). */
+    private volatile Map<Integer, RoundType> mRoundsByNumber;
+
+    /** Orders entrants by name. */
+    private final Comparator<EntrantType> mEntrantOrder = (e1, e2) -> e1.getKey().compareTo(e2.getKey());
 
     /**
      * Constructs a new, identified competition.
@@ -60,11 +77,15 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
                        @JsonProperty("startDate") LocalDate startDate)
     {
         super(id, name);
-        mStartDate  = startDate;
-        mEntrants   = new HashMap<>();
-        mEntrantIds = new HashSet<>();
-        mRounds     = new HashMap<>();
-        mRoundIds   = new HashSet<>();
+        mStartDate   = startDate;
+        mEntrants    = new HashMap<>();
+        mEntrantIds  = new HashSet<>();
+        mRounds      = new HashMap<>();
+        mRoundIds    = new HashSet<>();
+        mRoundLoader = null;
+        mSortedEntrants = null;
+        mSortedRounds   = null;
+        mRoundsByNumber = null;
     }
 
     /**
@@ -113,11 +134,12 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
      * 
      * @param entrantIds the new entrant IDs
      */
-    public void setEntrantIds(Set<Integer> entrantIds)
+    public synchronized void setEntrantIds(Set<Integer> entrantIds)
     {
         mEntrants.clear();
         mEntrantIds.clear();
         mEntrantIds.addAll(entrantIds);
+        mSortedEntrants = null;
     }
 
     /**
@@ -137,7 +159,7 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
      * @param entrant the entrant to add
      */
     @SuppressWarnings("boxing")
-    public void addEntrant(EntrantType entrant)
+    public synchronized void addEntrant(EntrantType entrant)
     {
         if (entrant == null) {
             throw new IllegalArgumentException("Null entrant"); //$NON-NLS-1$
@@ -151,20 +173,64 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
         // Duplicate is okay.
         addEntrantId(entrant.getId());
         mEntrants.put(entrant.getId(), entrant);
+        mSortedEntrants = null;
     }
 
     /**
-     * This competition's entrants, ordered by name.
+     * This competition's entrants, ordered by name. The sorted list is
+     * kept between calls and only sorted again if an entrant has since
+     * been renamed out of order.
      * 
-     * @return The entrants.
+     * @return The entrants (unmodifiable).
      */
     @JsonIgnore
     public List<EntrantType> getEntrants()
     {
-        return mEntrants.values()
-                        .stream()
-                        .sorted((p1, p2) -> p1.getKey().compareTo(p2.getKey()))
-                        .collect(Collectors.toList());
+        List<EntrantType> entrants = mSortedEntrants;
+        if ((entrants == null) || !isSorted(entrants, mEntrantOrder))
+        {
+            entrants = sortEntrants();
+        }
+        return entrants;
+    }
+
+    /**
+     * Sorts this competition's entrants by name, unless another caller
+     * already has.
+     * 
+     * @return The entrants (unmodifiable).
+     */
+    private synchronized List<EntrantType> sortEntrants()
+    {
+        List<EntrantType> entrants = mSortedEntrants;
+        if ((entrants == null) || !isSorted(entrants, mEntrantOrder))
+        {
+            List<EntrantType> sorted = new ArrayList<>(mEntrants.values());
+            sorted.sort(mEntrantOrder);
+            entrants = Collections.unmodifiableList(sorted);
+            mSortedEntrants = entrants;
+        }
+        return entrants;
+    }
+
+    /**
+     * Determines whether the given list is in order.
+     * 
+     * @param list the list to check
+     * @param order the expected order
+     * 
+     * @return Whether the list is in order.
+     */
+    private static <T> boolean isSorted(List<T> list, Comparator<T> order)
+    {
+        for (int i = 1; i < list.size(); i++)
+        {
+            if (order.compare(list.get(i - 1), list.get(i)) > 0)
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -188,15 +254,16 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
      * @throws IllegalArgumentException entrant cannot be found
      */
     @JsonIgnore
+    @SuppressWarnings("boxing")
     public EntrantType getEntrant(int id)
         throws IllegalArgumentException
     {
-        Optional<EntrantType> entrant = mEntrants.values().stream().filter(e -> e.getId() == id).findAny();
-        if (!entrant.isPresent())
+        EntrantType entrant = mEntrants.get(id);
+        if (entrant == null)
         {
             throw new IllegalArgumentException("Entrant " + id + " is not present in this competition"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        return entrant.get();
+        return entrant;
     }
 
     /**
@@ -212,14 +279,60 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
         return mEntrantIds.contains(id);
     }
 
+    /**
+     * Specifies how to add this competition's rounds when they are first
+     * needed, ie. when they are retrieved or another round is added.
+     * The loader is expected to add the rounds using {@link #addRound(Round)}
+     * and to signal failure with an unchecked exception.
+     * 
+     * @param loader the round loader
+     */
+    @JsonIgnore
+    public synchronized void setRoundLoader(Runnable loader)
+    {
+        mRoundLoader = loader;
+    }
+
+    /**
+     * @return Whether this competition's rounds are still to be loaded by its round loader.
+     */
+    @JsonIgnore
+    public synchronized boolean hasRoundLoader()
+    {
+        return (mRoundLoader != null);
+    }
+
+    /**
+     * Runs the round loader if this competition's rounds have not been loaded yet.
+     * If the loader fails, it will be run again on the next attempt.
+     */
+    private synchronized void loadRounds()
+    {
+        Runnable loader = mRoundLoader;
+        if (loader != null)
+        {
+            mRoundLoader = null;
+            try
+            {
+                loader.run();
+            }
+            catch (RuntimeException e)
+            {
+                mRoundLoader = loader;
+                throw e;
+            }
+        }
+    }
+
     /**
      * Adds the given round to this competition.
      * 
      * @param round the round to add
      */
     @SuppressWarnings("boxing")
-    public void addRound(RoundType round)
+    public synchronized void addRound(RoundType round)
     {
+        loadRounds();
         if (round == null) {
             throw new IllegalArgumentException("Null round"); //$NON-NLS-1$
         }
@@ -232,6 +345,23 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
         // Duplicate is okay.
         mRoundIds.add(round.getId());
         mRounds.put(round.getId(), round);
+        mSortedRounds   = null;
+        mRoundsByNumber = null;
+    }
+
+    /**
+     * Removes the given round from this competition, eg. when the round
+     * just added could not be stored.
+     * 
+     * @param round the round to remove
+     */
+    @SuppressWarnings("boxing")
+    public synchronized void removeRound(RoundType round)
+    {
+        mRoundIds.remove(round.getId());
+        mRounds.remove(round.getId());
+        mSortedRounds   = null;
+        mRoundsByNumber = null;
     }
 
     /**
@@ -245,16 +375,39 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
 
     /**
      * This competition's rounds, ordered by round number (within this competition).
+     * The sorted list is kept until another round is added.
      * 
-     * @return The rounds in sequential order.
+     * @return The rounds in sequential order (unmodifiable).
      */
     @JsonIgnore
     public List<RoundType> getRounds()
     {
-        return mRounds.values()
-                      .stream()
-                      .sorted((r1, r2) -> r1.getKey().compareTo(r2.getKey()))
-                      .collect(Collectors.toList());
+        loadRounds();
+        List<RoundType> rounds = mSortedRounds;
+        if (rounds == null)
+        {
+            rounds = sortRounds();
+        }
+        return rounds;
+    }
+
+    /**
+     * Sorts this competition's rounds by round number, unless another
+     * caller already has.
+     * 
+     * @return The rounds in sequential order (unmodifiable).
+     */
+    private synchronized List<RoundType> sortRounds()
+    {
+        List<RoundType> rounds = mSortedRounds;
+        if (rounds == null)
+        {
+            List<RoundType> sorted = new ArrayList<>(mRounds.values());
+            sorted.sort((r1, r2) -> r1.getKey().compareTo(r2.getKey()));
+            rounds = Collections.unmodifiableList(sorted);
+            mSortedRounds = rounds;
+        }
+        return rounds;
     }
 
     /**
@@ -271,12 +424,39 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
     public RoundType getRound(int number)
         throws IllegalArgumentException
     {
-        Optional<RoundType> round = mRounds.values().stream().filter(r -> r.getKey().equals(number)).findAny();
-        if (!round.isPresent())
+        loadRounds();
+        Map<Integer, RoundType> rounds = mRoundsByNumber;
+        if (rounds == null)
+        {
+            rounds = indexRounds();
+        }
+        RoundType round = rounds.get(number);
+        if (round == null)
         {
             throw new IllegalArgumentException("Round " + number + " is not present in this competition"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        return round.get();
+        return round;
+    }
+
+    /**
+     * Indexes this competition's rounds by round number, unless another
+     * caller already has.
+     * 
+     * @return The rounds by round number.
+     */
+    private synchronized Map<Integer, RoundType> indexRounds()
+    {
+        Map<Integer, RoundType> rounds = mRoundsByNumber;
+        if (rounds == null)
+        {
+            rounds = new HashMap<>();
+            for (RoundType round : mRounds.values())
+            {
+                rounds.put(round.getKey(), round);
+            }
+            mRoundsByNumber = rounds;
+        }
+        return rounds;
     }
 
     /**
@@ -305,10 +485,12 @@ public abstract class Competition<EntrantType extends Entrant, RoundType extends
      * 
      * @param roundIds the new round IDs
      */
-    public void setRoundIds(Set<Integer> roundIds)
+    public synchronized void setRoundIds(Set<Integer> roundIds)
     {
         mRoundIds.clear();
         mRoundIds.addAll(roundIds);
+        mSortedRounds   = null;
+        mRoundsByNumber = null;
     }
 
     @Override
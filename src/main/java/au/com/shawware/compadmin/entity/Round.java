@@ -8,13 +8,13 @@
 package au.com.shawware.compadmin.entity;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -30,6 +30,11 @@ import au.com.shawware.util.persistence.AbstractEntity;
  * Models a competition round as a set of matches.
  * TODO: consider start date and end date.
  *
+ * The sorted and indexed views of the matches are built on first use and
+ * kept until a change discards them. They are built while holding this
+ * round's lock, as are the changes, so a view built from the old matches
+ * is never kept after a change.
+ *
  * @param <MatchType> the type of matches we support
  *
  * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
@@ -42,6 +47,10 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
     private final Map<Integer, MatchType> mMatches;
     /** The set of match IDs. */
     private final Set<Integer> mMatchIds;
+    /** The matches ordered by match number (null until needed). */
+    private volatile List<MatchType> mSortedMatches;
+    /** The matches by match number (null until needed). */
+    private volatile Map<Integer, MatchType> mMatchesByNumber;
 
     /**
      * Constructs a new round.
@@ -62,6 +71,8 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
         setRoundDate(roundDate);
         mMatches   = new HashMap<>();
         mMatchIds  = new HashSet<>();
+        mSortedMatches   = null;
+        mMatchesByNumber = null;
      }
 
     /**
@@ -108,7 +119,7 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
      * @param match the match to add
      */
     @SuppressWarnings("boxing")
-    public void addMatch(MatchType match)
+    public synchronized void addMatch(MatchType match)
     {
         if (match == null) {
             throw new IllegalArgumentException("Null match"); //$NON-NLS-1$
@@ -122,6 +133,23 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
         // Duplicate is okay.
         mMatchIds.add(match.getId());
         mMatches.put(match.getId(), match);
+        mSortedMatches   = null;
+        mMatchesByNumber = null;
+    }
+
+    /**
+     * Removes the given match from this round, eg. when the match
+     * just added could not be stored.
+     * 
+     * @param match the match to remove
+     */
+    @SuppressWarnings("boxing")
+    public synchronized void removeMatch(MatchType match)
+    {
+        mMatchIds.remove(match.getId());
+        mMatches.remove(match.getId());
+        mSortedMatches   = null;
+        mMatchesByNumber = null;
     }
 
     /**
@@ -135,16 +163,38 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
 
     /**
      * This round's matches, ordered by match number (within this round).
+     * The sorted list is kept until another match is added.
      * 
-     * @return The matches in sequential order.
+     * @return The matches in sequential order (unmodifiable).
      */
     @JsonIgnore
     public List<MatchType> getMatches()
     {
-        return mMatches.values()
-                       .stream()
-                       .sorted((m1, m2) -> m1.getKey().compareTo(m2.getKey()))
-                       .collect(Collectors.toList());
+        List<MatchType> matches = mSortedMatches;
+        if (matches == null)
+        {
+            matches = sortMatches();
+        }
+        return matches;
+    }
+
+    /**
+     * Sorts this round's matches by match number, unless another caller
+     * already has.
+     * 
+     * @return The matches in sequential order (unmodifiable).
+     */
+    private synchronized List<MatchType> sortMatches()
+    {
+        List<MatchType> matches = mSortedMatches;
+        if (matches == null)
+        {
+            List<MatchType> sorted = new ArrayList<>(mMatches.values());
+            sorted.sort((m1, m2) -> m1.getKey().compareTo(m2.getKey()));
+            matches = Collections.unmodifiableList(sorted);
+            mSortedMatches = matches;
+        }
+        return matches;
     }
 
     /**
@@ -161,12 +211,38 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
     public MatchType getMatch(int number)
         throws IllegalArgumentException
     {
-        Optional<MatchType> match = mMatches.values().stream().filter(m -> m.getKey().equals(number)).findAny();
-        if (!match.isPresent())
+        Map<Integer, MatchType> matches = mMatchesByNumber;
+        if (matches == null)
+        {
+            matches = indexMatches();
+        }
+        MatchType match = matches.get(number);
+        if (match == null)
         {
             throw new IllegalArgumentException("Match " + number + " is not present in this round"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        return match.get();
+        return match;
+    }
+
+    /**
+     * Indexes this round's matches by match number, unless another caller
+     * already has.
+     * 
+     * @return The matches by match number.
+     */
+    private synchronized Map<Integer, MatchType> indexMatches()
+    {
+        Map<Integer, MatchType> matches = mMatchesByNumber;
+        if (matches == null)
+        {
+            matches = new HashMap<>();
+            for (MatchType match : mMatches.values())
+            {
+                matches.put(match.getKey(), match);
+            }
+            mMatchesByNumber = matches;
+        }
+        return matches;
     }
 
     /**
@@ -182,10 +258,12 @@ public abstract class Round<MatchType extends Match> extends AbstractEntity<Inte
      * 
      * @param matchIds the new match IDs
      */
-    public void setMatchIds(Set<Integer> matchIds)
+    public synchronized void setMatchIds(Set<Integer> matchIds)
     {
         mMatchIds.clear();
         mMatchIds.addAll(matchIds);
+        mSortedMatches   = null;
+        mMatchesByNumber = null;
     }
 
     @Override
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the timings of an operation and their distribution.
+ *
+ * Each timing falls into a power of two bucket, so recording one is a
+ * few atomic updates with no locking and no allocation. Percentiles are
+ * therefore approximate, to within a factor of two.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+/*package*/ final class LatencyHistogram
+{
+    /** The number of buckets, one per bit of a positive long. */
+    /*package*/ static final int BUCKETS = 63;
+
+    /** The number of timings. */
+    private final AtomicLong mCount;
+    /** The sum of the timings (in nanoseconds). */
+    private final AtomicLong mTotal;
+    /** The longest timing (in nanoseconds). */
+    private final AtomicLong mMaximum;
+    /** The number of timings in [2^i, 2^(i+1)) nanoseconds for each bucket i. */
+    private final AtomicLongArray mBuckets;
+
+    /**
+     * Constructs a new, empty histogram.
+     */
+    /*package*/ LatencyHistogram()
+    {
+        mCount   = new AtomicLong();
+        mTotal   = new AtomicLong();
+        mMaximum = new AtomicLong();
+        mBuckets = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records a timing.
+     *
+     * @param nanos the timing (in nanoseconds)
+     */
+    /*package*/ void record(long nanos)
+    {
+        long value = Math.max(nanos, 0L);
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+        long maximum = mMaximum.get();
+        while ((value > maximum) && !mMaximum.compareAndSet(maximum, value))
+        {
+            maximum = mMaximum.get();
+        }
+        mBuckets.incrementAndGet(bucket(value));
+    }
+
+    /**
+     * Determines the bucket the given timing falls into.
+     *
+     * @param nanos the timing (in nanoseconds, not negative)
+     *
+     * @return The bucket's index.
+     */
+    /*package*/ static int bucket(long nanos)
+    {
+        return (nanos == 0L) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Discards all the timings recorded so far.
+     */
+    /*package*/ void reset()
+    {
+        mCount.set(0L);
+        mTotal.set(0L);
+        mMaximum.set(0L);
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            mBuckets.set(i, 0L);
+        }
+    }
+
+    /**
+     * Copies the timings recorded so far. Timings recorded during the copy
+     * may be partly included, so the figures may differ slightly.
+     *
+     * @return The copy.
+     */
+    /*package*/ LatencySnapshot snapshot()
+    {
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new LatencySnapshot(mCount.get(), mTotal.get(), mMaximum.get(), buckets);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * The timings of an operation at a point in time.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public final class LatencySnapshot
+{
+    /** The number of timings. */
+    private final long mCount;
+    /** The sum of the timings (in nanoseconds). */
+    private final long mTotal;
+    /** The longest timing (in nanoseconds). */
+    private final long mMaximum;
+    /** The number of timings in [2^i, 2^(i+1)) nanoseconds for each bucket i. */
+    private final long[] mBuckets;
+
+    /**
+     * Constructs a new snapshot.
+     *
+     * @param count the number of timings
+     * @param total the sum of the timings (in nanoseconds)
+     * @param maximum the longest timing (in nanoseconds)
+     * @param buckets the number of timings in each power of two bucket
+     */
+    /*package*/ LatencySnapshot(long count, long total, long maximum, long[] buckets)
+    {
+        mCount   = count;
+        mTotal   = total;
+        mMaximum = maximum;
+        mBuckets = buckets;
+    }
+
+    /**
+     * @return The number of timings.
+     */
+    public long getCount()
+    {
+        return mCount;
+    }
+
+    /**
+     * @return The sum of the timings (in nanoseconds).
+     */
+    public long getTotalNanos()
+    {
+        return mTotal;
+    }
+
+    /**
+     * @return The longest timing (in nanoseconds).
+     */
+    public long getMaximumNanos()
+    {
+        return mMaximum;
+    }
+
+    /**
+     * @return The mean timing (in nanoseconds), or zero if there are no timings.
+     */
+    public double getMeanNanos()
+    {
+        return (mCount == 0L) ? 0.0 : (double)mTotal / mCount;
+    }
+
+    /**
+     * Estimates the given percentile of the timings. The estimate is the
+     * upper bound of the bucket holding the percentile (or the longest
+     * timing if that is less), so it is never too low.
+     *
+     * @param percentile the percentile (between 0 and 100)
+     *
+     * @return The estimate (in nanoseconds), or zero if there are no timings.
+     *
+     * @throws IllegalArgumentException invalid percentile
+     */
+    public long getPercentileNanos(double percentile)
+        throws IllegalArgumentException
+    {
+        if ((percentile < 0.0) || (percentile > 100.0))
+        {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile); //$NON-NLS-1$
+        }
+        long total = 0L;
+        for (long count : mBuckets)
+        {
+            total += count;
+        }
+        long rank = Math.max(1L, (long)Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < mBuckets.length; i++)
+        {
+            seen += mBuckets[i];
+            if (seen >= rank)
+            {
+                long upper = (i == mBuckets.length - 1) ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upper, mMaximum);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return The number of timings in [2^i, 2^(i+1)) nanoseconds for each bucket i.
+     */
+    public long[] getBuckets()
+    {
+        return mBuckets.clone();
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public String toString()
+    {
+        return StringUtil.toString(mCount, mTotal, mMaximum);
+    }
+}
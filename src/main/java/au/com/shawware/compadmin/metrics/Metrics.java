@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Times the hot paths, overall and per competition. Timing is disabled
+ * by default. Each timed call is bracketed as follows:
+ *
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.record(Operation.LEADER_BOARD, competitionID, start);
+ * </pre>
+ *
+ * When disabled, {@link #start()} returns zero without reading the clock
+ * and {@link #record(Operation, int, long)} returns at once. When enabled,
+ * recording a timing takes a few atomic updates and allocates nothing,
+ * other than once for a competition's first timing of an operation.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public final class Metrics
+{
+    /** The JMX name of the metrics MBean. */
+    public static final String MBEAN_NAME = "au.com.shawware.compadmin:type=Metrics"; //$NON-NLS-1$
+    /** The competition ID to record against when a call is not for a single competition. */
+    public static final int NO_COMPETITION = 0;
+    /** The timings of each operation, indexed by ordinal. */
+    private static final OperationMetrics[] sOperations = createOperations();
+    /** Whether timing is enabled. */
+    private static volatile boolean sEnabled = false;
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private Metrics()
+    {
+    }
+
+    /**
+     * @return An empty set of timings for each operation.
+     */
+    private static OperationMetrics[] createOperations()
+    {
+        OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+        for (int i = 0; i < operations.length; i++)
+        {
+            operations[i] = new OperationMetrics();
+        }
+        return operations;
+    }
+
+    /**
+     * @return Whether timing is enabled.
+     */
+    public static boolean isEnabled()
+    {
+        return sEnabled;
+    }
+
+    /**
+     * Specifies whether timing is enabled. Calls already under way when
+     * timing is enabled are not recorded.
+     *
+     * @param enabled whether to enable timing
+     */
+    public static void setEnabled(boolean enabled)
+    {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Starts timing a call.
+     *
+     * @return The start time to pass to {@link #record(Operation, int, long)}, or zero if timing is disabled.
+     */
+    public static long start()
+    {
+        return sEnabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Finishes timing a call and records its timing.
+     *
+     * @param operation the operation called
+     * @param competitionID the competition the call was for (or {@link #NO_COMPETITION})
+     * @param start the start time returned by {@link #start()}
+     */
+    public static void record(Operation operation, int competitionID, long start)
+    {
+        if (start != 0L)
+        {
+            sOperations[operation.ordinal()].record(competitionID, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Discards all the timings recorded so far.
+     */
+    public static void reset()
+    {
+        for (OperationMetrics operation : sOperations)
+        {
+            operation.reset();
+        }
+    }
+
+    /**
+     * Copies the timings recorded so far. Timings recorded during the copy
+     * may be partly included, so the figures may differ slightly.
+     *
+     * @return The copy.
+     */
+    public static MetricsSnapshot snapshot()
+    {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        for (Operation operation : Operation.values())
+        {
+            OperationMetrics metrics = sOperations[operation.ordinal()];
+            snapshot.add(operation, metrics.snapshotOverall(), metrics.snapshotCompetitions());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers the metrics MBean with the platform MBean server under
+     * {@link #MBEAN_NAME}, unless it is already registered.
+     *
+     * @throws JMException error registering the MBean
+     */
+    public static synchronized void registerMBean()
+        throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MBEAN_NAME);
+        if (!server.isRegistered(name))
+        {
+            server.registerMBean(new StandardMBean(new MetricsBean(), MetricsMXBean.class, true), name);
+        }
+    }
+}
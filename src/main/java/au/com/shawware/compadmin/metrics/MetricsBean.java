@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Implements the JMX view of the {@link Metrics}.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+/*package*/ final class MetricsBean implements MetricsMXBean
+{
+    /** The number of nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    @Override
+    public boolean isEnabled()
+    {
+        return Metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        Metrics.setEnabled(enabled);
+    }
+
+    @Override
+    public void reset()
+    {
+        Metrics.reset();
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public Map<String, Long> getCounts()
+    {
+        return collect(LatencySnapshot::getCount);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public Map<String, Double> getMeanMillis()
+    {
+        return collect(latency -> latency.getMeanNanos() / NANOS_PER_MILLI);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public Map<String, Double> getP99Millis()
+    {
+        return collect(latency -> latency.getPercentileNanos(99.0) / NANOS_PER_MILLI);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public Map<String, Double> getMaximumMillis()
+    {
+        return collect(latency -> latency.getMaximumNanos() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Collects the given figure for each operation that has been called,
+     * overall and for each competition.
+     *
+     * @param figure extracts the figure from a set of timings
+     * @param <T> the figure's type
+     *
+     * @return The figures, keyed by operation and competition.
+     */
+    private static <T> Map<String, T> collect(Function<LatencySnapshot, T> figure)
+    {
+        MetricsSnapshot snapshot = Metrics.snapshot();
+        Map<String, T> figures = new TreeMap<>();
+        for (Operation operation : Operation.values())
+        {
+            LatencySnapshot overall = snapshot.getOverall(operation);
+            if (overall.getCount() > 0L)
+            {
+                figures.put(operation.name(), figure.apply(overall));
+                snapshot.getCompetitions(operation).forEach(
+                        (id, latency) -> figures.put(operation.name() + "[" + id + "]", figure.apply(latency))); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        return figures;
+    }
+}
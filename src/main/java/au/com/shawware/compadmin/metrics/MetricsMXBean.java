@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link Metrics}. Each map is keyed by operation,
+ * eg. <code>LEADER_BOARD</code>, for every call of that operation and by
+ * operation and competition, eg. <code>LEADER_BOARD[3]</code>, for the
+ * calls for each competition.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public interface MetricsMXBean
+{
+    /**
+     * @return Whether timing is enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Specifies whether timing is enabled.
+     *
+     * @param enabled whether to enable timing
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Discards all the timings recorded so far.
+     */
+    void reset();
+
+    /**
+     * @return The number of calls.
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return The mean time of the calls (in milliseconds).
+     */
+    Map<String, Double> getMeanMillis();
+
+    /**
+     * @return The estimated 99th percentile time of the calls (in milliseconds).
+     */
+    Map<String, Double> getP99Millis();
+
+    /**
+     * @return The longest time of the calls (in milliseconds).
+     */
+    Map<String, Double> getMaximumMillis();
+}
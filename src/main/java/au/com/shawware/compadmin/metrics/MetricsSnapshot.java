@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * The timings of every operation at a point in time.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public final class MetricsSnapshot
+{
+    /** The timings of every call of each operation. */
+    private final Map<Operation, LatencySnapshot> mOverall;
+    /** The timings of each operation per competition. */
+    private final Map<Operation, Map<Integer, LatencySnapshot>> mCompetitions;
+
+    /**
+     * Constructs a new, empty snapshot.
+     */
+    /*package*/ MetricsSnapshot()
+    {
+        mOverall      = new EnumMap<>(Operation.class);
+        mCompetitions = new EnumMap<>(Operation.class);
+    }
+
+    /**
+     * Adds the given operation's timings.
+     *
+     * @param operation the operation
+     * @param overall the timings of every call
+     * @param competitions the timings per competition
+     */
+    /*package*/ void add(Operation operation, LatencySnapshot overall, Map<Integer, LatencySnapshot> competitions)
+    {
+        mOverall.put(operation, overall);
+        mCompetitions.put(operation, Collections.unmodifiableMap(competitions));
+    }
+
+    /**
+     * @param operation the operation
+     *
+     * @return The timings of every call of the given operation.
+     */
+    public LatencySnapshot getOverall(Operation operation)
+    {
+        return mOverall.get(operation);
+    }
+
+    /**
+     * @param operation the operation
+     *
+     * @return The timings of the given operation for each competition, keyed by competition ID (unmodifiable).
+     */
+    public Map<Integer, LatencySnapshot> getCompetitions(Operation operation)
+    {
+        return mCompetitions.get(operation);
+    }
+
+    /**
+     * @param operation the operation
+     * @param competitionID the competition ID
+     *
+     * @return The timings of the given operation for the given competition, or null if there are none.
+     */
+    @SuppressWarnings("boxing")
+    public LatencySnapshot getCompetition(Operation operation, int competitionID)
+    {
+        return mCompetitions.get(operation).get(competitionID);
+    }
+
+    @Override
+    public String toString()
+    {
+        return StringUtil.toString(mOverall);
+    }
+}
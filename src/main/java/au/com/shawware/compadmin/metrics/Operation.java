@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+/**
+ * The operations that are timed.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public enum Operation
+{
+    /** Loading all the competitions from the repository. */
+    REPOSITORY_LOAD,
+    /** Loading a competition's rounds from the repository on demand. */
+    REPOSITORY_LOAD_ROUNDS,
+    /** Refreshing the results after a repository change. */
+    RESULTS_REFRESH,
+    /** Constructing a competition's results compiler. */
+    ANALYSER_BUILD,
+    /** Generating a leader board. */
+    LEADER_BOARD,
+    /** Updating a leader board in place. */
+    LEADER_BOARD_UPDATE,
+    /** Generating the top of a leader board. */
+    TOP_RESULTS,
+    /** Generating a single entrant's result. */
+    ENTRANT_RESULT,
+    /** Generating the entrants' rank history. */
+    RANK_HISTORY,
+    /** Generating the entrants' result history. */
+    RESULT_HISTORY,
+    /** Rendering the overall results as HTML. */
+    HTML_OVERALL_RESULTS,
+    /** Rendering the round results as HTML. */
+    HTML_ROUND_RESULTS;
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The timings of one operation, overall and per competition.
+ *
+ * Competition IDs are small and dense, so each competition's histogram
+ * is held at its ID in an array. The array is replaced when it has to
+ * grow, so reads never lock. A competition's first timing allocates its
+ * histogram and later timings allocate nothing.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+/*package*/ final class OperationMetrics
+{
+    /** The largest competition ID timed separately. Later ones are only included overall. */
+    /*package*/ static final int MAX_COMPETITION_ID = 1 << 16;
+    /** No histograms. */
+    private static final LatencyHistogram[] NO_HISTOGRAMS = new LatencyHistogram[0];
+
+    /** The timings of every call. */
+    private final LatencyHistogram mOverall;
+    /** The timings of each competition's calls, indexed by competition ID. */
+    private volatile LatencyHistogram[] mCompetitions;
+
+    /**
+     * Constructs a new, empty set of timings.
+     */
+    /*package*/ OperationMetrics()
+    {
+        mOverall      = new LatencyHistogram();
+        mCompetitions = NO_HISTOGRAMS;
+    }
+
+    /**
+     * Records a timing.
+     *
+     * @param competitionID the competition the call was for (or zero if none)
+     * @param nanos the timing (in nanoseconds)
+     */
+    /*package*/ void record(int competitionID, long nanos)
+    {
+        mOverall.record(nanos);
+        if ((competitionID > 0) && (competitionID <= MAX_COMPETITION_ID))
+        {
+            LatencyHistogram[] competitions = mCompetitions;
+            LatencyHistogram histogram = (competitionID < competitions.length) ? competitions[competitionID] : null;
+            if (histogram == null)
+            {
+                histogram = addCompetition(competitionID);
+            }
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Adds a histogram for the given competition, unless another thread
+     * already has.
+     *
+     * @param competitionID the competition ID
+     *
+     * @return The competition's histogram.
+     */
+    private synchronized LatencyHistogram addCompetition(int competitionID)
+    {
+        LatencyHistogram[] competitions = mCompetitions;
+        if (competitionID >= competitions.length)
+        {
+            competitions = Arrays.copyOf(competitions, Math.max(competitionID + 1, competitions.length * 2));
+        }
+        else if (competitions[competitionID] != null)
+        {
+            return competitions[competitionID];
+        }
+        else
+        {
+            competitions = competitions.clone();
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        competitions[competitionID] = histogram;
+        mCompetitions = competitions;
+        return histogram;
+    }
+
+    /**
+     * Discards all the timings recorded so far.
+     */
+    /*package*/ void reset()
+    {
+        mOverall.reset();
+        for (LatencyHistogram histogram : mCompetitions)
+        {
+            if (histogram != null)
+            {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the timings of every call.
+     */
+    /*package*/ LatencySnapshot snapshotOverall()
+    {
+        return mOverall.snapshot();
+    }
+
+    /**
+     * @return A copy of the timings of each competition timed since the last reset, keyed by competition ID.
+     */
+    @SuppressWarnings("boxing")
+    /*package*/ Map<Integer, LatencySnapshot> snapshotCompetitions()
+    {
+        Map<Integer, LatencySnapshot> snapshots = new TreeMap<>();
+        LatencyHistogram[] competitions = mCompetitions;
+        for (int id = 1; id < competitions.length; id++)
+        {
+            LatencySnapshot snapshot = (competitions[id] == null) ? null : competitions[id].snapshot();
+            if ((snapshot != null) && (snapshot.getCount() > 0L))
+            {
+                snapshots.put(id, snapshot);
+            }
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,11 @@
+/*
+ * Copyright (C) 2018 shawware.com.au License: GNU General Public License V3 (or
+ * later) https://www.gnu.org/copyleft/gpl.html
+ */
+
+/**
+ * Low-overhead timing metrics for the hot paths, with a JMX view.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+package au.com.shawware.compadmin.metrics;
@@ -8,22 +8,43 @@
 package au.com.shawware.compadmin.scoring;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import au.com.shawware.compadmin.entity.Competition;
 import au.com.shawware.compadmin.entity.Entrant;
 import au.com.shawware.compadmin.entity.Match;
 import au.com.shawware.compadmin.entity.Round;
-import au.com.shawware.util.MutableInteger;
 import au.com.shawware.util.StringUtil;
 
 /**
  * Abstracts code that other results compilers may wish to re-use by sub-classing.
+ *
+ * The cumulative results after each round are kept as checkpoints, so a
+ * query for the first N rounds only processes the rounds that have not
+ * been processed before. To bound their memory, long competitions keep
+ * at most {@value #MAX_CHECKPOINTS} evenly spaced checkpoints (plus the
+ * latest two); the results after any other round are replayed from the
+ * nearest earlier checkpoint when needed.
+ *
+ * The competition must not change while a compiler is in use, so
+ * compilers should only be built over copies that no one else changes.
+ * When a round changes, a sub-class can derive a compiler for a copy
+ * holding the change via
+ * {@link #AbstractResultsCompiler(AbstractResultsCompiler, Competition)},
+ * then either {@link #invalidateFrom(int)} the changed round or apply just
+ * the change via {@link #applyRoundDelta(int, ResultTable)}. Checkpoints
+ * are never changed once stored, so the two compilers can share them.
+ *
+ * Given a fork/join pool, rounds are scored in parallel. Round scoring is
+ * additive, so the rounds are split into chunks that are scored into
+ * partial results which are then merged by a prefix sum. This matches
+ * sequential compilation exactly.
  * 
  * @param <CompetitionType> the competition type
  * @param <RoundType> the round type
@@ -38,12 +59,27 @@ public abstract class AbstractResultsCompiler<
         MatchType extends Match,
         EntrantType extends Entrant> implements IResultsCompiler
 {
+    /** The default number of rounds each parallel task scores. */
+    private static final int DEFAULT_CHUNK_SIZE = 32;
+    /** The maximum number of evenly spaced checkpoints to keep. */
+    private static final int MAX_CHECKPOINTS = 64;
+
     /** The competition being analysed. */
     private final CompetitionType mCompetition;
     /** The competition entrants. */
     private final Map<Integer, EntrantType> mEntrants;
+    /** The dense index of each entrant. */
+    private final EntrantIndex mIndex;
     /** The result item specification to use when comparing for equality / ranking. */
     private final ResultSpec mComparisonSpec;
+    /** The cumulative results after each round processed so far (null if not kept). */
+    private final List<ResultTable> mCheckpoints;
+    /** The number of rounds between the checkpoints that are kept. */
+    private final int mCheckpointInterval;
+    /** The pool for parallel compilation (null for sequential). */
+    private volatile ForkJoinPool mPool;
+    /** The number of rounds each parallel task scores. */
+    private volatile int mChunkSize;
 
     /**
      * Constructs a new compiler using the given competition and result specification.
@@ -71,7 +107,99 @@ public abstract class AbstractResultsCompiler<
         }
         mCompetition    = competition;
         mEntrants       = entrants;
-        mComparisonSpec = comparisonSpec;
+        mIndex          = new EntrantIndex(entrants.keySet());
+        mComparisonSpec     = comparisonSpec;
+        mCheckpoints        = new ArrayList<>();
+        mCheckpointInterval = getCheckpointInterval(competition);
+        mPool               = null;
+        mChunkSize          = DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Constructs a new compiler for a changed copy of the given compiler's
+     * competition. The new compiler shares the given compiler's checkpoints
+     * and settings, so the caller must then invalidate (or apply) the change
+     * from the first round that differs, before anyone else uses it.
+     * 
+     * @param compiler the compiler for the competition before the change
+     * @param competition the competition after the change
+     *
+     * @throws IllegalArgumentException empty competition or the entrants have changed
+     */
+    protected AbstractResultsCompiler(AbstractResultsCompiler<CompetitionType, RoundType, MatchType, EntrantType> compiler,
+                                      CompetitionType competition)
+        throws IllegalArgumentException
+    {
+        if (competition == null)
+        {
+            throw new IllegalArgumentException("Empty competition"); //$NON-NLS-1$
+        }
+        Map<Integer, EntrantType> entrants = competition.getEntrantMap();
+        if ((entrants == null) || !entrants.keySet().equals(compiler.mEntrants.keySet()))
+        {
+            throw new IllegalArgumentException("Mismatched entrants"); //$NON-NLS-1$
+        }
+        mCompetition        = competition;
+        mEntrants           = entrants;
+        mIndex              = compiler.mIndex;
+        mComparisonSpec     = compiler.mComparisonSpec;
+        synchronized (compiler)
+        {
+            mCheckpoints    = new ArrayList<>(compiler.mCheckpoints);
+        }
+        mCheckpointInterval = getCheckpointInterval(competition);
+        mPool               = compiler.mPool;
+        mChunkSize          = compiler.mChunkSize;
+    }
+
+    /**
+     * Calculates how many rounds apart to keep checkpoints for the given
+     * competition, so that no more than {@value #MAX_CHECKPOINTS} are kept.
+     * 
+     * @param competition the competition
+     * 
+     * @return The number of rounds between kept checkpoints.
+     */
+    private static int getCheckpointInterval(Competition<?, ?, ?> competition)
+    {
+        return Math.max(1, (competition.numberOfRounds() + MAX_CHECKPOINTS - 1) / MAX_CHECKPOINTS);
+    }
+
+    /**
+     * Specifies a pool to score rounds in parallel. Only compilations
+     * with more rounds than the chunk size are run in parallel. A null
+     * pool restores sequential compilation.
+     * 
+     * @param pool the pool to use (may be null)
+     */
+    public void setForkJoinPool(ForkJoinPool pool)
+    {
+        mPool = pool;
+    }
+
+    /**
+     * Specifies the number of consecutive rounds each parallel task scores.
+     * 
+     * @param rounds the number of rounds per task
+     * 
+     * @throws IllegalArgumentException invalid number of rounds
+     */
+    public void setChunkSize(int rounds)
+        throws IllegalArgumentException
+    {
+        if (rounds <= 0)
+        {
+            throw new IllegalArgumentException("Invalid chunk size: " + rounds); //$NON-NLS-1$
+        }
+        mChunkSize = rounds;
+    }
+
+    /**
+     * @return The competition being analysed.
+     */
+    protected final CompetitionType getCompetition()
+    {
+        return mCompetition;
     }
 
     @Override
@@ -118,34 +246,267 @@ public abstract class AbstractResultsCompiler<
             throw new IllegalArgumentException("Invalid number of rounds: " + rounds); //$NON-NLS-1$
         }
 
-        ResultSpec spec = createResultSpecification(false);
+        List<EntrantResult> results;
+        synchronized (this)
+        {
+            results = getCheckpoint(rounds).toResults();
+        }
+        results.forEach(this::postCompile);
+        return results;
+    }
 
-        Map<Integer, EntrantResult> results = new HashMap<>();
-        for (Integer entrantID : mEntrants.keySet())
+    @Override
+    @SuppressWarnings("boxing")
+    public final List<List<EntrantResult>> compileCumulativeResults(int rounds)
+    {
+        Set<Integer> roundIDs = mCompetition.getRoundIds();
+        if ((rounds <= 0) || (rounds > roundIDs.size()))
         {
-            results.put(entrantID, new EntrantResult(entrantID, spec));
+            throw new IllegalArgumentException("Invalid number of rounds: " + rounds); //$NON-NLS-1$
         }
 
-        // Process each round until we reach the limit;
-        int i = 1;
-        Iterator<RoundType> it = mCompetition.getRounds().iterator();
-        while (it.hasNext())
+        List<List<EntrantResult>> results = new ArrayList<>(rounds);
+        synchronized (this)
         {
-            if (i > rounds)
+            getCheckpoint(rounds); // Process any outstanding rounds in one go.
+            List<RoundType> allRounds = mCompetition.getRounds();
+            ResultTable previous = null;
+            for (int i = 1; i <= rounds; i++)
             {
-                break;
+                ResultTable table = mCheckpoints.get(i - 1);
+                if (table == null)
+                {
+                    table = scoreRound(previous, allRounds.get(i - 1));
+                }
+                results.add(table.toResults());
+                previous = table;
+            }
+        }
+        // The checkpoints are untouched as post-compilation works on the converted results.
+        results.forEach(roundResults -> roundResults.forEach(this::postCompile));
+
+        return results;
+    }
+
+    /**
+     * Retrieves the cumulative results after the given number of rounds,
+     * processing any rounds beyond the latest checkpoint, or replaying
+     * the rounds since the nearest earlier checkpoint if that one was not
+     * kept. The returned table must not be modified.
+     * 
+     * @param rounds the number of rounds (already verified)
+     * 
+     * @return The cumulative results.
+     */
+    private synchronized ResultTable getCheckpoint(int rounds)
+    {
+        List<RoundType> allRounds = mCompetition.getRounds();
+        int processed = mCheckpoints.size();
+        if (processed < rounds)
+        {
+            List<RoundType> outstanding = allRounds.subList(processed, Math.min(rounds, allRounds.size()));
+            // The latest checkpoint is always kept.
+            ResultTable start = (processed == 0) ? null : mCheckpoints.get(processed - 1);
+            ForkJoinPool pool = mPool;
+            int chunkSize = mChunkSize;
+            if ((pool != null) && (outstanding.size() > chunkSize))
+            {
+                mCheckpoints.addAll(pool.submit(() -> scoreInParallel(outstanding, start, chunkSize)).join());
+            }
+            else
+            {
+                mCheckpoints.addAll(scoreCumulatively(outstanding, start));
+            }
+            // Drop those between the kept intervals, apart from the latest two.
+            for (int i = Math.max(1, processed - 1); i < mCheckpoints.size() - 1; i++)
+            {
+                if ((i % mCheckpointInterval) != 0)
+                {
+                    mCheckpoints.set(i - 1, null);
+                }
             }
-            processRound(results, it.next());
-            i++;
         }
 
-        for (Integer playerID : mEntrants.keySet())
+        ResultTable table = mCheckpoints.get(rounds - 1);
+        if (table == null)
         {
-            EntrantResult result = results.get(playerID);
-            postCompile(result);
+            int kept = rounds - 1;
+            while ((kept > 0) && (mCheckpoints.get(kept - 1) == null))
+            {
+                kept--;
+            }
+            ResultTable start = (kept == 0) ? null : mCheckpoints.get(kept - 1);
+            for (RoundType round : allRounds.subList(kept, rounds))
+            {
+                start = scoreRound(start, round);
+            }
+            table = start;
         }
+        return table;
+    }
 
-        return results.values().stream().collect(Collectors.toList());
+    /**
+     * Scores the given round on top of the given cumulative results,
+     * producing the cumulative results after it.
+     * 
+     * @param previous the results before the round (null for none)
+     * @param round the round to score
+     * 
+     * @return The cumulative results after the round.
+     */
+    private ResultTable scoreRound(ResultTable previous, RoundType round)
+    {
+        ResultTable table = (previous == null) ?
+                new ResultTable(createResultSpecification(false), mIndex) :
+                new ResultTable(previous);
+        processRound(table, round);
+        return table;
+    }
+
+    /**
+     * Scores the given rounds in order, producing the cumulative results
+     * after each one.
+     * 
+     * @param rounds the rounds to score
+     * @param start the results before the first round (null for none)
+     * 
+     * @return The cumulative results after each round.
+     */
+    private List<ResultTable> scoreCumulatively(List<RoundType> rounds, ResultTable start)
+    {
+        List<ResultTable> tables = new ArrayList<>(rounds.size());
+        ResultTable previous = start;
+        for (RoundType round : rounds)
+        {
+            ResultTable table = scoreRound(previous, round);
+            tables.add(table);
+            previous = table;
+        }
+        return tables;
+    }
+
+    /**
+     * Scores the given rounds in parallel, producing the same cumulative
+     * results as {@link #scoreCumulatively(List, ResultTable)}. Each chunk
+     * of rounds is scored from zero, then each chunk is offset by the
+     * starting results plus the totals of all the chunks before it.
+     * Must be run within the fork/join pool.
+     * 
+     * @param rounds the rounds to score
+     * @param start the results before the first round (null for none)
+     * @param chunkSize the number of rounds in each chunk
+     * 
+     * @return The cumulative results after each round.
+     */
+    private List<ResultTable> scoreInParallel(List<RoundType> rounds, ResultTable start, int chunkSize)
+    {
+        int chunks = (rounds.size() + chunkSize - 1) / chunkSize;
+        List<List<ResultTable>> partials = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scoreCumulatively(
+                        rounds.subList(chunk * chunkSize, Math.min(rounds.size(), (chunk + 1) * chunkSize)), null))
+                .collect(Collectors.toList());
+
+        // An exclusive prefix sum of the chunk totals gives each chunk's offset.
+        ResultTable[] offsets = new ResultTable[chunks];
+        offsets[0] = start;
+        for (int chunk = 1; chunk < chunks; chunk++)
+        {
+            List<ResultTable> previous = partials.get(chunk - 1);
+            ResultTable offset = new ResultTable(previous.get(previous.size() - 1));
+            if (offsets[chunk - 1] != null)
+            {
+                offset.add(offsets[chunk - 1]);
+            }
+            offsets[chunk] = offset;
+        }
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            if (offsets[chunk] != null)
+            {
+                partials.get(chunk).forEach(table -> table.add(offsets[chunk]));
+            }
+        });
+
+        List<ResultTable> tables = new ArrayList<>(rounds.size());
+        partials.forEach(tables::addAll);
+        return tables;
+    }
+
+    /**
+     * Creates an empty table with the same layout as the checkpoints,
+     * suitable for recording the change in a single round's results.
+     * 
+     * @return The new table.
+     */
+    protected final ResultTable createDeltaTable()
+    {
+        return new ResultTable(createResultSpecification(false), mIndex);
+    }
+
+    /**
+     * Applies the change in a single round's results to the checkpoints
+     * for that round and all later rounds, instead of re-processing them.
+     * The competition must already hold the change so that any rounds
+     * processed later include it. The checkpoints are replaced rather
+     * than changed, as they may be shared with other compilers.
+     * 
+     * @param round the position of the changed round (1-based)
+     * @param delta the change in the round's results
+     * 
+     * @return The current results of the entrants whose results changed.
+     * 
+     * @throws IllegalArgumentException invalid round or delta
+     */
+    protected final synchronized List<EntrantResult> applyRoundDelta(int round, ResultTable delta)
+        throws IllegalArgumentException
+    {
+        if (round <= 0)
+        {
+            throw new IllegalArgumentException("Invalid round: " + round); //$NON-NLS-1$
+        }
+        for (int i = round - 1; i < mCheckpoints.size(); i++)
+        {
+            ResultTable table = mCheckpoints.get(i);
+            if (table != null)
+            {
+                ResultTable changed = new ResultTable(table);
+                changed.add(delta);
+                mCheckpoints.set(i, changed);
+            }
+        }
+
+        List<EntrantResult> results = new ArrayList<>();
+        int rounds = mCompetition.numberOfRounds();
+        if (rounds > 0)
+        {
+            ResultTable current = getCheckpoint(rounds);
+            for (int entrant : delta.getNonZeroEntrants())
+            {
+                EntrantResult result = current.toResult(entrant);
+                postCompile(result);
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public final synchronized void invalidateFrom(int round)
+        throws IllegalArgumentException
+    {
+        if (round <= 0)
+        {
+            throw new IllegalArgumentException("Invalid round: " + round); //$NON-NLS-1$
+        }
+        if (round <= mCheckpoints.size())
+        {
+            mCheckpoints.subList(round - 1, mCheckpoints.size()).clear();
+            // Keep the latest checkpoint so processing can resume from it.
+            while (!mCheckpoints.isEmpty() && (mCheckpoints.get(mCheckpoints.size() - 1) == null))
+            {
+                mCheckpoints.remove(mCheckpoints.size() - 1);
+            }
+        }
     }
 
     /**
@@ -159,46 +520,92 @@ public abstract class AbstractResultsCompiler<
     }
 
     @Override
-    @SuppressWarnings("boxing")
     public final List<List<EntrantResult>> compileRoundResults()
     {
         ResultSpec spec = createResultSpecification(true);
-        String pointsItemName = getPointsItemName();
-        String runningTotalItemName = getRunningTotalItemName();
+        int pointsSlot = spec.getSlot(getPointsItemName());
+        int runningTotalSlot = spec.getSlot(getRunningTotalItemName());
 
-        List<List<EntrantResult>> results = new ArrayList<>(mCompetition.numberOfRounds());
-
-        Map<Integer, MutableInteger> runningTotals = new HashMap<>(mEntrants.size());
-        for (Integer entrantID : mEntrants.keySet())
+        List<RoundType> rounds = mCompetition.getRounds();
+        ForkJoinPool pool = mPool;
+        int chunkSize = mChunkSize;
+        if ((pool != null) && (rounds.size() > chunkSize))
         {
-            runningTotals.put(entrantID, new MutableInteger(0));
+            return pool.submit(() -> compileRoundResultsInParallel(rounds, spec, pointsSlot, runningTotalSlot, chunkSize)).join();
         }
 
-        mCompetition.getRounds().forEach(round -> {
-            Map<Integer, EntrantResult> roundResults = new HashMap<>(mEntrants.size());
-            for (Integer entrantID : mEntrants.keySet())
-            {
-                roundResults.put(entrantID, new EntrantResult(entrantID, spec));
-            }
+        List<List<EntrantResult>> results = new ArrayList<>(rounds.size());
 
-            processRound(roundResults, round);
+        int[] runningTotals = new int[mIndex.size()];
 
-            List<EntrantResult> roundResult = new ArrayList<>(mEntrants.size());
-            for (Integer entrantID : mEntrants.keySet())
+        rounds.forEach(round -> {
+            ResultTable roundTable = new ResultTable(spec, mIndex);
+
+            processRound(roundTable, round);
+
+            for (int entrant = 0; entrant < runningTotals.length; entrant++)
             {
-                EntrantResult entrantResult = roundResults.get(entrantID);
-                MutableInteger runningTotal = runningTotals.get(entrantID);
-                runningTotal.incrementBy(entrantResult.getResultItemValueAsInt(pointsItemName));
-                entrantResult.incrementResultItem(runningTotalItemName, runningTotal.getValue());
-                postCompile(entrantResult);
-                roundResult.add(entrantResult);
+                runningTotals[entrant] += roundTable.getIntegerItem(pointsSlot, entrant);
+                roundTable.incrementIntegerItem(runningTotalSlot, entrant, runningTotals[entrant]);
             }
+            List<EntrantResult> roundResult = roundTable.toResults();
+            roundResult.forEach(this::postCompile);
             results.add(roundResult);
         });
 
         return results;
     }
 
+    /**
+     * Compiles the results for each round in parallel. The rounds are
+     * scored independently in chunks and each entrant's running total is
+     * then rebuilt with a parallel prefix sum over their points.
+     * Must be run within the fork/join pool.
+     * 
+     * @param rounds the rounds to compile
+     * @param spec the result specification (including the running total)
+     * @param pointsSlot the slot of the points item
+     * @param runningTotalSlot the slot of the running total item
+     * @param chunkSize the number of rounds in each chunk
+     * 
+     * @return The set of results for all entrants by round.
+     */
+    private List<List<EntrantResult>> compileRoundResultsInParallel(List<RoundType> rounds, ResultSpec spec,
+            int pointsSlot, int runningTotalSlot, int chunkSize)
+    {
+        ResultTable[] tables = new ResultTable[rounds.size()];
+        int chunks = (rounds.size() + chunkSize - 1) / chunkSize;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            for (int i = chunk * chunkSize; i < Math.min(rounds.size(), (chunk + 1) * chunkSize); i++)
+            {
+                tables[i] = new ResultTable(spec, mIndex);
+                processRound(tables[i], rounds.get(i));
+            }
+        });
+
+        IntStream.range(0, mIndex.size()).parallel().forEach(entrant -> {
+            int[] runningTotals = new int[tables.length];
+            for (int i = 0; i < tables.length; i++)
+            {
+                runningTotals[i] = tables[i].getIntegerItem(pointsSlot, entrant);
+            }
+            Arrays.parallelPrefix(runningTotals, Integer::sum);
+            for (int i = 0; i < tables.length; i++)
+            {
+                tables[i].incrementIntegerItem(runningTotalSlot, entrant, runningTotals[i]);
+            }
+        });
+
+        return Arrays.stream(tables)
+                .parallel()
+                .map(table -> {
+                    List<EntrantResult> roundResult = table.toResults();
+                    roundResult.forEach(this::postCompile);
+                    return roundResult;
+                })
+                .collect(Collectors.toList());
+    }
+
     /**
      * Gets the name of the result item that represents points per round.
      * 
@@ -226,10 +633,22 @@ public abstract class AbstractResultsCompiler<
      * Process the given round. That is, evaluate each match and update
      * the results for the entrants accordingly.
      * 
-     * @param results the players' results so far
+     * @param results the entrants' results so far
      * @param round the round to process
      */
-    protected abstract void processRound(Map<Integer, EntrantResult> results, RoundType round);
+    protected abstract void processRound(ResultTable results, RoundType round);
+
+    @Override
+    public int getCompetitionID()
+    {
+        return mCompetition.getId();
+    }
+
+    @Override
+    public ResultSpec getComparisonSpecification()
+    {
+        return mComparisonSpec;
+    }
 
     @Override
     public final int compare(EntrantResult result1, EntrantResult result2)
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.scoring;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * Maps a fixed set of entrant IDs to dense indices (0 to N-1) so results
+ * can be accumulated in arrays rather than maps. Indices follow ascending
+ * entrant ID order.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class EntrantIndex
+{
+    /** The largest ID range for which a direct lookup table is used. */
+    private static final int MAX_DIRECT_RANGE = 1 << 16;
+
+    /** The entrant IDs in index order. */
+    private final int[] mIds;
+    /** Maps an ID to its index (when the IDs are compact enough). */
+    private final int[] mLookup;
+
+    /**
+     * Constructs a new index over the given entrant IDs.
+     * 
+     * @param entrantIDs the entrant IDs
+     * 
+     * @throws IllegalArgumentException empty or negative IDs
+     */
+    @SuppressWarnings("boxing")
+    public EntrantIndex(Collection<Integer> entrantIDs)
+        throws IllegalArgumentException
+    {
+        if ((entrantIDs == null) || (entrantIDs.size() == 0))
+        {
+            throw new IllegalArgumentException("Empty entrant IDs"); //$NON-NLS-1$
+        }
+        mIds = entrantIDs.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        if (mIds[0] < 0)
+        {
+            throw new IllegalArgumentException("Invalid entrant ID: " + mIds[0]); //$NON-NLS-1$
+        }
+        int range = mIds[mIds.length - 1] + 1;
+        if (range <= Math.max(MAX_DIRECT_RANGE, 4 * mIds.length))
+        {
+            mLookup = new int[range];
+            Arrays.fill(mLookup, -1);
+            for (int i = 0; i < mIds.length; i++)
+            {
+                mLookup[mIds[i]] = i;
+            }
+        }
+        else
+        {
+            mLookup = null; // Sparse IDs are found by binary search instead.
+        }
+    }
+
+    /**
+     * @return The number of entrants.
+     */
+    public int size()
+    {
+        return mIds.length;
+    }
+
+    /**
+     * The index of the given entrant.
+     * 
+     * @param entrantID the entrant's ID
+     * 
+     * @return The entrant's index or -1 if the entrant is unknown.
+     */
+    public int indexOf(int entrantID)
+    {
+        int index;
+        if (mLookup != null)
+        {
+            index = ((entrantID >= 0) && (entrantID < mLookup.length)) ? mLookup[entrantID] : -1;
+        }
+        else
+        {
+            index = Arrays.binarySearch(mIds, entrantID);
+            if (index < 0)
+            {
+                index = -1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The entrant at the given index.
+     * 
+     * @param index the entrant's index
+     * 
+     * @return The entrant's ID.
+     */
+    public int getEntrantID(int index)
+    {
+        return mIds[index];
+    }
+
+    @Override
+    public String toString()
+    {
+        return StringUtil.toString(Arrays.toString(mIds));
+    }
+}
@@ -10,8 +10,6 @@ package au.com.shawware.compadmin.scoring;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.DoubleAdder;
 
 import au.com.shawware.util.StringUtil;
 
@@ -21,6 +19,11 @@ import au.com.shawware.util.StringUtil;
  * This is done in a generic fashion to support multiple competition
  * types and their respective scoring systems.
  *
+ * The values are held in primitive arrays indexed by the slots assigned
+ * by the result specification. Hot code can look up a slot once and then
+ * use the slot-based accessors; the name-based accessors are a thin layer
+ * over them.
+ *
  * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
  */
 public class EntrantResult
@@ -29,8 +32,10 @@ public class EntrantResult
     private final int mEntrantID;
     /** The result item specification. */
     private final ResultSpec mSpec;
-    /** The ordered sets of result items. */
-    private final Map<String, Number> mItems;
+    /** The integer result items, by slot. */
+    private final int[] mIntegerItems;
+    /** The floating point result items, by slot. */
+    private final double[] mFloatingPointItems;
     /** The current ranking (if assigned) for this entrant. */
     private int mRank;
     /** The previous ranking (if assigned) for this entrant. */
@@ -52,21 +57,27 @@ public class EntrantResult
             throw new IllegalArgumentException("Empty result specification"); //$NON-NLS-1$
         }
 
-        mEntrantID = entrantID;
-        mRank      = 0;
-        mSpec      = spec;
-        mItems     = new TreeMap<>();
-        for (String name : mSpec.getItemNames())
-        {
-            if (mSpec.isInteger(name))
-            {
-                mItems.put(name, new AtomicInteger(0));
-            }
-            else
-            {
-                mItems.put(name, new DoubleAdder());
-            }
-        }
+        spec.seal();
+        mEntrantID          = entrantID;
+        mRank               = 0;
+        mSpec               = spec;
+        mIntegerItems       = new int[spec.getIntegerItemCount()];
+        mFloatingPointItems = new double[spec.getFloatingPointItemCount()];
+    }
+
+    /**
+     * Creates a copy of the given result, including its result items
+     * but not its rankings.
+     * 
+     * @param that the result to copy
+     */
+    public EntrantResult(EntrantResult that)
+    {
+        mEntrantID          = that.mEntrantID;
+        mRank               = 0;
+        mSpec               = that.mSpec;
+        mIntegerItems       = that.mIntegerItems.clone();
+        mFloatingPointItems = that.mFloatingPointItems.clone();
     }
 
     /**
@@ -150,11 +161,11 @@ public class EntrantResult
         int rc;
         if (mSpec.isInteger(name))
         {
-            rc = Integer.compare(that.getResultItemValueAsInt(name), this.getResultItemValueAsInt(name));
+            rc = Integer.compare(that.mIntegerItems[that.mSpec.getSlot(name)], this.mIntegerItems[this.mSpec.getSlot(name)]);
         }
         else
         {
-            rc = Double.compare(that.getResultItemValueAsDouble(name), this.getResultItemValueAsDouble(name));
+            rc = Double.compare(that.mFloatingPointItems[that.mSpec.getSlot(name)], this.mFloatingPointItems[this.mSpec.getSlot(name)]);
         }
         return rc;
     }
@@ -172,7 +183,7 @@ public class EntrantResult
         throws IllegalArgumentException
     {
         verifyInteger(name);
-        return getResultItemValue(name).intValue();
+        return mIntegerItems[mSpec.getSlot(name)];
     }
 
     /**
@@ -188,21 +199,7 @@ public class EntrantResult
         throws IllegalArgumentException
     {
         verifyFloatingPoint(name);
-        return getResultItemValue(name).doubleValue();
-    }
-
-    /**
-     * Returns the internal value of the given result item.
-     * 
-     * @param name the result item's name
-     * 
-     * @return The result item's value.
-     * 
-     * @throws IllegalArgumentException unknown result item
-     */
-    private Number getResultItemValue(String name)
-    {
-        return mItems.get(name);
+        return mFloatingPointItems[mSpec.getSlot(name)];
     }
 
     /**
@@ -218,8 +215,7 @@ public class EntrantResult
         throws IllegalArgumentException
     {
         verifyInteger(name);
-        AtomicInteger value = (AtomicInteger)mItems.get(name);
-        value.addAndGet(increment);
+        mIntegerItems[mSpec.getSlot(name)] += increment;
     }
 
     /**
@@ -235,9 +231,54 @@ public class EntrantResult
         throws IllegalArgumentException
     {
         verifyFloatingPoint(name);
-        DoubleAdder value = (DoubleAdder)mItems.get(name);
-        value.reset();
-        value.add(newValue);
+        mFloatingPointItems[mSpec.getSlot(name)] = newValue;
+    }
+
+    /**
+     * Returns the value of the integer result item in the given slot.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * 
+     * @return The result item's value.
+     */
+    public int getIntegerItem(int slot)
+    {
+        return mIntegerItems[slot];
+    }
+
+    /**
+     * Increments the integer result item in the given slot.
+     * The amount can be negative if desired.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param increment the amount to increment by
+     */
+    public void incrementIntegerItem(int slot, int increment)
+    {
+        mIntegerItems[slot] += increment;
+    }
+
+    /**
+     * Returns the value of the floating point result item in the given slot.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * 
+     * @return The result item's value.
+     */
+    public double getFloatingPointItem(int slot)
+    {
+        return mFloatingPointItems[slot];
+    }
+
+    /**
+     * Sets the floating point result item in the given slot.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param newValue the new value for the result item
+     */
+    public void setFloatingPointItem(int slot, double newValue)
+    {
+        mFloatingPointItems[slot] = newValue;
     }
 
     /**
@@ -285,7 +326,7 @@ public class EntrantResult
         throws IllegalArgumentException
     {
         verifyNotEmpty(name);
-        if (!mItems.containsKey(name))
+        if (!mSpec.hasItem(name))
         {
             throw new IllegalArgumentException("Unknown result item: " + name); //$NON-NLS-1$
         }
@@ -312,6 +353,12 @@ public class EntrantResult
     @SuppressWarnings("boxing")
     public String toString()
     {
-        return StringUtil.toString(mRank, mEntrantID, mItems);
+        Map<String, Number> items = new TreeMap<>();
+        for (String name : mSpec.getItemNames())
+        {
+            items.put(name, mSpec.isInteger(name) ? (Number)mIntegerItems[mSpec.getSlot(name)]
+                                                  : (Number)mFloatingPointItems[mSpec.getSlot(name)]);
+        }
+        return StringUtil.toString(mRank, mEntrantID, items);
     }
 }
@@ -18,6 +18,16 @@ import java.util.List;
  */
 public interface IResultsCompiler extends Comparator<EntrantResult>
 {
+    /**
+     * @return The ID of the competition whose results are compiled.
+     */
+    int getCompetitionID();
+
+    /**
+     * @return The items used to order and rank results.
+     */
+    ResultSpec getComparisonSpecification();
+
     /**
      * Compile the current (overall) results for all entrants.
      * This represents all rounds of the current competition.
@@ -46,6 +56,32 @@ public interface IResultsCompiler extends Comparator<EntrantResult>
      */
     List<EntrantResult> compileResults(int rounds);
 
+    /**
+     * Compile the cumulative results for all entrants after each of the
+     * first N rounds. Element i holds the same results as
+     * {@link #compileResults(int)} would for i + 1 rounds, but the rounds
+     * are only evaluated once.
+     *
+     * @param rounds the number of rounds
+     *
+     * @return The set of results for all entrants after each round.
+     *
+     * @throws IllegalArgumentException invalid number of rounds 
+     */
+    List<List<EntrantResult>> compileCumulativeResults(int rounds);
+
+    /**
+     * Discard any results held for the given round and those after it.
+     * As a compiler's competition must not change while it is in use,
+     * this is for a compiler derived for a changed copy of a competition,
+     * before anyone else uses it.
+     *
+     * @param round the first round that has changed (1-based)
+     *
+     * @throws IllegalArgumentException invalid round
+     */
+    void invalidateFrom(int round);
+
     /**
      * Compile the results for all entrants for each round.
      * 
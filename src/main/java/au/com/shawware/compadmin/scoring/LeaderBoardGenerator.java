@@ -8,10 +8,15 @@
 package au.com.shawware.compadmin.scoring;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+
+import au.com.shawware.compadmin.metrics.Metrics;
+import au.com.shawware.compadmin.metrics.Operation;
 
 /**
  * Generates a leader board based using the given results compiler.
@@ -30,6 +35,7 @@ public class LeaderBoardGenerator
      */
     public static List<EntrantResult> generateLeaderBoard(IResultsCompiler compiler)
     {
+        long start = Metrics.start();
         List<EntrantResult> currentResults = compiler.compileCurrentResults();
 
         if (currentResults.size() > 0)
@@ -37,6 +43,7 @@ public class LeaderBoardGenerator
             List<EntrantResult> previousResults = compiler.compilePreviousResults();
             postProcessResults(currentResults, previousResults, compiler);
         }
+        Metrics.record(Operation.LEADER_BOARD, compiler.getCompetitionID(), start);
         return currentResults;
     }
 
@@ -53,6 +60,7 @@ public class LeaderBoardGenerator
      */
     public static List<EntrantResult> generateLeaderBoard(IResultsCompiler compiler, int rounds)
     {
+        long start = Metrics.start();
         List<EntrantResult> currentResults = compiler.compileResults(rounds);
 
         if (currentResults.size() > 0)
@@ -61,9 +69,210 @@ public class LeaderBoardGenerator
                     compiler.compileResults(rounds - 1) : new ArrayList<>();
             postProcessResults(currentResults, previousResults, compiler);
         }
+        Metrics.record(Operation.LEADER_BOARD, compiler.getCompetitionID(), start);
         return currentResults;
     }
     
+    /**
+     * Generates the top of the leader board for the given number of rounds
+     * of a competition without sorting every entrant. The best results are
+     * selected with a bounded heap and each one's previous rank is found by
+     * counting the entrants ahead of it after the previous round.
+     * 
+     * The results are as per the first entries of the full leader board,
+     * so entrants tied at the cut-off are chosen by entrant ID.
+     * 
+     * @param compiler the results compiler to use
+     * @param rounds the number of rounds
+     * @param count the maximum number of results to return
+     * 
+     * @return The sorted, ranked top results.
+     *
+     * @throws IllegalArgumentException invalid number of rounds or results
+     */
+    public static List<EntrantResult> generateTopResults(IResultsCompiler compiler, int rounds, int count)
+        throws IllegalArgumentException
+    {
+        if (count <= 0)
+        {
+            throw new IllegalArgumentException("Invalid number of results: " + count); //$NON-NLS-1$
+        }
+        long start = Metrics.start();
+        List<EntrantResult> currentResults = compiler.compileResults(rounds);
+
+        // Keep the best results seen so far, with the worst of them at the head.
+        Comparator<EntrantResult> order = compiler.thenComparingInt(EntrantResult::getEntrantID);
+        PriorityQueue<EntrantResult> best = new PriorityQueue<>(count + 1, order.reversed());
+        for (EntrantResult result : currentResults)
+        {
+            if (best.size() < count)
+            {
+                best.add(result);
+            }
+            else if (order.compare(result, best.peek()) < 0)
+            {
+                best.poll();
+                best.add(result);
+            }
+        }
+        List<EntrantResult> topResults = new ArrayList<>(best);
+        topResults.sort(order);
+        // Everyone ahead of a result is also in the top results so ranking them alone is correct.
+        rankResults(topResults, compiler);
+
+        if ((topResults.size() > 0) && (rounds > 1))
+        {
+            List<EntrantResult> previousResults = compiler.compileResults(rounds - 1);
+            for (EntrantResult result : topResults)
+            {
+                result.setPreviousRank(countRank(previousResults, result.getEntrantID(), compiler));
+            }
+        }
+        Metrics.record(Operation.TOP_RESULTS, compiler.getCompetitionID(), start);
+        return topResults;
+    }
+
+    /**
+     * Generates the given entrant's result, rank and previous rank for the
+     * given number of rounds of a competition without sorting the results.
+     * The ranks are found by counting the entrants ahead of this one.
+     * 
+     * @param compiler the results compiler to use
+     * @param rounds the number of rounds
+     * @param entrantID the entrant's ID
+     * 
+     * @return The ranked result.
+     *
+     * @throws IllegalArgumentException invalid number of rounds or unknown entrant
+     */
+    public static EntrantResult generateEntrantResult(IResultsCompiler compiler, int rounds, int entrantID)
+        throws IllegalArgumentException
+    {
+        long start = Metrics.start();
+        List<EntrantResult> currentResults = compiler.compileResults(rounds);
+        EntrantResult result = findResult(currentResults, entrantID);
+        if (result == null)
+        {
+            throw new IllegalArgumentException("Unknown entrant: " + entrantID); //$NON-NLS-1$
+        }
+        result.setRank(countRank(currentResults, entrantID, compiler));
+        if (rounds > 1)
+        {
+            result.setPreviousRank(countRank(compiler.compileResults(rounds - 1), entrantID, compiler));
+        }
+        Metrics.record(Operation.ENTRANT_RESULT, compiler.getCompetitionID(), start);
+        return result;
+    }
+
+    /**
+     * Determines the given entrant's rank within the given (unsorted) results.
+     * 
+     * @param results the results
+     * @param entrantID the entrant's ID
+     * @param comparator the result comparator
+     * 
+     * @return The entrant's rank or zero if the entrant has no result.
+     */
+    private static int countRank(List<EntrantResult> results, int entrantID, Comparator<EntrantResult> comparator)
+    {
+        EntrantResult result = findResult(results, entrantID);
+        if (result == null)
+        {
+            return 0;
+        }
+        int ahead = 0;
+        for (EntrantResult other : results)
+        {
+            if (comparator.compare(other, result) < 0)
+            {
+                ahead++;
+            }
+        }
+        return ahead + 1;
+    }
+
+    /**
+     * Finds the given entrant's result.
+     * 
+     * @param results the results to search
+     * @param entrantID the entrant's ID
+     * 
+     * @return The entrant's result or null if it is not present.
+     */
+    private static EntrantResult findResult(List<EntrantResult> results, int entrantID)
+    {
+        for (EntrantResult result : results)
+        {
+            if (result.getEntrantID() == entrantID)
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates a copy of a sorted, ranked leader board for the given changed
+     * results, leaving the given board unchanged. Only the changed entrants
+     * are moved (by binary search) and then ranks are re-assigned, so the
+     * board is not sorted again.
+     * 
+     * A change to the latest round leaves the previous ranks as they were.
+     * A change to an earlier round also changes the results after the
+     * previous round, so the previous ranks are re-calculated.
+     * 
+     * @param leaderBoard the existing leader board
+     * @param changedResults the new results of the entrants that changed
+     * @param compiler the results compiler that produced the results
+     * @param rounds the number of rounds the leader board covers
+     * @param round the position of the changed round (1-based)
+     * 
+     * @return The updated leader board.
+     *
+     * @throws IllegalArgumentException invalid number of rounds or changed round
+     */
+    @SuppressWarnings("boxing")
+    public static List<EntrantResult> updateLeaderBoard(List<EntrantResult> leaderBoard,
+            List<EntrantResult> changedResults, IResultsCompiler compiler, int rounds, int round)
+        throws IllegalArgumentException
+    {
+        if ((round <= 0) || (round > rounds))
+        {
+            throw new IllegalArgumentException("Invalid round: " + round); //$NON-NLS-1$
+        }
+        long start = Metrics.start();
+        Map<Integer, EntrantResult> changed = new HashMap<>();
+        changedResults.forEach(result -> changed.put(result.getEntrantID(), new EntrantResult(result)));
+        List<EntrantResult> updated = new ArrayList<>(leaderBoard.size());
+        for (EntrantResult result : leaderBoard)
+        {
+            EntrantResult copy = changed.get(result.getEntrantID());
+            if (copy == null)
+            {
+                copy = new EntrantResult(result);
+                updated.add(copy);
+            }
+            copy.setPreviousRank(result.getPreviousRank());
+        }
+
+        // Equal results are ordered by entrant ID, as per a generated leader board.
+        Comparator<EntrantResult> order = compiler.thenComparingInt(EntrantResult::getEntrantID);
+        for (EntrantResult result : changed.values())
+        {
+            int position = Collections.binarySearch(updated, result, order);
+            updated.add((position < 0) ? -(position + 1) : position, result);
+        }
+        rankResults(updated, compiler);
+        if (round < rounds)
+        {
+            List<EntrantResult> previousResults = compiler.compileResults(rounds - 1);
+            SortKeys.sortAndRank(previousResults, compiler.getComparisonSpecification());
+            addPreviousRank(updated, previousResults);
+        }
+        Metrics.record(Operation.LEADER_BOARD_UPDATE, compiler.getCompetitionID(), start);
+        return updated;
+    }
+
     /**
      * Compile the history of the entrants' rank over all the rounds.
      * 
@@ -74,7 +283,10 @@ public class LeaderBoardGenerator
      */
     public static List<EntrantHistory> generateRankHistory(IResultsCompiler compiler, int rounds)
     {
-        return generateHistory(compiler, rounds, true, null);
+        long start = Metrics.start();
+        List<EntrantHistory> history = generateHistory(compiler, rounds, true, null);
+        Metrics.record(Operation.RANK_HISTORY, compiler.getCompetitionID(), start);
+        return history;
     }
     
     /**
@@ -89,7 +301,10 @@ public class LeaderBoardGenerator
      */
     public static List<EntrantHistory> generateResultHistory(IResultsCompiler compiler, int rounds, String resultItem)
     {
-        return generateHistory(compiler, rounds, false, resultItem);
+        long start = Metrics.start();
+        List<EntrantHistory> history = generateHistory(compiler, rounds, false, resultItem);
+        Metrics.record(Operation.RESULT_HISTORY, compiler.getCompetitionID(), start);
+        return history;
     }
 
     /**
@@ -112,9 +327,12 @@ public class LeaderBoardGenerator
         }
         Map<Integer, Number[]> historyData = new HashMap<>();
         List<EntrantResult> results = null;
+        // Evaluate each round once and rank the running results as we go.
+        List<List<EntrantResult>> cumulativeResults = compiler.compileCumulativeResults(rounds);
         for (int i = 1; i <= rounds; i++)
         {
-            results = generateLeaderBoard(compiler, i);
+            results = cumulativeResults.get(i - 1);
+            postProcessResults(results, new ArrayList<>(), compiler);
             for (EntrantResult result : results)
             {
                 int entrantID = result.getEntrantID();
@@ -164,36 +382,23 @@ public class LeaderBoardGenerator
      * Post-processes the compiled results. This includes sorting, ranking
      * and comparison with the results up to the previous round.
      * 
+     * If two (or more) entrants have the same rank, they are sorted by
+     * entrant ID in ascending order. This is purely so the sort order is
+     * deterministic. This will help with testing amongst other things.
+     * 
      * @param currentResults the current results
      * @param previousResults the previous results (can be empty)
-     * @param comparator the result comparator
+     * @param compiler the results compiler
      */
-    private static void postProcessResults(List<EntrantResult> currentResults, List<EntrantResult> previousResults, Comparator<EntrantResult> comparator)
+    private static void postProcessResults(List<EntrantResult> currentResults, List<EntrantResult> previousResults, IResultsCompiler compiler)
     {
         if (currentResults.size() > 0)
         {
-            currentResults.sort(comparator);
-
-            rankResults(currentResults, comparator);
-
-            /*
-             * If two (or more) teams have the same rank, we sort them by entrant ID
-             * in ascending order. This is purely so the sort order is deterministic.
-             * This will help with testing amongst other things. 
-             */
-            currentResults.sort((EntrantResult result1, EntrantResult result2) -> {
-                int rc = Integer.compare(result1.getRank(), result2.getRank());
-                if (rc == 0)
-                {
-                    rc = Integer.compare(result1.getEntrantID(), result2.getEntrantID());
-                }
-                return rc;
-            });
+            SortKeys.sortAndRank(currentResults, compiler.getComparisonSpecification());
 
             if (previousResults.size() > 0)
             {
-                previousResults.sort(comparator);
-                rankResults(previousResults, comparator);
+                SortKeys.sortAndRank(previousResults, compiler.getComparisonSpecification());
                 addPreviousRank(currentResults, previousResults);
             }
         }
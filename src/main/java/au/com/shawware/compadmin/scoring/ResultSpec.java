@@ -7,6 +7,7 @@
 
 package au.com.shawware.compadmin.scoring;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -16,19 +17,33 @@ import au.com.shawware.util.StringUtil;
 /**
  * Maintains an ordered set of items and their types to include in a result.
  *
+ * Each item is also given a fixed slot, numbered separately for integer
+ * and floating point items, so results can store their values in arrays.
+ * Once a specification has been used to create a result, no more items
+ * can be added to it.
+ *
  * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
  */
 public class ResultSpec
 {
     /** The specification itself. */
     private final Map<String, Boolean> mSpec;
+    /** The slot assigned to each item. */
+    private final Map<String, Integer> mSlots;
+    /** The number of integer items. */
+    private int mIntegerItems;
+    /** The number of floating point items. */
+    private int mFloatingPointItems;
+    /** Whether this specification is in use and so cannot change. */
+    private volatile boolean mSealed;
 
     /**
      * Constructs a new, empty specification.
      */
     public ResultSpec()
     {
-        mSpec = new LinkedHashMap<>();
+        mSpec  = new LinkedHashMap<>();
+        mSlots = new HashMap<>();
     }
 
     /**
@@ -51,12 +66,19 @@ public class ResultSpec
      * @param isInteger whether the item is integral or floating point
      * 
      * @throws IllegalArgumentException empty item name or item already present
+     * @throws IllegalStateException the specification is already in use
      */
-    public void addItem(String name, boolean isInteger)
-        throws IllegalArgumentException
+    @SuppressWarnings("boxing")
+    public synchronized void addItem(String name, boolean isInteger)
+        throws IllegalArgumentException, IllegalStateException
     {
         verifyUnknown(name);
+        if (mSealed)
+        {
+            throw new IllegalStateException("Specification in use, cannot add: " + name); //$NON-NLS-1$
+        }
         mSpec.put(name, Boolean.valueOf(isInteger));
+        mSlots.put(name, isInteger ? mIntegerItems++ : mFloatingPointItems++);
     }
 
     /**
@@ -111,6 +133,57 @@ public class ResultSpec
         return !isInteger(name);
     }
 
+    /**
+     * The slot for the given item. Integer and floating point items are
+     * numbered separately, starting from zero, in the order they were added.
+     * 
+     * @param name the item name
+     * 
+     * @return The item's slot.
+     * 
+     * @throws IllegalArgumentException empty item name or item name is not present
+     */
+    public int getSlot(String name)
+        throws IllegalArgumentException
+    {
+        verifyKnown(name);
+        return mSlots.get(name).intValue();
+    }
+
+    /**
+     * @return The number of integer items.
+     */
+    public int getIntegerItemCount()
+    {
+        return mIntegerItems;
+    }
+
+    /**
+     * @return The number of floating point items.
+     */
+    public int getFloatingPointItemCount()
+    {
+        return mFloatingPointItems;
+    }
+
+    /**
+     * Prevents any further items being added to this specification.
+     * Called once a result depends on the current slot assignments,
+     * so every result construction calls it; only the first takes the
+     * lock, which it shares with {@link #addItem(String, boolean)}.
+     */
+    /*package*/ void seal()
+    {
+        if (mSealed)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            mSealed = true;
+        }
+    }
+
     /**
      * Verifies that the given item is already present in this specification.
      * 
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * Accumulates the results of all entrants in columns of primitives, one
+ * column per result item slot, indexed by each entrant's dense index.
+ * The results are converted to {@link EntrantResult}s once compilation
+ * is complete.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class ResultTable
+{
+    /** The result item specification. */
+    private final ResultSpec mSpec;
+    /** The entrants and their indices. */
+    private final EntrantIndex mIndex;
+    /** The integer items by slot, then by entrant index. */
+    private final int[][] mIntegerItems;
+    /** The floating point items by slot, then by entrant index. */
+    private final double[][] mFloatingPointItems;
+
+    /**
+     * Constructs a new, empty table.
+     * 
+     * @param spec the result item specification
+     * @param index the entrants and their indices
+     * 
+     * @throws IllegalArgumentException empty specification or index
+     */
+    public ResultTable(ResultSpec spec, EntrantIndex index)
+        throws IllegalArgumentException
+    {
+        if ((spec == null) || (spec.getItemNames().size() == 0))
+        {
+            throw new IllegalArgumentException("Empty result specification"); //$NON-NLS-1$
+        }
+        if (index == null)
+        {
+            throw new IllegalArgumentException("Empty entrant index"); //$NON-NLS-1$
+        }
+        spec.seal();
+        mSpec               = spec;
+        mIndex              = index;
+        mIntegerItems       = new int[spec.getIntegerItemCount()][index.size()];
+        mFloatingPointItems = new double[spec.getFloatingPointItemCount()][index.size()];
+    }
+
+    /**
+     * Constructs a copy of the given table.
+     * 
+     * @param that the table to copy
+     */
+    public ResultTable(ResultTable that)
+    {
+        mSpec               = that.mSpec;
+        mIndex              = that.mIndex;
+        mIntegerItems       = new int[that.mIntegerItems.length][];
+        mFloatingPointItems = new double[that.mFloatingPointItems.length][];
+        for (int i = 0; i < mIntegerItems.length; i++)
+        {
+            mIntegerItems[i] = that.mIntegerItems[i].clone();
+        }
+        for (int i = 0; i < mFloatingPointItems.length; i++)
+        {
+            mFloatingPointItems[i] = that.mFloatingPointItems[i].clone();
+        }
+    }
+
+    /**
+     * @return The result item specification.
+     */
+    public ResultSpec getResultSpecification()
+    {
+        return mSpec;
+    }
+
+    /**
+     * @return The entrants and their indices.
+     */
+    public EntrantIndex getEntrantIndex()
+    {
+        return mIndex;
+    }
+
+    /**
+     * The index of the given entrant.
+     * 
+     * @param entrantID the entrant's ID
+     * 
+     * @return The entrant's index.
+     * 
+     * @throws IllegalArgumentException unknown entrant
+     */
+    public int indexOf(int entrantID)
+        throws IllegalArgumentException
+    {
+        int index = mIndex.indexOf(entrantID);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Unknown entrant: " + entrantID); //$NON-NLS-1$
+        }
+        return index;
+    }
+
+    /**
+     * Returns an entrant's integer result item.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param entrant the entrant's index
+     * 
+     * @return The result item's value.
+     */
+    public int getIntegerItem(int slot, int entrant)
+    {
+        return mIntegerItems[slot][entrant];
+    }
+
+    /**
+     * Increments an entrant's integer result item.
+     * The amount can be negative if desired.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param entrant the entrant's index
+     * @param increment the amount to increment by
+     */
+    public void incrementIntegerItem(int slot, int entrant, int increment)
+    {
+        mIntegerItems[slot][entrant] += increment;
+    }
+
+    /**
+     * Returns an entrant's floating point result item.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param entrant the entrant's index
+     * 
+     * @return The result item's value.
+     */
+    public double getFloatingPointItem(int slot, int entrant)
+    {
+        return mFloatingPointItems[slot][entrant];
+    }
+
+    /**
+     * Sets an entrant's floating point result item.
+     * 
+     * @param slot the item's slot (see {@link ResultSpec#getSlot(String)})
+     * @param entrant the entrant's index
+     * @param newValue the new value for the result item
+     */
+    public void setFloatingPointItem(int slot, int entrant, double newValue)
+    {
+        mFloatingPointItems[slot][entrant] = newValue;
+    }
+
+    /**
+     * Adds every item in the given table to the same item in this table.
+     * Typically used to apply a change (delta) to accumulated results.
+     * 
+     * @param delta the table to add
+     * 
+     * @throws IllegalArgumentException the tables' shapes do not match
+     */
+    public void add(ResultTable delta)
+        throws IllegalArgumentException
+    {
+        if ((delta.mIndex != mIndex) ||
+            (delta.mIntegerItems.length != mIntegerItems.length) ||
+            (delta.mFloatingPointItems.length != mFloatingPointItems.length))
+        {
+            throw new IllegalArgumentException("Mismatched result tables"); //$NON-NLS-1$
+        }
+        for (int slot = 0; slot < mIntegerItems.length; slot++)
+        {
+            for (int entrant = 0; entrant < mIndex.size(); entrant++)
+            {
+                mIntegerItems[slot][entrant] += delta.mIntegerItems[slot][entrant];
+            }
+        }
+        for (int slot = 0; slot < mFloatingPointItems.length; slot++)
+        {
+            for (int entrant = 0; entrant < mIndex.size(); entrant++)
+            {
+                mFloatingPointItems[slot][entrant] += delta.mFloatingPointItems[slot][entrant];
+            }
+        }
+    }
+
+    /**
+     * Finds the entrants with at least one non-zero item. For a delta,
+     * these are the entrants whose results change.
+     * 
+     * @return The indices of the entrants, in ascending order.
+     */
+    public int[] getNonZeroEntrants()
+    {
+        boolean[] nonZero = new boolean[mIndex.size()];
+        for (int[] column : mIntegerItems)
+        {
+            for (int entrant = 0; entrant < column.length; entrant++)
+            {
+                nonZero[entrant] |= (column[entrant] != 0);
+            }
+        }
+        for (double[] column : mFloatingPointItems)
+        {
+            for (int entrant = 0; entrant < column.length; entrant++)
+            {
+                nonZero[entrant] |= (column[entrant] != 0.0);
+            }
+        }
+        int count = 0;
+        int[] entrants = new int[nonZero.length];
+        for (int entrant = 0; entrant < nonZero.length; entrant++)
+        {
+            if (nonZero[entrant])
+            {
+                entrants[count++] = entrant;
+            }
+        }
+        return Arrays.copyOf(entrants, count);
+    }
+
+    /**
+     * Converts this table to a result per entrant, in entrant index order.
+     * 
+     * @return The results.
+     */
+    public List<EntrantResult> toResults()
+    {
+        List<EntrantResult> results = new ArrayList<>(mIndex.size());
+        for (int entrant = 0; entrant < mIndex.size(); entrant++)
+        {
+            results.add(toResult(entrant));
+        }
+        return results;
+    }
+
+    /**
+     * Converts a single entrant's row of this table to a result.
+     * 
+     * @param entrant the entrant's index
+     * 
+     * @return The entrant's result.
+     */
+    public EntrantResult toResult(int entrant)
+    {
+        EntrantResult result = new EntrantResult(mIndex.getEntrantID(entrant), mSpec);
+        for (int slot = 0; slot < mIntegerItems.length; slot++)
+        {
+            result.incrementIntegerItem(slot, mIntegerItems[slot][entrant]);
+        }
+        for (int slot = 0; slot < mFloatingPointItems.length; slot++)
+        {
+            result.setFloatingPointItem(slot, mFloatingPointItems[slot][entrant]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return StringUtil.toString(mSpec, mIndex);
+    }
+}
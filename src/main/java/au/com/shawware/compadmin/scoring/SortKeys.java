@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts and ranks results using primitive sort keys compiled from a
+ * comparison specification, rather than calling a comparator that looks
+ * up each comparison item for every pair of results.
+ *
+ * Each comparison item is encoded as an unsigned offset from the best
+ * value present, so smaller keys are better results. Integer items use
+ * their value and floating point items use a sortable encoding of their
+ * bits. When the items (and the entrants' positions in entrant ID order)
+ * fit into 63 bits, each result's key is packed into a single long and
+ * the keys are sorted directly. Otherwise the keys are compared item by
+ * item.
+ *
+ * Results with equal keys share a rank and are ordered by entrant ID,
+ * purely so the order is deterministic.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+/*package*/ final class SortKeys
+{
+    /**
+     * This class cannot be instantiated.
+     */
+    private SortKeys()
+    {
+    }
+
+    /**
+     * Sorts the given results (best first, then by entrant ID) and assigns
+     * their ranks.
+     *
+     * @param results the results to sort and rank
+     * @param comparisonSpec the items used to order and rank results
+     */
+    /*package*/ static void sortAndRank(List<EntrantResult> results, ResultSpec comparisonSpec)
+    {
+        int n = results.size();
+        if (n == 0)
+        {
+            return;
+        }
+        EntrantResult[] input = results.toArray(new EntrantResult[n]);
+        long[][] keys = encode(input, new ArrayList<>(comparisonSpec.getItemNames()));
+
+        // Each result's position in entrant ID order breaks ties.
+        long[] byID = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            byID[i] = ((long)input[i].getEntrantID() << Integer.SIZE) | i;
+        }
+        Arrays.sort(byID);
+        int[] idOrder = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            idOrder[i] = (int)byID[i];
+        }
+
+        int idBits = Integer.SIZE - Integer.numberOfLeadingZeros(n - 1);
+        int[] widths = new int[keys.length];
+        int keyBits = 0;
+        for (int k = 0; k < keys.length; k++)
+        {
+            long range = 0;
+            for (long value : keys[k])
+            {
+                range |= value;
+            }
+            widths[k] = Long.SIZE - Long.numberOfLeadingZeros(range);
+            keyBits += widths[k];
+        }
+
+        int[] order;
+        boolean[] tied = new boolean[n];
+        if (keyBits + idBits < Long.SIZE)
+        {
+            long[] packed = new long[n];
+            for (int position = 0; position < n; position++)
+            {
+                int i = idOrder[position];
+                long key = 0;
+                for (int k = 0; k < keys.length; k++)
+                {
+                    key = (key << widths[k]) | keys[k][i];
+                }
+                packed[position] = (key << idBits) | position;
+            }
+            Arrays.sort(packed);
+            order = new int[n];
+            long mask = (1L << idBits) - 1;
+            for (int r = 0; r < n; r++)
+            {
+                order[r] = idOrder[(int)(packed[r] & mask)];
+                tied[r] = (r > 0) && ((packed[r] >>> idBits) == (packed[r - 1] >>> idBits));
+            }
+        }
+        else
+        {
+            Integer[] sorted = new Integer[n];
+            for (int position = 0; position < n; position++)
+            {
+                sorted[position] = Integer.valueOf(idOrder[position]);
+            }
+            // The sort is stable so equal keys remain in entrant ID order.
+            Arrays.sort(sorted, (i1, i2) -> compare(keys, i1.intValue(), i2.intValue()));
+            order = new int[n];
+            for (int r = 0; r < n; r++)
+            {
+                order[r] = sorted[r].intValue();
+                tied[r] = (r > 0) && (compare(keys, order[r], order[r - 1]) == 0);
+            }
+        }
+
+        for (int r = 0; r < n; r++)
+        {
+            EntrantResult result = input[order[r]];
+            result.setRank(tied[r] ? results.get(r - 1).getRank() : r + 1);
+            results.set(r, result);
+        }
+    }
+
+    /**
+     * Encodes each comparison item of each result as an unsigned offset
+     * from the best value of that item.
+     *
+     * @param results the results to encode
+     * @param names the comparison item names
+     *
+     * @return The encoded keys, indexed by item and then result.
+     */
+    private static long[][] encode(EntrantResult[] results, List<String> names)
+    {
+        int n = results.length;
+        long[][] keys = new long[names.size()][n];
+        ResultSpec spec = null;
+        int[] slots = new int[names.size()];
+        boolean[] integer = new boolean[names.size()];
+        for (int i = 0; i < n; i++)
+        {
+            // Results from one compiler share a specification so this is normally resolved once.
+            if (results[i].getResultSpecification() != spec)
+            {
+                spec = results[i].getResultSpecification();
+                for (int k = 0; k < slots.length; k++)
+                {
+                    slots[k]   = spec.getSlot(names.get(k));
+                    integer[k] = spec.isInteger(names.get(k));
+                }
+            }
+            for (int k = 0; k < slots.length; k++)
+            {
+                // Larger values are better so invert them, keeping signed order.
+                keys[k][i] = integer[k] ? ~(long)results[i].getIntegerItem(slots[k])
+                                        : ~sortableBits(results[i].getFloatingPointItem(slots[k]));
+            }
+        }
+        for (long[] key : keys)
+        {
+            long best = Long.MAX_VALUE;
+            for (long value : key)
+            {
+                best = Math.min(best, value);
+            }
+            for (int i = 0; i < n; i++)
+            {
+                key[i] -= best; // An unsigned difference, which may use all 64 bits.
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Converts a double into a long with the same signed order as
+     * {@link Double#compare(double, double)}.
+     *
+     * @param value the value to convert
+     *
+     * @return The sortable bits.
+     */
+    private static long sortableBits(double value)
+    {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> (Long.SIZE - 1)) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Compares two results' keys item by item.
+     *
+     * @param keys the encoded keys
+     * @param i1 the first result's index
+     * @param i2 the second result's index
+     *
+     * @return An integer as per {@link java.util.Comparator#compare(Object, Object)}.
+     */
+    private static int compare(long[][] keys, int i1, int i2)
+    {
+        for (long[] key : keys)
+        {
+            int rc = Long.compareUnsigned(key[i1], key[i2]);
+            if (rc != 0)
+            {
+                return rc;
+            }
+        }
+        return 0;
+    }
+}
@@ -20,6 +20,7 @@ import au.com.shawware.compadmin.converter.IConverter;
 import au.com.shawware.compadmin.scoring.EntrantResult;
 import au.com.shawware.finska.entity.FinskaCompetition;
 import au.com.shawware.finska.entity.Player;
+import au.com.shawware.finska.persistence.EntityRepository;
 import au.com.shawware.finska.scoring.ScoringSystem;
 import au.com.shawware.finska.service.ResultsService;
 import au.com.shawware.finska.service.ServiceFactory;
@@ -52,7 +53,10 @@ public class Finska
     {
         PersistenceFactory factory = PersistenceFactory.getFactory(dataDir);
         ScoringSystem scoringSystem = new ScoringSystem(3, 1, 1, 1, 0);
-        mService = ServiceFactory.getFactory(factory, scoringSystem).getResultsService();
+        // Avoid parsing every entity file when the data has not changed since the last run.
+        EntityRepository repository = EntityRepository.getRepository(factory);
+        repository.setSnapshotEnabled(true);
+        mService = ServiceFactory.getFactory(factory, repository, scoringSystem).getResultsService();
         mOutputDir  = outputDir;
     }
 
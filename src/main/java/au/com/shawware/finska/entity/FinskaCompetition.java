@@ -8,6 +8,8 @@
 package au.com.shawware.finska.entity;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -44,4 +46,50 @@ public class FinskaCompetition extends Competition<Player, FinskaRound, FinskaMa
     {
         this(DEFAULT_ID, name, startDate);
     }
+
+    /**
+     * Makes a deep copy of this competition. Its entrants, rounds, matches
+     * and their players are all copied, with a single copy of each player,
+     * so later changes to this competition do not affect the copy.
+     * 
+     * If this competition's rounds have not been loaded yet, nor are the
+     * copy's: they are loaded and copied when the copy first needs them,
+     * so they are copied as they are at that time.
+     *
+     * @return The copy.
+     */
+    public FinskaCompetition copy()
+    {
+        Map<Integer, Player> players = new HashMap<>();
+        FinskaCompetition competition = new FinskaCompetition(getId(), getKey(), getStartDate());
+        competition.setEntrantIds(getEntrantIds());
+        for (Player entrant : getEntrantMap().values())
+        {
+            competition.addEntrant(entrant.copy(players));
+        }
+        competition.setRoundIds(getRoundIds());
+        if (hasRoundLoader())
+        {
+            competition.setRoundLoader(() -> copyRounds(competition, players));
+        }
+        else
+        {
+            copyRounds(competition, players);
+        }
+        return competition;
+    }
+
+    /**
+     * Copies this competition's rounds into the given copy.
+     * 
+     * @param competition the copy
+     * @param players the copies of the players made so far
+     */
+    private void copyRounds(FinskaCompetition competition, Map<Integer, Player> players)
+    {
+        for (FinskaRound round : getRounds())
+        {
+            competition.addRound(round.copy(players));
+        }
+    }
 }
@@ -8,8 +8,6 @@
 package au.com.shawware.finska.entity;
 
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,10 +24,13 @@ import au.com.shawware.util.StringUtil;
  */
 public class FinskaMatch extends Match
 {
+    /** No winning players. */
+    private static final Player[] NO_PLAYERS = new Player[0];
+
     /** The winning players' IDs. */
-    private Set<Integer> mWinnerIds;
-    /** The winning players. */
-    private Map<Integer, Player> mWinners;
+    private final IdSet mWinnerIds;
+    /** The winning players, aligned with their IDs (null if not yet linked, or spare). */
+    private Player[] mWinners;
     /** Did the winners complete their win in 5 tosses.  */
     private boolean mFastWin;
 
@@ -45,8 +46,8 @@ public class FinskaMatch extends Match
                        @JsonProperty("matchDate") LocalDate matchDate)
     {
         super(id, number, matchDate);
-        mWinnerIds     = new HashSet<>();
-        mWinners       = new HashMap<>();
+        mWinnerIds     = new IdSet();
+        mWinners       = NO_PLAYERS;
         mFastWin       = false;
     }
 
@@ -75,19 +76,23 @@ public class FinskaMatch extends Match
      * 
      * @param player the winning player to add
      */
-    @SuppressWarnings("boxing")
     public void addWinner(Player player)
     {
         if (player == null)
         {
             throw new IllegalArgumentException("Null player"); //$NON-NLS-1$
         }
-        if (mWinners.containsKey(player.getId()))
+        int index = mWinnerIds.indexOf(player.getId());
+        if (index < 0)
+        {
+            index = mWinnerIds.insert(player.getId());
+            mWinners = IdSet.insert(mWinners, mWinnerIds.size() - 1, index, null);
+        }
+        else if (mWinners[index] != null)
         {
             throw new IllegalArgumentException("Player " + player.getId() + " has already been recorded"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        mWinnerIds.add(player.getId());
-        mWinners.put(player.getId(), player);
+        mWinners[index] = player;
     }
 
     /**
@@ -98,7 +103,6 @@ public class FinskaMatch extends Match
      * @return Whether the given player is a winner.
      */
     @JsonIgnore
-    @SuppressWarnings("boxing")
     public boolean isWinner(int id)
     {
         // TODO: how do we validate the ID belongs to a valid player?
@@ -115,35 +119,52 @@ public class FinskaMatch extends Match
      * @throws IllegalArgumentException player cannot be found
      */
     @JsonIgnore
-    @SuppressWarnings("boxing")
     public Player getWinner(int id)
         throws IllegalArgumentException
     {
-        if (!mWinners.containsKey(id))
+        int index = mWinnerIds.indexOf(id);
+        if ((index < 0) || (mWinners[index] == null))
         {
             throw new IllegalArgumentException("Player " + id + " is not present in this match"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        return mWinners.get(id);
+        return mWinners[index];
     }
 
     /**
-     * @return This match's winning players' IDs.
+     * @return This match's winning players' IDs (read-only).
      */
     public Set<Integer> getWinnerIds()
     {
         return mWinnerIds;
     }
 
+    /**
+     * @return This match's winning players' IDs, in ascending order
+     *         so they can be walked by position without boxing (read-only).
+     */
+    @JsonIgnore
+    public IdSet getWinnerIdSet()
+    {
+        return mWinnerIds;
+    }
+
     /**
      * Sets this match's winning players' IDs.
      * 
      * @param winnerIds the winning players' IDs
      */
+    @SuppressWarnings("boxing")
     public void setWinnerIds(Set<Integer> winnerIds)
     {
-        mWinners.clear();
-        mWinnerIds.clear();
-        mWinnerIds.addAll(winnerIds);
+        mWinnerIds.reset();
+        for (Integer id : winnerIds)
+        {
+            if (!mWinnerIds.contains(id))
+            {
+                mWinnerIds.insert(id);
+            }
+        }
+        mWinners = new Player[mWinnerIds.size()];
     }
 
     /**
@@ -166,6 +187,29 @@ public class FinskaMatch extends Match
         mFastWin = fastWin;
     }
 
+    /**
+     * Copies this match and its winners.
+     *
+     * @param players the player copies made so far, by player ID
+     *
+     * @return The copy.
+     */
+    @SuppressWarnings("boxing")
+    /*package*/ FinskaMatch copy(Map<Integer, Player> players)
+    {
+        FinskaMatch match = new FinskaMatch(getId(), getKey(), getMatchDate());
+        match.setWinnerIds(mWinnerIds);
+        for (Player winner : mWinners)
+        {
+            if (winner != null)
+            {
+                match.addWinner(winner.copy(players));
+            }
+        }
+        match.setFastWin(mFastWin);
+        return match;
+    }
+
     @Override
     @SuppressWarnings("boxing")
     public String toString()
@@ -8,10 +8,10 @@
 package au.com.shawware.finska.entity;
 
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -28,10 +28,13 @@ import au.com.shawware.util.StringUtil;
  */
 public class FinskaRound extends Round<FinskaMatch>
 {
+    /** No players. */
+    private static final Player[] NO_PLAYERS = new Player[0];
+
     /** The IDs of the players who participated. */
-    private final Set<Integer> mPlayersIds;
-    /** The players who participated. */
-    private final Map<Integer, Player> mPlayers;
+    private final IdSet mPlayersIds;
+    /** The players who participated, aligned with their IDs (null if not yet linked, or spare). */
+    private Player[] mPlayers;
 
     /**
      * Constructs a new Finska round.
@@ -45,8 +48,8 @@ public class FinskaRound extends Round<FinskaMatch>
                        @JsonProperty("roundDate") LocalDate roundDate)
     {
         super(id, number, roundDate);
-        mPlayersIds = new HashSet<>();
-        mPlayers    = new HashMap<>();
+        mPlayersIds = new IdSet();
+        mPlayers    = NO_PLAYERS;
      }
 
     /**
@@ -61,23 +64,40 @@ public class FinskaRound extends Round<FinskaMatch>
     }
 
     /**
-     * @return The IDs of the players who participated.
+     * @return The IDs of the players who participated (read-only).
      */
     public Set<Integer> getPlayerIds()
     {
         return mPlayersIds;
     }
 
+    /**
+     * @return The IDs of the players who participated, in ascending order
+     *         so they can be walked by position without boxing (read-only).
+     */
+    @JsonIgnore
+    public IdSet getPlayerIdSet()
+    {
+        return mPlayersIds;
+    }
+
     /**
      * Sets the IDs of the players who participated.
      * 
      * @param playerIds the player IDs
      */
+    @SuppressWarnings("boxing")
     public void setPlayerIds(Set<Integer> playerIds)
     {
-        mPlayers.clear();
-        mPlayersIds.clear();
-        mPlayersIds.addAll(playerIds);
+        mPlayersIds.reset();
+        for (Integer id : playerIds)
+        {
+            if (!mPlayersIds.contains(id))
+            {
+                mPlayersIds.insert(id);
+            }
+        }
+        mPlayers = new Player[mPlayersIds.size()];
     }
 
     /**
@@ -85,15 +105,19 @@ public class FinskaRound extends Round<FinskaMatch>
      * 
      * @param player the player to add
      */
-    @SuppressWarnings("boxing")
     public void addPlayer(Player player)
     {
         if (player == null)
         {
             throw new IllegalArgumentException("Null player"); //$NON-NLS-1$
         }
-        mPlayersIds.add(player.getId());
-        mPlayers.put(player.getId(), player);
+        int index = mPlayersIds.indexOf(player.getId());
+        if (index < 0)
+        {
+            index = mPlayersIds.insert(player.getId());
+            mPlayers = IdSet.insert(mPlayers, mPlayersIds.size() - 1, index, null);
+        }
+        mPlayers[index] = player;
     }
 
     /**
@@ -103,10 +127,10 @@ public class FinskaRound extends Round<FinskaMatch>
      * 
      * @return Whether this round has this player.
      */
-    @SuppressWarnings("boxing")
     public boolean hasPlayer(int id)
     {
-        return mPlayers.containsKey(id);
+        int index = mPlayersIds.indexOf(id);
+        return (index >= 0) && (mPlayers[index] != null);
     }
 
     /**
@@ -119,7 +143,6 @@ public class FinskaRound extends Round<FinskaMatch>
      * @throws IllegalArgumentException player cannot be found
      */
     @JsonIgnore
-    @SuppressWarnings("boxing")
     public Player getPlayer(int id)
         throws IllegalArgumentException
     {
@@ -127,7 +150,7 @@ public class FinskaRound extends Round<FinskaMatch>
         {
             throw new IllegalArgumentException("Player " + id + " is not present in this round"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-        return mPlayers.get(id);
+        return mPlayers[mPlayersIds.indexOf(id)];
     }
 
     /**
@@ -136,7 +159,34 @@ public class FinskaRound extends Round<FinskaMatch>
     @JsonIgnore
     public List<Player> getPlayers()
     {
-        return mPlayers.values().stream().collect(Collectors.toList());
+        return Arrays.stream(mPlayers).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Copies this round, its players and its matches.
+     *
+     * @param players the player copies made so far, by player ID
+     *
+     * @return The copy.
+     */
+    @SuppressWarnings("boxing")
+    /*package*/ FinskaRound copy(Map<Integer, Player> players)
+    {
+        FinskaRound round = new FinskaRound(getId(), getKey(), getRoundDate());
+        round.setPlayerIds(mPlayersIds);
+        for (Player player : mPlayers)
+        {
+            if (player != null)
+            {
+                round.addPlayer(player.copy(players));
+            }
+        }
+        round.setMatchIds(getMatchIds());
+        for (FinskaMatch match : getMatches())
+        {
+            round.addMatch(match.copy(players));
+        }
+        return round;
     }
 
     @Override
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.entity;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, read-only view of a set of entity IDs, held as a sorted
+ * array of primitive IDs rather than as boxed integers in a hash set.
+ * Only the owning entity may change the set.
+ *
+ * The IDs are kept in ascending order so each ID's position can be
+ * used to index arrays held alongside the set.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public final class IdSet extends AbstractSet<Integer>
+{
+    /** An empty array of IDs. */
+    private static final int[] NO_IDS = new int[0];
+
+    /** The IDs in ascending order (the array may have spare capacity). */
+    private int[] mIds;
+    /** The number of IDs held. */
+    private int mSize;
+
+    /**
+     * Constructs a new, empty set.
+     */
+    /*package*/ IdSet()
+    {
+        mIds  = NO_IDS;
+        mSize = 0;
+    }
+
+    /**
+     * Searches for the given ID.
+     *
+     * @param id the ID to find
+     *
+     * @return The ID's position or (-(insertion point) - 1) if it is not present.
+     */
+    public int indexOf(int id)
+    {
+        // IDs are usually added in order, so check the end first.
+        if ((mSize == 0) || (id > mIds[mSize - 1]))
+        {
+            return -(mSize + 1);
+        }
+        return Arrays.binarySearch(mIds, 0, mSize, id);
+    }
+
+    /**
+     * Whether this set holds the given ID.
+     *
+     * @param id the ID to check
+     *
+     * @return Whether the ID is present.
+     */
+    public boolean contains(int id)
+    {
+        return (indexOf(id) >= 0);
+    }
+
+    @Override
+    public boolean contains(Object id)
+    {
+        return (id instanceof Integer) && contains(((Integer)id).intValue());
+    }
+
+    /**
+     * Retrieves the ID at the given position.
+     *
+     * @param index the position (0 is the smallest ID)
+     *
+     * @return The ID.
+     *
+     * @throws IndexOutOfBoundsException invalid position
+     */
+    public int get(int index)
+        throws IndexOutOfBoundsException
+    {
+        if ((index < 0) || (index >= mSize))
+        {
+            throw new IndexOutOfBoundsException("Invalid index: " + index); //$NON-NLS-1$
+        }
+        return mIds[index];
+    }
+
+    /**
+     * @return A copy of the IDs in ascending order.
+     */
+    public int[] toIntArray()
+    {
+        return Arrays.copyOf(mIds, mSize);
+    }
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+    @Override
+    public Iterator<Integer> iterator()
+    {
+        return new Iterator<Integer>() {
+            private int mNext = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return (mNext < mSize);
+            }
+
+            @Override
+            @SuppressWarnings("boxing")
+            public Integer next()
+            {
+                if (mNext >= mSize)
+                {
+                    throw new NoSuchElementException();
+                }
+                return mIds[mNext++];
+            }
+        };
+    }
+
+    @Override
+    public boolean add(Integer id)
+    {
+        throw new UnsupportedOperationException("Read-only ID set"); //$NON-NLS-1$
+    }
+
+    @Override
+    public boolean remove(Object id)
+    {
+        throw new UnsupportedOperationException("Read-only ID set"); //$NON-NLS-1$
+    }
+
+    @Override
+    public void clear()
+    {
+        throw new UnsupportedOperationException("Read-only ID set"); //$NON-NLS-1$
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other instanceof IdSet)
+        {
+            IdSet that = (IdSet)other;
+            if (mSize != that.mSize)
+            {
+                return false;
+            }
+            for (int i = 0; i < mSize; i++)
+            {
+                if (mIds[i] != that.mIds[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        // Consistent with the sum of the boxed IDs' hash codes used by other sets.
+        int hash = 0;
+        for (int i = 0; i < mSize; i++)
+        {
+            hash += mIds[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Adds the given ID to this set, which must not already hold it.
+     *
+     * @param id the ID to add
+     *
+     * @return The ID's position in the set.
+     */
+    /*package*/ int insert(int id)
+    {
+        int index = -(indexOf(id) + 1);
+        if (mSize == mIds.length)
+        {
+            mIds = Arrays.copyOf(mIds, Math.max(4, mSize * 2));
+        }
+        System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+        mIds[index] = id;
+        mSize++;
+        return index;
+    }
+
+    /**
+     * Removes all the IDs from this set.
+     */
+    /*package*/ void reset()
+    {
+        mIds  = NO_IDS;
+        mSize = 0;
+    }
+
+    /**
+     * Inserts the given value into the given array (which holds one value
+     * for each ID in a set, and may have spare room at the end) to match
+     * an ID just inserted. The array grows by doubling when it is full.
+     *
+     * @param values the values, one per ID
+     * @param size the number of values before the insertion
+     * @param index the position the ID was inserted at
+     * @param value the new value
+     *
+     * @return The array of values, which is a new array if it had to grow.
+     */
+    /*package*/ static <T> T[] insert(T[] values, int size, int index, T value)
+    {
+        T[] result = (size == values.length) ? Arrays.copyOf(values, Math.max(4, size * 2)) : values;
+        System.arraycopy(values, index, result, index + 1, size - index);
+        result[index] = value;
+        return result;
+    }
+}
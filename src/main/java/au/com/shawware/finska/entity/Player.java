@@ -7,6 +7,8 @@
 
 package au.com.shawware.finska.entity;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import au.com.shawware.compadmin.entity.Entrant;
@@ -39,4 +41,17 @@ public class Player extends Entrant
     {
         super(name);
     }
+
+    /**
+     * Copies this player, re-using any copy already made.
+     *
+     * @param copies the copies made so far, by player ID
+     *
+     * @return The copy.
+     */
+    @SuppressWarnings("boxing")
+    /*package*/ Player copy(Map<Integer, Player> copies)
+    {
+        return copies.computeIfAbsent(getId(), id -> new Player(id, getKey()));
+    }
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.PersistenceException;
+
+/**
+ * Reads and writes a compact, binary image of a linked competition graph.
+ *
+ * Players are written once and given a dense index (in ID order). The
+ * competitions, rounds and matches follow, nested within each other, with
+ * dates stored as epoch days and the entrants, round players and match
+ * winners stored as bitsets over the player index. The snapshot is read
+ * through a {@link MappedByteBuffer} so no intermediate copy is made.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+/*package*/ final class BinarySnapshot
+{
+    /** Identifies a snapshot file ("FSNP"). */
+    private static final int MAGIC = 0x46534E50;
+    /** The snapshot format version. */
+    private static final int VERSION = 1;
+    /** Marks a missing date. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    /** The suffix for a snapshot being written. */
+    private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+    /**
+     * This class is not instantiated.
+     */
+    private BinarySnapshot()
+    {
+        // Do nothing.
+    }
+
+    /**
+     * Writes the given linked graph to the given file. The file is replaced atomically.
+     *
+     * @param file the snapshot file
+     * @param players the players
+     * @param competitions the linked competitions
+     *
+     * @throws PersistenceException error writing the snapshot
+     */
+    @SuppressWarnings("boxing")
+    public static void write(Path file, Map<Integer, Player> players, Map<Integer, FinskaCompetition> competitions)
+        throws PersistenceException
+    {
+        int[] ids = players.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int words = (ids.length + Long.SIZE - 1) / Long.SIZE;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            for (int id : ids)
+            {
+                out.writeInt(id);
+                writeString(out, players.get(id).getKey());
+            }
+            out.writeInt(competitions.size());
+            for (FinskaCompetition competition : competitions.values())
+            {
+                out.writeInt(competition.getId());
+                writeString(out, competition.getKey());
+                writeDate(out, competition.getStartDate());
+                writeBits(out, ids, words, competition.getEntrantIds());
+                out.writeInt(competition.numberOfRounds());
+                for (FinskaRound round : competition.getRounds())
+                {
+                    out.writeInt(round.getId());
+                    out.writeInt(round.getKey());
+                    writeDate(out, round.getRoundDate());
+                    writeBits(out, ids, words, round.getPlayerIds());
+                    out.writeInt(round.numberOfMatches());
+                    for (FinskaMatch match : round.getMatches())
+                    {
+                        out.writeInt(match.getId());
+                        out.writeInt(match.getKey());
+                        writeDate(out, match.getMatchDate());
+                        out.writeBoolean(match.isFastWin());
+                        writeBits(out, ids, words, match.getWinnerIds());
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error encoding snapshot: " + e.getMessage()); //$NON-NLS-1$
+        }
+
+        // Force the new snapshot to disk before it replaces the old one.
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                ByteBuffer out = ByteBuffer.wrap(bytes.toByteArray());
+                while (out.hasRemaining())
+                {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            try
+            {
+                Files.deleteIfExists(temp);
+            }
+            catch (IOException ignored)
+            {
+                // The original error is the one worth reporting.
+            }
+            throw new PersistenceException("Error writing snapshot " + file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Reads the linked graph from the given file.
+     *
+     * @param file the snapshot file
+     *
+     * @return The linked competitions.
+     *
+     * @throws PersistenceException error reading the snapshot or an invalid snapshot
+     */
+    @SuppressWarnings("boxing")
+    public static Map<Integer, FinskaCompetition> read(Path file)
+        throws PersistenceException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((in.getInt() != MAGIC) || (in.getInt() != VERSION))
+            {
+                throw new PersistenceException("Invalid snapshot: " + file); //$NON-NLS-1$
+            }
+            Player[] players = new Player[in.getInt()];
+            int words = (players.length + Long.SIZE - 1) / Long.SIZE;
+            for (int i = 0; i < players.length; i++)
+            {
+                players[i] = new Player(in.getInt(), readString(in));
+            }
+            int count = in.getInt();
+            Map<Integer, FinskaCompetition> competitions = new HashMap<>(count * 2);
+            for (int c = 0; c < count; c++)
+            {
+                FinskaCompetition competition = new FinskaCompetition(in.getInt(), readString(in), readDate(in));
+                for (int index : readBits(in, words))
+                {
+                    competition.addEntrant(players[index]);
+                }
+                int rounds = in.getInt();
+                for (int r = 0; r < rounds; r++)
+                {
+                    FinskaRound round = new FinskaRound(in.getInt(), in.getInt(), readDate(in));
+                    for (int index : readBits(in, words))
+                    {
+                        round.addPlayer(players[index]);
+                    }
+                    int matches = in.getInt();
+                    for (int m = 0; m < matches; m++)
+                    {
+                        FinskaMatch match = new FinskaMatch(in.getInt(), in.getInt(), readDate(in));
+                        match.setFastWin(in.get() != 0);
+                        for (int index : readBits(in, words))
+                        {
+                            match.addWinner(players[index]);
+                        }
+                        round.addMatch(match);
+                    }
+                    competition.addRound(round);
+                }
+                competitions.put(competition.getId(), competition);
+            }
+            return competitions;
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException |
+               IndexOutOfBoundsException | NegativeArraySizeException e)
+        {
+            throw new PersistenceException("Error reading snapshot " + file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes.
+     *
+     * @param out the output
+     * @param value the string to write
+     *
+     * @throws IOException error writing
+     */
+    private static void writeString(DataOutputStream out, String value)
+        throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the input
+     *
+     * @return The string.
+     */
+    private static String readString(MappedByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a date as its epoch day.
+     *
+     * @param out the output
+     * @param date the date to write (may be null)
+     *
+     * @throws IOException error writing
+     */
+    private static void writeDate(DataOutputStream out, LocalDate date)
+        throws IOException
+    {
+        out.writeInt((date == null) ? NO_DATE : (int)date.toEpochDay());
+    }
+
+    /**
+     * Reads a date written by {@link #writeDate(DataOutputStream, LocalDate)}.
+     *
+     * @param in the input
+     *
+     * @return The date (may be null).
+     */
+    private static LocalDate readDate(MappedByteBuffer in)
+    {
+        int day = in.getInt();
+        return (day == NO_DATE) ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Writes the given player IDs as a bitset over the player index.
+     *
+     * @param out the output
+     * @param ids the sorted player IDs (the player index)
+     * @param words the number of words in each bitset
+     * @param members the player IDs to write
+     *
+     * @throws IOException error writing
+     */
+    private static void writeBits(DataOutputStream out, int[] ids, int words, Set<Integer> members)
+        throws IOException
+    {
+        long[] bits = new long[words];
+        for (Integer id : members)
+        {
+            int index = Arrays.binarySearch(ids, id.intValue());
+            if (index < 0)
+            {
+                throw new IOException("Unknown player: " + id); //$NON-NLS-1$
+            }
+            bits[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+        }
+        for (long word : bits)
+        {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a bitset written by {@link #writeBits(DataOutputStream, int[], int, Set)}.
+     *
+     * @param in the input
+     * @param words the number of words in the bitset
+     *
+     * @return The player indices present in the bitset.
+     */
+    private static int[] readBits(MappedByteBuffer in, int words)
+    {
+        long[] bits = new long[words];
+        int count = 0;
+        for (int w = 0; w < words; w++)
+        {
+            bits[w] = in.getLong();
+            count += Long.bitCount(bits[w]);
+        }
+        int[] indices = new int[count];
+        int i = 0;
+        for (int w = 0; w < words; w++)
+        {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+            {
+                indices[i++] = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return indices;
+    }
+}
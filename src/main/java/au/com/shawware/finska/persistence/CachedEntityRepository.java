@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.PersistenceException;
+import au.com.shawware.util.persistence.PersistenceFactory;
+
+/**
+ * A write-through cache in front of another Finska entity repository.
+ *
+ * The full entity graph is loaded from the underlying repository on first
+ * use and all reads are served from memory thereafter. Creates and updates
+ * are written to the underlying repository and applied to the cache together.
+ * If a write fails for any reason, the cache is discarded and reloaded on the
+ * next read, since the caller may already have changed the cached entities.
+ *
+ * The entities handed out are the cached instances, so callers should only
+ * pass entities obtained from this repository back to it (as the services do).
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class CachedEntityRepository implements IEntityRepository
+{
+    /* The singleton instances. */
+    private static Map<String, CachedEntityRepository> sRepositories = new HashMap<>();
+
+    /** The underlying repository. */
+    private final IEntityRepository mRepository;
+    /** The cached players (null until loaded). */
+    private Map<Integer, Player> mPlayers;
+    /** The cached competitions (null until loaded). */
+    private Map<Integer, FinskaCompetition> mCompetitions;
+
+    /**
+     * Constructs a new cache over the given repository.
+     *
+     * @param repository the underlying repository
+     */
+    /*package*/ CachedEntityRepository(IEntityRepository repository)
+    {
+        mRepository = repository;
+    }
+
+    /**
+     * Gets a singleton instance of the cached repository.
+     *
+     * @param factory the factory to obtain persistence stores from
+     *
+     * @return The repository.
+     */
+    public static synchronized final IEntityRepository getRepository(PersistenceFactory factory)
+    {
+        if (!sRepositories.containsKey(factory.getRoot()))
+        {
+            sRepositories.put(factory.getRoot(), new CachedEntityRepository(EntityRepository.getRepository(factory)));
+        }
+        return sRepositories.get(factory.getRoot());
+    }
+
+    /**
+     * Discards the cached entities. They will be reloaded on the next read.
+     */
+    public synchronized void invalidate()
+    {
+        mPlayers      = null;
+        mCompetitions = null;
+    }
+
+    /**
+     * Loads the entity graph from the underlying repository if required.
+     *
+     * The competitions are re-linked to the loaded players so that there is
+     * exactly one instance of each player in the cache.
+     *
+     * @throws PersistenceException error loading the entities
+     */
+    private void load()
+        throws PersistenceException
+    {
+        if (mCompetitions != null)
+        {
+            return;
+        }
+        Map<Integer, Player> players = mRepository.getPlayers();
+        Map<Integer, FinskaCompetition> competitions = mRepository.getCompetitions();
+        for (FinskaCompetition competition : competitions.values())
+        {
+            linkCompetition(players, competition);
+            for (FinskaRound round : competition.getRounds())
+            {
+                linkRound(players, round);
+                for (FinskaMatch match : round.getMatches())
+                {
+                    linkMatch(players, match);
+                }
+            }
+        }
+        mPlayers      = players;
+        mCompetitions = competitions;
+    }
+
+    /**
+     * Links the given competition's entrants to the given players.
+     *
+     * @param players the players
+     * @param competition the competition to link
+     *
+     * @throws PersistenceException missing player
+     */
+    private static void linkCompetition(Map<Integer, Player> players, FinskaCompetition competition)
+        throws PersistenceException
+    {
+        Set<Integer> ids = new HashSet<>(competition.getEntrantIds());
+        competition.setEntrantIds(ids);
+        for (Integer id : ids)
+        {
+            competition.addEntrant(getDependent(players, competition.getId(), id));
+        }
+    }
+
+    /**
+     * Links the given round's players to the given players.
+     *
+     * @param players the players
+     * @param round the round to link
+     *
+     * @throws PersistenceException missing player
+     */
+    private static void linkRound(Map<Integer, Player> players, FinskaRound round)
+        throws PersistenceException
+    {
+        Set<Integer> ids = new HashSet<>(round.getPlayerIds());
+        round.setPlayerIds(ids);
+        for (Integer id : ids)
+        {
+            round.addPlayer(getDependent(players, round.getId(), id));
+        }
+    }
+
+    /**
+     * Links the given match's winners to the given players.
+     *
+     * @param players the players
+     * @param match the match to link
+     *
+     * @throws PersistenceException missing player
+     */
+    private static void linkMatch(Map<Integer, Player> players, FinskaMatch match)
+        throws PersistenceException
+    {
+        Set<Integer> ids = new HashSet<>(match.getWinnerIds());
+        match.setWinnerIds(ids);
+        for (Integer id : ids)
+        {
+            match.addWinner(getDependent(players, match.getId(), id));
+        }
+    }
+
+    /**
+     * Retrieves the given player, failing if it does not exist.
+     *
+     * @param players the players
+     * @param containerID the ID of the entity referring to the player
+     * @param id the player's ID
+     *
+     * @return The player.
+     *
+     * @throws PersistenceException missing player
+     */
+    private static Player getDependent(Map<Integer, Player> players, int containerID, Integer id)
+        throws PersistenceException
+    {
+        Player player = players.get(id);
+        if (player == null)
+        {
+            throw new PersistenceException("Entity " + containerID + " refers to non-existent entity; " + id);  //$NON-NLS-1$//$NON-NLS-2$
+        }
+        return player;
+    }
+
+    @Override
+    public synchronized Map<Integer, Player> getPlayers()
+        throws PersistenceException
+    {
+        load();
+        return new HashMap<>(mPlayers);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized Player getPlayer(int id)
+        throws PersistenceException
+    {
+        load();
+        if (!mPlayers.containsKey(id))
+        {
+            throw new PersistenceException("Player does not exist: " + id); //$NON-NLS-1$
+        }
+        return mPlayers.get(id);
+    }
+
+    @Override
+    public synchronized Map<Integer, FinskaCompetition> getCompetitions()
+        throws PersistenceException
+    {
+        load();
+        return new HashMap<>(mCompetitions);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized FinskaCompetition getCompetition(int id)
+        throws PersistenceException
+    {
+        load();
+        if (!mCompetitions.containsKey(id))
+        {
+            throw new PersistenceException("Competition does not exist: " + id); //$NON-NLS-1$
+        }
+        return mCompetitions.get(id);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized FinskaCompetition createCompetition(FinskaCompetition competition)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            FinskaCompetition created = mRepository.createCompetition(competition);
+            linkCompetition(mPlayers, created);
+            mCompetitions.put(created.getId(), created);
+            return created;
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized void updateCompetition(FinskaCompetition competition)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            mRepository.updateCompetition(competition);
+            linkCompetition(mPlayers, competition);
+            mCompetitions.put(competition.getId(), competition);
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized FinskaRound createRound(FinskaCompetition competition, FinskaRound round)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            // The underlying repository adds the round to the competition.
+            FinskaRound created = mRepository.createRound(competition, round);
+            mCompetitions.put(competition.getId(), competition);
+            return created;
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized FinskaRound createRound(FinskaCompetition competition, FinskaRound round, List<FinskaMatch> matches)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            // The underlying repository adds the matches to the round and the round to the competition.
+            FinskaRound created = mRepository.createRound(competition, round, matches);
+            mCompetitions.put(competition.getId(), competition);
+            return created;
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void updateRound(FinskaRound round)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            mRepository.updateRound(round);
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized FinskaMatch createMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            // The underlying repository adds the match to the round.
+            return mRepository.createMatch(competition, round, match);
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void updateMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            mRepository.updateMatch(competition, round, match);
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized Player createPlayer(Player player)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            Player created = mRepository.createPlayer(player);
+            mPlayers.put(created.getId(), created);
+            return created;
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized void updatePlayer(Player player)
+        throws PersistenceException
+    {
+        load();
+        try
+        {
+            mRepository.updatePlayer(player);
+            Player cached = mPlayers.get(player.getId());
+            if ((cached != null) && (cached != player))
+            {
+                // Keep the single, linked instance up to date.
+                cached.setKey(player.getKey());
+            }
+            else
+            {
+                mPlayers.put(player.getId(), player);
+            }
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            invalidate();
+            throw e;
+        }
+    }
+}
@@ -7,14 +7,33 @@
 
 package au.com.shawware.finska.persistence;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import au.com.shawware.compadmin.entity.Competition;
 import au.com.shawware.compadmin.entity.Round;
+import au.com.shawware.compadmin.metrics.Metrics;
+import au.com.shawware.compadmin.metrics.Operation;
 import au.com.shawware.finska.entity.FinskaCompetition;
 import au.com.shawware.finska.entity.FinskaMatch;
 import au.com.shawware.finska.entity.FinskaRound;
@@ -31,8 +50,12 @@ import au.com.shawware.util.persistence.PersistenceFactory;
  */
 public class EntityRepository implements IEntityRepository
 {
+    private static final Logger LOG = LoggerFactory.getLogger(EntityRepository.class);
+
     /** Class name prefix to ignore. */
     private static final String PREFIX = "Finska"; //$NON-NLS-1$
+    /** The name of the binary snapshot file. */
+    /*package*/ static final String SNAPSHOT_FILE = "finska.snapshot"; //$NON-NLS-1$
     /* The singleton instances. */
     private static Map<String, EntityRepository> sRepositories = new HashMap<>();
 
@@ -44,6 +67,189 @@ public class EntityRepository implements IEntityRepository
     private final IEntityStore<FinskaMatch> mMatchStore;
     /** The player store. */
     private final IEntityStore<Player> mPlayerStore;
+    /** The directories holding the stores. */
+    private final Path[] mStoreDirs;
+    /** The binary snapshot file. */
+    private final Path mSnapshotFile;
+    /** Converts entities to and from JSON for queued updates. */
+    private final ObjectMapper mMapper;
+    /** Whether to use the binary snapshot. */
+    private boolean mSnapshotEnabled;
+    /** The executor for parallel loading (null for serial loading). */
+    private Executor mExecutor;
+    /** Whether to load each competition's rounds and matches on demand. */
+    private boolean mLazyLoading;
+    /** The queue of pending updates (null when updates are written immediately). */
+    private volatile WriteBehindQueue mWriteBehind;
+
+    /**
+     * A step in loading the entities that may fail.
+     *
+     * @param <T> the type of the step's result
+     */
+    @FunctionalInterface
+    private interface ILoader<T>
+    {
+        /**
+         * Performs the step.
+         * 
+         * @return The step's result.
+         * 
+         * @throws PersistenceException error loading entities
+         */
+        T load()
+            throws PersistenceException;
+    }
+
+    /**
+     * Reads a single entity by its ID.
+     *
+     * @param <T> the type of entity
+     */
+    @FunctionalInterface
+    /*package*/ interface IReader<T>
+    {
+        /**
+         * Reads the given entity.
+         * 
+         * @param id the entity's ID
+         * 
+         * @return The entity.
+         * 
+         * @throws PersistenceException error reading the entity
+         */
+        T read(int id)
+            throws PersistenceException;
+    }
+
+    /**
+     * A queued update of a single entity, held as JSON so the entity is
+     * persisted as it was when it was updated.
+     *
+     * @param <EntityType> the type of entity
+     */
+    private final class PendingUpdate<EntityType extends AbstractEntity<?>> implements WriteBehindQueue.IWriter
+    {
+        /** The store holding the entity. */
+        private final IEntityStore<EntityType> mStore;
+        /** The entity class. */
+        private final Class<EntityType> mEntityClass;
+        /** The entity's ID. */
+        private final int mId;
+        /** The entity's JSON. */
+        private final byte[] mJson;
+
+        /**
+         * Constructs a new update.
+         * 
+         * @param store the store holding the entity
+         * @param entityClass the entity class
+         * @param id the entity's ID
+         * @param json the entity's JSON
+         */
+        /*package*/ PendingUpdate(IEntityStore<EntityType> store, Class<EntityType> entityClass, int id, byte[] json)
+        {
+            mStore       = store;
+            mEntityClass = entityClass;
+            mId          = id;
+            mJson        = json;
+        }
+
+        @Override
+        public void write()
+            throws PersistenceException
+        {
+            mStore.update(deserialise(mJson, mEntityClass));
+        }
+    }
+
+    /**
+     * The updates not yet persisted when a read started. A read applies
+     * them over what it reads from the stores, so the queue need not be
+     * flushed for the read to see them. The updates are taken before the
+     * stores are read: any of them written in between are read the same
+     * either way.
+     */
+    private final class PendingUpdates
+    {
+        /** The unpersisted updates by entity key. */
+        private final Map<String, WriteBehindQueue.IWriter> mUpdates;
+
+        /**
+         * Takes the updates not yet persisted.
+         */
+        /*package*/ PendingUpdates()
+        {
+            WriteBehindQueue queue = mWriteBehind;
+            mUpdates = (queue == null) ? Collections.emptyMap() : queue.getPendingWrites();
+        }
+
+        /**
+         * @return Whether there are no unpersisted updates.
+         */
+        /*package*/ boolean isEmpty()
+        {
+            return mUpdates.isEmpty();
+        }
+
+        /**
+         * Retrieves the unpersisted update of the given entity (if any).
+         * 
+         * @param entityClass the entity class
+         * @param id the entity's ID
+         * 
+         * @return The updated entity or null if it has no unpersisted update.
+         * 
+         * @throws PersistenceException error deserialising the entity
+         */
+        /*package*/ <EntityType> EntityType get(Class<EntityType> entityClass, int id)
+            throws PersistenceException
+        {
+            PendingUpdate<?> update = (PendingUpdate<?>)mUpdates.get(key(entityClass, id));
+            return (update == null) ? null : deserialise(update.mJson, entityClass);
+        }
+
+        /**
+         * Replaces any of the given entities that have unpersisted updates.
+         * 
+         * @param entities the entities read from their store
+         * @param entityClass the entity class
+         * 
+         * @return The given entities, as updated.
+         * 
+         * @throws PersistenceException error deserialising an entity
+         */
+        @SuppressWarnings("boxing")
+        /*package*/ <EntityType> Map<Integer, EntityType> apply(Map<Integer, EntityType> entities, Class<EntityType> entityClass)
+            throws PersistenceException
+        {
+            for (WriteBehindQueue.IWriter writer : mUpdates.values())
+            {
+                PendingUpdate<?> update = (PendingUpdate<?>)writer;
+                if (update.mEntityClass == entityClass)
+                {
+                    entities.put(update.mId, deserialise(update.mJson, entityClass));
+                }
+            }
+            return entities;
+        }
+
+        /**
+         * Provides a reader of single entities that sees any unpersisted updates.
+         * 
+         * @param store the store holding the entities
+         * @param entityClass the entity class
+         * 
+         * @return The reader.
+         */
+        /*package*/ <EntityType extends AbstractEntity<?>> IReader<EntityType> reader(IEntityStore<EntityType> store, Class<EntityType> entityClass)
+        {
+            return id -> {
+                EntityType entity = get(entityClass, id);
+                return (entity == null) ? store.get(id) : entity;
+            };
+        }
+    }
 
     /**
      * Constructs a new repository.
@@ -56,6 +262,34 @@ public class EntityRepository implements IEntityRepository
         mRoundStore       = factory.getStore(FinskaRound.class, PREFIX);
         mMatchStore       = factory.getStore(FinskaMatch.class, PREFIX);
         mPlayerStore      = factory.getStore(Player.class);
+        mStoreDirs        = new Path[] {
+            storeDirectory(factory, FinskaCompetition.class), storeDirectory(factory, FinskaRound.class),
+            storeDirectory(factory, FinskaMatch.class), storeDirectory(factory, Player.class)
+        };
+        mSnapshotFile     = Paths.get(factory.getRoot(), SNAPSHOT_FILE);
+        mSnapshotEnabled  = false;
+        mExecutor         = null;
+        mLazyLoading      = false;
+        mWriteBehind      = null;
+        mMapper           = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Determines the directory used by the store for the given entity class.
+     * 
+     * @param factory the persistence factory
+     * @param entityClass the entity class
+     * 
+     * @return The store directory.
+     */
+    private static Path storeDirectory(PersistenceFactory factory, Class<?> entityClass)
+    {
+        String name = entityClass.getSimpleName();
+        if (name.startsWith(PREFIX))
+        {
+            name = name.substring(PREFIX.length());
+        }
+        return Paths.get(factory.getRoot(), name.toLowerCase());
     }
 
     /**
@@ -65,7 +299,7 @@ public class EntityRepository implements IEntityRepository
      * 
      * @return The repository.
      */
-    public static synchronized final IEntityRepository getRepository(PersistenceFactory factory)
+    public static synchronized final EntityRepository getRepository(PersistenceFactory factory)
     {
         if (!sRepositories.containsKey(factory.getRoot()))
         {
@@ -74,35 +308,295 @@ public class EntityRepository implements IEntityRepository
         return sRepositories.get(factory.getRoot());
     }
 
+    /**
+     * Specifies whether to use a binary snapshot of the linked entities.
+     * When enabled, the snapshot is written after the entities are loaded
+     * from the stores, and is read instead of the stores while it is newer
+     * than every store directory. Any write through this repository discards it.
+     * 
+     * @param enabled whether to use the snapshot
+     */
+    public synchronized void setSnapshotEnabled(boolean enabled)
+    {
+        mSnapshotEnabled = enabled;
+    }
+
+    /**
+     * Specifies an executor to load the entities in parallel. The stores
+     * are read concurrently and then the independent linking passes are
+     * run concurrently. A null executor restores serial loading.
+     * 
+     * @param executor the executor to use (may be null)
+     */
+    public synchronized void setExecutor(Executor executor)
+    {
+        mExecutor = executor;
+    }
+
+    /**
+     * Specifies whether to load competitions lazily. When enabled, only the
+     * competitions and their entrants are loaded up front. A competition's
+     * rounds, matches and winners are loaded the first time its rounds are
+     * needed. This takes precedence over the snapshot and parallel loading.
+     * A failure to load the rounds then surfaces from the competition's
+     * getters as an {@link IllegalStateException}. {@link #getCompetition(int)}
+     * always loads the competition's rounds straight away, so it reports
+     * such failures as a {@link PersistenceException} instead.
+     * 
+     * @param lazy whether to load lazily
+     */
+    public synchronized void setLazyLoading(boolean lazy)
+    {
+        mLazyLoading = lazy;
+    }
+
+    /**
+     * Specifies whether updates are written behind. When enabled, updates
+     * are queued (replacing any pending update to the same entity) and
+     * persisted in groups in the background at the given interval. Each
+     * update is queued as JSON, so later changes to the entity are only
+     * persisted by a later update. Reads see the queued updates without
+     * flushing them, so repeated updates between flushes are written once.
+     * Any create flushes the queue first, since it may also write an entity
+     * with a queued update. The binary snapshot is neither read nor written
+     * while updates are queued. Disabling write-behind flushes the queue.
+     * 
+     * @param flushInterval the time between background flushes (in milliseconds), or zero to disable write-behind
+     * 
+     * @throws PersistenceException error flushing the queue
+     */
+    public synchronized void setWriteBehind(long flushInterval)
+        throws PersistenceException
+    {
+        WriteBehindQueue queue = mWriteBehind;
+        if (queue != null)
+        {
+            mWriteBehind = null;
+            queue.shutdown();
+        }
+        if (flushInterval > 0)
+        {
+            mWriteBehind = new WriteBehindQueue(flushInterval);
+        }
+    }
+
+    /**
+     * @return The queue of pending updates, or null if updates are not written behind.
+     */
+    public WriteBehindQueue getWriteBehindQueue()
+    {
+        return mWriteBehind;
+    }
+
+    /**
+     * Persists any pending updates.
+     * 
+     * @throws PersistenceException error persisting an update
+     */
+    public void flush()
+        throws PersistenceException
+    {
+        WriteBehindQueue queue = mWriteBehind;
+        if (queue != null)
+        {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Updates the given entity in the given store, either immediately or
+     * by queueing the update when writing behind.
+     * 
+     * @param store the store holding the entity
+     * @param entity the entity to update
+     * 
+     * @throws PersistenceException error updating the entity
+     */
+    private <EntityType extends AbstractEntity<?>> void update(IEntityStore<EntityType> store, EntityType entity)
+        throws PersistenceException
+    {
+        discardSnapshot();
+        WriteBehindQueue queue = mWriteBehind;
+        if (queue == null)
+        {
+            store.update(entity);
+        }
+        else
+        {
+            // Persist the entity as it is now, not as it may be when the queue is flushed.
+            @SuppressWarnings("unchecked")
+            Class<EntityType> entityClass = (Class<EntityType>)entity.getClass();
+            byte[] json = serialise(entity);
+            queue.enqueue(key(entityClass, entity.getId()), new PendingUpdate<>(store, entityClass, entity.getId(), json));
+        }
+    }
+
+    /**
+     * Identifies an entity in the queue of pending updates.
+     * 
+     * @param entityClass the entity class
+     * @param id the entity's ID
+     * 
+     * @return The entity's key.
+     */
+    private static String key(Class<?> entityClass, int id)
+    {
+        return entityClass.getSimpleName() + ':' + id;
+    }
+
+    /**
+     * Serialises the given entity to JSON.
+     * 
+     * @param entity the entity
+     * 
+     * @return The entity's JSON.
+     * 
+     * @throws PersistenceException error serialising the entity
+     */
+    private byte[] serialise(AbstractEntity<?> entity)
+        throws PersistenceException
+    {
+        try
+        {
+            return mMapper.writeValueAsBytes(entity);
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error writing " + entity.getClass().getSimpleName() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Deserialises an entity from the given JSON.
+     * 
+     * @param json the entity's JSON
+     * @param entityClass the entity class
+     * 
+     * @return The entity.
+     * 
+     * @throws PersistenceException error deserialising the entity
+     */
+    private <EntityType> EntityType deserialise(byte[] json, Class<EntityType> entityClass)
+        throws PersistenceException
+    {
+        try
+        {
+            return mMapper.readValue(json, entityClass);
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error reading " + entityClass.getSimpleName() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Determines whether the binary snapshot exists and is newer than
+     * every store directory. Writes through this repository discard the
+     * snapshot, so only the directories are checked to catch entities
+     * added or replaced outside it; an existing file edited in place
+     * is not noticed.
+     * 
+     * @return Whether the snapshot can be used.
+     */
+    /*package*/ boolean isSnapshotCurrent()
+    {
+        try
+        {
+            if (!Files.exists(mSnapshotFile))
+            {
+                return false;
+            }
+            FileTime snapshotTime = Files.getLastModifiedTime(mSnapshotFile);
+            for (Path dir : mStoreDirs)
+            {
+                if (!Files.isDirectory(dir))
+                {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(dir).compareTo(snapshotTime) >= 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Discards the binary snapshot (if enabled) ahead of a write.
+     * 
+     * @throws PersistenceException error deleting the snapshot
+     */
+    private void discardSnapshot()
+        throws PersistenceException
+    {
+        if (mSnapshotEnabled)
+        {
+            try
+            {
+                Files.deleteIfExists(mSnapshotFile);
+            }
+            catch (IOException e)
+            {
+                throw new PersistenceException("Unable to discard snapshot " + mSnapshotFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
     @Override
     public Map<Integer, Player> getPlayers()
         throws PersistenceException
     {
-        return mPlayerStore.getAll();
+        PendingUpdates pending = new PendingUpdates();
+        return pending.apply(mPlayerStore.getAll(), Player.class);
     }
 
     @Override
     public Player getPlayer(int id)
         throws PersistenceException
     {
-        return mPlayerStore.get(id);
+        return new PendingUpdates().reader(mPlayerStore, Player.class).read(id);
     }
 
+    /**
+     * Loads the specified competition and its dependent entities. Only
+     * the rounds, matches and players it refers to are read, whatever
+     * the loading options.
+     * 
+     * @param id the competition ID
+     * 
+     * @return The competition, rounds and matches.
+     * 
+     * @throws PersistenceException error loading data
+     */
     @Override
-    @SuppressWarnings("boxing")
     public FinskaCompetition getCompetition(int id)
         throws PersistenceException
     {
-        Map<Integer, FinskaCompetition> competitions = getCompetitions();
-        if (!competitions.containsKey(id))
+        long start = Metrics.start();
+        PendingUpdates pending = new PendingUpdates();
+        FinskaCompetition competition;
+        try
+        {
+            competition = pending.reader(mCompetitionStore, FinskaCompetition.class).read(id);
+        }
+        catch (PersistenceException e)
         {
             throw new PersistenceException("Competition does not exist: " + id); //$NON-NLS-1$
         }
-        return competitions.get(id);
+        linkCompetition(competition, pending.reader(mRoundStore, FinskaRound.class),
+                        pending.reader(mMatchStore, FinskaMatch.class), pending.reader(mPlayerStore, Player.class));
+        Metrics.record(Operation.REPOSITORY_LOAD, id, start);
+        return competition;
     }
 
     /**
      * Loads all the competitions and any dependent entities.
+     * If enabled, the binary snapshot is used when it is current.
      * 
      * @return The competitions, rounds and matches.
      * 
@@ -112,18 +606,348 @@ public class EntityRepository implements IEntityRepository
     public Map<Integer, FinskaCompetition> getCompetitions()
         throws PersistenceException
     {
-        Map<Integer, Player> players = mPlayerStore.getAll();
-        Map<Integer, FinskaMatch> matches = mMatchStore.getAll();
-        Map<Integer, FinskaRound> rounds = mRoundStore.getAll();
-        Map<Integer, FinskaCompetition> competitions = mCompetitionStore.getAll();
+        long start = Metrics.start();
+        Map<Integer, FinskaCompetition> competitions = loadCompetitions();
+        Metrics.record(Operation.REPOSITORY_LOAD, Metrics.NO_COMPETITION, start);
+        return competitions;
+    }
+
+    /**
+     * Loads all the competitions as per the loading options.
+     * 
+     * @return The competitions, rounds and matches.
+     * 
+     * @throws PersistenceException error loading data
+     */
+    private Map<Integer, FinskaCompetition> loadCompetitions()
+        throws PersistenceException
+    {
+        PendingUpdates pending = new PendingUpdates();
+        if (mLazyLoading)
+        {
+            return getCompetitionHeaders(pending);
+        }
+        boolean useSnapshot = mSnapshotEnabled && pending.isEmpty();
+        if (useSnapshot && isSnapshotCurrent())
+        {
+            try
+            {
+                return BinarySnapshot.read(mSnapshotFile);
+            }
+            catch (PersistenceException e)
+            {
+                // The snapshot is only a cache of the stores so fall back to them.
+                LOG.warn("Discarding unreadable snapshot: " + e.getMessage()); //$NON-NLS-1$
+                try
+                {
+                    Files.deleteIfExists(mSnapshotFile);
+                }
+                catch (IOException ignored)
+                {
+                    // The snapshot written below will replace it instead.
+                }
+            }
+        }
+
+        Map<Integer, Player> players;
+        Map<Integer, FinskaMatch> matches;
+        Map<Integer, FinskaRound> rounds;
+        Map<Integer, FinskaCompetition> competitions;
+
+        Executor executor = mExecutor;
+        if (executor == null)
+        {
+            players      = pending.apply(mPlayerStore.getAll(), Player.class);
+            matches      = pending.apply(mMatchStore.getAll(), FinskaMatch.class);
+            rounds       = pending.apply(mRoundStore.getAll(), FinskaRound.class);
+            competitions = pending.apply(mCompetitionStore.getAll(), FinskaCompetition.class);
+
+            linkEntities(competitions, rounds, matches, players);
+        }
+        else
+        {
+            CompletableFuture<Map<Integer, Player>> loadPlayers = submit(executor, mPlayerStore::getAll);
+            CompletableFuture<Map<Integer, FinskaMatch>> loadMatches = submit(executor, mMatchStore::getAll);
+            CompletableFuture<Map<Integer, FinskaRound>> loadRounds = submit(executor, mRoundStore::getAll);
+            CompletableFuture<Map<Integer, FinskaCompetition>> loadCompetitions = submit(executor, mCompetitionStore::getAll);
+            players      = pending.apply(await(loadPlayers), Player.class);
+            matches      = pending.apply(await(loadMatches), FinskaMatch.class);
+            rounds       = pending.apply(await(loadRounds), FinskaRound.class);
+            competitions = pending.apply(await(loadCompetitions), FinskaCompetition.class);
+
+            linkEntities(executor, competitions, rounds, matches, players);
+        }
+
+        if (useSnapshot)
+        {
+            try
+            {
+                BinarySnapshot.write(mSnapshotFile, players, competitions);
+            }
+            catch (PersistenceException e)
+            {
+                // The entities were loaded successfully; only the next load is slower.
+                LOG.warn("Unable to write snapshot: " + e.getMessage()); //$NON-NLS-1$
+            }
+        }
+
+        return competitions;
+    }
+
+    /**
+     * Loads all the competitions and their entrants, deferring the loading
+     * of the rounds, matches and winners until they are first needed.
+     * 
+     * @param pending the updates not yet persisted
+     * 
+     * @return The competitions.
+     * 
+     * @throws PersistenceException error loading data
+     */
+    private Map<Integer, FinskaCompetition> getCompetitionHeaders(PendingUpdates pending)
+        throws PersistenceException
+    {
+        Map<Integer, Player> players = pending.apply(mPlayerStore.getAll(), Player.class);
+        Map<Integer, FinskaCompetition> competitions = pending.apply(mCompetitionStore.getAll(), FinskaCompetition.class);
+
+        loadDependentEntities(competitions, players, Competition::getEntrantIds, Competition::addEntrant);
+        for (FinskaCompetition competition : competitions.values())
+        {
+            competition.setRoundLoader(() -> loadRounds(competition, players));
+        }
+
+        return competitions;
+    }
+
+    /**
+     * Loads the given competition's rounds and their matches and adds them
+     * to the competition. Nothing is added unless everything loads.
+     * 
+     * @param competition the competition whose rounds are to be loaded
+     * @param players the players loaded with the competitions (any others are read as needed)
+     * 
+     * @throws IllegalStateException error loading the rounds
+     */
+    private void loadRounds(FinskaCompetition competition, Map<Integer, Player> players)
+        throws IllegalStateException
+    {
+        long start = Metrics.start();
+        try
+        {
+            PendingUpdates pending = new PendingUpdates();
+            loadRounds(competition, new HashMap<>(players), pending.reader(mRoundStore, FinskaRound.class),
+                       pending.reader(mMatchStore, FinskaMatch.class), pending.reader(mPlayerStore, Player.class));
+            Metrics.record(Operation.REPOSITORY_LOAD_ROUNDS, competition.getId(), start);
+        }
+        catch (PersistenceException e)
+        {
+            throw new IllegalStateException("Unable to load the rounds for competition " + competition.getId(), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Links the given, freshly read competition to its entrants, rounds,
+     * matches and players, reading only the entities it refers to.
+     * 
+     * @param competition the competition
+     * @param readRound how to read a round
+     * @param readMatch how to read a match
+     * @param readPlayer how to read a player
+     * 
+     * @throws PersistenceException error reading an entity
+     */
+    /*package*/ static void linkCompetition(FinskaCompetition competition, IReader<FinskaRound> readRound,
+                                            IReader<FinskaMatch> readMatch, IReader<Player> readPlayer)
+        throws PersistenceException
+    {
+        Map<Integer, Player> players = new HashMap<>();
+        readAll(competition.getEntrantIds(), readPlayer, players);
+        loadDependentEntities(Collections.singletonMap(competition.getId(), competition), players,
+                              Competition::getEntrantIds, Competition::addEntrant);
+        loadRounds(competition, players, readRound, readMatch, readPlayer);
+    }
+
+    /**
+     * Reads the given competition's rounds and their matches and adds them
+     * to the competition. Nothing is added unless everything is read.
+     * 
+     * @param competition the competition whose rounds are to be loaded
+     * @param players the players read so far, to which any others needed are added
+     * @param readRound how to read a round
+     * @param readMatch how to read a match
+     * @param readPlayer how to read a player
+     * 
+     * @throws PersistenceException error reading an entity
+     */
+    @SuppressWarnings("boxing")
+    private static void loadRounds(FinskaCompetition competition, Map<Integer, Player> players,
+                                   IReader<FinskaRound> readRound, IReader<FinskaMatch> readMatch, IReader<Player> readPlayer)
+        throws PersistenceException
+    {
+        Map<Integer, FinskaRound> rounds = new HashMap<>();
+        Map<Integer, FinskaMatch> matches = new HashMap<>();
+        for (Integer roundID : competition.getRoundIds())
+        {
+            FinskaRound round = readRound.read(roundID);
+            rounds.put(roundID, round);
+            readAll(round.getPlayerIds(), readPlayer, players);
+            for (Integer matchID : round.getMatchIds())
+            {
+                FinskaMatch match = readMatch.read(matchID);
+                matches.put(matchID, match);
+                readAll(match.getWinnerIds(), readPlayer, players);
+            }
+        }
+
+        loadDependentEntities(rounds, matches, Round::getMatchIds, Round::addMatch);
+        loadDependentEntities(rounds, players, FinskaRound::getPlayerIds, FinskaRound::addPlayer);
+        loadDependentEntities(matches, players, FinskaMatch::getWinnerIds, FinskaMatch::addWinner);
+        loadDependentEntities(Collections.singletonMap(competition.getId(), competition), rounds,
+                              Competition::getRoundIds, Competition::addRound);
+    }
+
+    /**
+     * Reads any of the given entities that have not been read yet.
+     * 
+     * @param ids the IDs of the entities needed
+     * @param reader how to read an entity
+     * @param entities the entities read so far
+     * 
+     * @throws PersistenceException error reading an entity
+     */
+    @SuppressWarnings("boxing")
+    private static <EntityType> void readAll(Set<Integer> ids, IReader<EntityType> reader, Map<Integer, EntityType> entities)
+        throws PersistenceException
+    {
+        for (Integer id : ids)
+        {
+            if (!entities.containsKey(id))
+            {
+                entities.put(id, reader.read(id));
+            }
+        }
+    }
 
+    /**
+     * Links the given, freshly loaded entities into a single graph.
+     * 
+     * @param competitions the competitions
+     * @param rounds the rounds
+     * @param matches the matches
+     * @param players the players
+     * 
+     * @throws PersistenceException missing entity
+     */
+    /*package*/ static void linkEntities(Map<Integer, FinskaCompetition> competitions, Map<Integer, FinskaRound> rounds,
+                                         Map<Integer, FinskaMatch> matches, Map<Integer, Player> players)
+        throws PersistenceException
+    {
         loadDependentEntities(competitions, players, Competition::getEntrantIds, Competition::addEntrant);
         loadDependentEntities(competitions, rounds, Competition::getRoundIds, Competition::addRound);
         loadDependentEntities(rounds, matches, Round::getMatchIds, Round::addMatch);
         loadDependentEntities(rounds, players, FinskaRound::getPlayerIds, FinskaRound::addPlayer);
         loadDependentEntities(matches, players, FinskaMatch::getWinnerIds, FinskaMatch::addWinner);
+    }
 
-        return competitions;
+    /**
+     * Links the given, freshly loaded entities into a single graph using
+     * the given executor. Passes that fill the same container change
+     * disjoint backing maps (a competition's entrants and its rounds, a
+     * round's matches and its players). The adders that also discard a
+     * container's cached views (the competition's addEntrant and addRound,
+     * the round's addMatch) are synchronized on the container. Together
+     * these let the passes run concurrently, so both must hold for any
+     * new pass.
+     * 
+     * @param executor the executor to run the passes on
+     * @param competitions the competitions
+     * @param rounds the rounds
+     * @param matches the matches
+     * @param players the players
+     * 
+     * @throws PersistenceException missing entity
+     */
+    private static void linkEntities(Executor executor,
+                                     Map<Integer, FinskaCompetition> competitions, Map<Integer, FinskaRound> rounds,
+                                     Map<Integer, FinskaMatch> matches, Map<Integer, Player> players)
+        throws PersistenceException
+    {
+        await(CompletableFuture.allOf(
+            submitPass(executor, competitions, players, Competition::getEntrantIds, Competition::addEntrant),
+            submitPass(executor, competitions, rounds, Competition::getRoundIds, Competition::addRound),
+            submitPass(executor, rounds, matches, Round::getMatchIds, Round::addMatch),
+            submitPass(executor, rounds, players, FinskaRound::getPlayerIds, FinskaRound::addPlayer),
+            submitPass(executor, matches, players, FinskaMatch::getWinnerIds, FinskaMatch::addWinner)));
+    }
+
+    /**
+     * Submits a linking pass to the given executor.
+     * 
+     * @param executor the executor
+     * @param containers the container class that holds the dependent entities
+     * @param dependents the dependent entities to be added to a container
+     * @param getIdsFor the method for obtaining the IDs of the dependent entities
+     * @param addTo the method for adding a dependent entity into a container
+     * 
+     * @return The pass's eventual completion.
+     */
+    private static <Container extends AbstractEntity<?>, Dependent extends AbstractEntity<?>>
+        CompletableFuture<Void> submitPass(Executor executor, Map<Integer, Container> containers, Map<Integer, Dependent> dependents,
+                                           Function<Container, Set<Integer>> getIdsFor, BiConsumer<Container, Dependent> addTo)
+    {
+        return submit(executor, () -> {
+            loadDependentEntities(containers, dependents, getIdsFor, addTo);
+            return null;
+        });
+    }
+
+    /**
+     * Submits the given loading step to the given executor.
+     * 
+     * @param executor the executor
+     * @param loader the loading step
+     * 
+     * @return The step's eventual result.
+     */
+    private static <T> CompletableFuture<T> submit(Executor executor, ILoader<T> loader)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                return loader.load();
+            }
+            catch (PersistenceException e)
+            {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the given loading step and retrieves its result, restoring
+     * any {@link PersistenceException} it failed with.
+     * 
+     * @param future the loading step's eventual result
+     * 
+     * @return The step's result.
+     * 
+     * @throws PersistenceException the step failed
+     */
+    private static <T> T await(CompletableFuture<T> future)
+        throws PersistenceException
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof PersistenceException)
+            {
+                throw (PersistenceException)e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -136,8 +960,7 @@ public class EntityRepository implements IEntityRepository
      * 
      * @throws PersistenceException missing entity
      */
-    @SuppressWarnings("static-method")
-    private <Container extends AbstractEntity<?>, Dependent extends AbstractEntity<?>>
+    private static <Container extends AbstractEntity<?>, Dependent extends AbstractEntity<?>>
         void loadDependentEntities(Map<Integer, Container> containers, Map<Integer, Dependent> dependents,
                                    Function<Container, Set<Integer>> getIdsFor, BiConsumer<Container, Dependent> addTo)
         throws PersistenceException
@@ -162,6 +985,8 @@ public class EntityRepository implements IEntityRepository
     public FinskaCompetition createCompetition(FinskaCompetition competition)
             throws PersistenceException
     {
+        flush();
+        discardSnapshot();
         mCompetitionStore.create(competition);
         return competition;
     }
@@ -170,33 +995,97 @@ public class EntityRepository implements IEntityRepository
     public void updateCompetition(FinskaCompetition competition)
             throws PersistenceException
     {
-        mCompetitionStore.update(competition);
+        update(mCompetitionStore, competition);
     }
 
     @Override
     public FinskaRound createRound(FinskaCompetition competition, FinskaRound round)
         throws PersistenceException
     {
+        flush();
+        discardSnapshot();
         mRoundStore.create(round);
-        competition.addRound(round);
-        mCompetitionStore.update(competition);
+        addRound(competition, round);
         return round;
     }
 
+    @Override
+    public FinskaRound createRound(FinskaCompetition competition, FinskaRound round, List<FinskaMatch> matches)
+        throws PersistenceException
+    {
+        flush();
+        discardSnapshot();
+        List<FinskaMatch> added = new ArrayList<>(matches.size());
+        try
+        {
+            for (FinskaMatch match : matches)
+            {
+                mMatchStore.create(match);
+                round.addMatch(match);
+                added.add(match);
+            }
+            mRoundStore.create(round);
+            addRound(competition, round);
+        }
+        catch (PersistenceException e)
+        {
+            for (FinskaMatch match : added)
+            {
+                round.removeMatch(match);
+            }
+            throw e;
+        }
+        return round;
+    }
+
+    /**
+     * Adds a newly stored round to the given competition and stores the
+     * competition. The round is only left in the competition if that succeeds.
+     * 
+     * @param competition the competition
+     * @param round the stored round
+     * 
+     * @throws PersistenceException error updating the competition
+     */
+    private void addRound(FinskaCompetition competition, FinskaRound round)
+        throws PersistenceException
+    {
+        competition.addRound(round);
+        try
+        {
+            mCompetitionStore.update(competition);
+        }
+        catch (PersistenceException e)
+        {
+            competition.removeRound(round);
+            throw e;
+        }
+    }
+
     @Override
     public void updateRound(FinskaRound round)
         throws PersistenceException
     {
-        mRoundStore.update(round);
+        update(mRoundStore, round);
     }
 
     @Override
     public FinskaMatch createMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
         throws PersistenceException
     {
+        flush();
+        discardSnapshot();
         mMatchStore.create(match);
         round.addMatch(match);
-        mRoundStore.update(round);
+        try
+        {
+            mRoundStore.update(round);
+        }
+        catch (PersistenceException e)
+        {
+            round.removeMatch(match);
+            throw e;
+        }
         return match;
     }
 
@@ -204,13 +1093,15 @@ public class EntityRepository implements IEntityRepository
     public void updateMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
         throws PersistenceException
     {
-        mMatchStore.update(match);
+        update(mMatchStore, match);
     }
 
     @Override
     public Player createPlayer(Player player)
         throws PersistenceException
     {
+        flush();
+        discardSnapshot();
         return mPlayerStore.create(player);
     }
 
@@ -218,6 +1109,6 @@ public class EntityRepository implements IEntityRepository
     public void updatePlayer(Player player)
         throws PersistenceException
     {
-        mPlayerStore.update(player);
+        update(mPlayerStore, player);
     }
 }
@@ -0,0 +1,932 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.AbstractEntity;
+import au.com.shawware.util.persistence.PersistenceException;
+import au.com.shawware.util.persistence.PersistenceFactory;
+
+/**
+ * Implements the Finska entity repository as a single, append-only log
+ * of entity mutations rather than one file per entity.
+ *
+ * Each create or update appends the new state of every entity it changes
+ * to the log as a single record. An append that fails is truncated from
+ * the log and leaves the in-memory state unchanged. The latest state of
+ * every entity is held in memory (as serialised JSON) and the full entity
+ * graph is built from it on demand, exactly as
+ * {@link EntityRepository#getCompetitions()} does from the entity stores.
+ *
+ * Appends are forced to disk in groups: once {@link #setSyncInterval(int)}
+ * appends are unsynced, in the background every {@link #setSyncDelay(long)}
+ * milliseconds, on {@link #flush()} and on {@link #close()}. An append is
+ * handed to the operating system before the call returns, so it survives
+ * the process failing. Until it is forced, however, it can be lost if the
+ * machine itself fails. That window is at most the last sync interval less
+ * one appends, none older than the sync delay (by default, 15 appends and
+ * 100 milliseconds, plus the time taken to force the log). Use a sync
+ * interval of one to force every append before it returns. Once the log holds
+ * {@link #setCompactionThreshold(int)} records, the live entities are
+ * written to a snapshot file and the log is truncated.
+ *
+ * Each record is framed as: payload length, CRC32 of the payload, entity
+ * type, entity ID and the entity's JSON. A change to several entities,
+ * eg. a round and its matches, is instead framed as a single batch record
+ * whose payload is: the batch type, the number of entities and then each
+ * entity's type, ID, JSON length and JSON. On startup, the snapshot and
+ * the log are replayed and any torn record at the end of the log is
+ * discarded, so a batch is either replayed in full or not at all.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class EventLogRepository implements IEntityRepository, AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(EventLogRepository.class);
+
+    /** The name of the log file. */
+    /*package*/ static final String LOG_FILE = "finska.log"; //$NON-NLS-1$
+    /** The name of the snapshot file. */
+    /*package*/ static final String SNAPSHOT_FILE = "finska.snap"; //$NON-NLS-1$
+    /** The suffix for a snapshot being written. */
+    private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+    /** The size of a record's header (length and CRC). */
+    private static final int HEADER_SIZE = 8;
+    /** The size of a payload's prefix (type and ID, or batch type and count). */
+    private static final int PREFIX_SIZE = 5;
+    /** The size of each entity's prefix within a batch (type, ID and length). */
+    private static final int BATCH_PREFIX_SIZE = 9;
+    /** The default number of appends between forcing the log to disk. */
+    private static final int DEFAULT_SYNC_INTERVAL = 16;
+    /** The default maximum time an append remains unsynced (in milliseconds). */
+    private static final long DEFAULT_SYNC_DELAY = 100L;
+    /** The default number of log records that triggers compaction. */
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10000;
+
+    /** The entity type code for players. */
+    private static final byte PLAYER      = 1;
+    /** The entity type code for competitions. */
+    private static final byte COMPETITION = 2;
+    /** The entity type code for rounds. */
+    private static final byte ROUND       = 3;
+    /** The entity type code for matches. */
+    private static final byte MATCH       = 4;
+    /** The type code for a batch of entities. */
+    private static final byte BATCH       = 5;
+
+    /* The singleton instances. */
+    private static Map<String, EventLogRepository> sRepositories = new HashMap<>();
+
+    /** The log file. */
+    private final Path mLogFile;
+    /** The snapshot file. */
+    private final Path mSnapshotFile;
+    /** Converts entities to and from JSON. */
+    private final ObjectMapper mMapper;
+    /** The latest JSON for each entity, by type then ID. */
+    private final Map<Byte, TreeMap<Integer, byte[]>> mEntities;
+    /** Forces unsynced appends to disk in the background. */
+    private final ScheduledExecutorService mSyncer;
+    /** The open log. */
+    private FileChannel mLog;
+    /** The number of records in the log. */
+    private int mLogRecords;
+    /** The number of appends not yet forced to disk. */
+    private int mUnsynced;
+    /** The number of appends between forcing the log to disk. */
+    private int mSyncInterval;
+    /** The number of log records that triggers compaction. */
+    private int mCompactionThreshold;
+    /** The background sync. */
+    private ScheduledFuture<?> mSyncTask;
+
+    /**
+     * Constructs a new repository, replaying any existing snapshot and log.
+     *
+     * @param directory the directory holding the log and snapshot
+     *
+     * @throws PersistenceException error replaying the log
+     */
+    /*package*/ EventLogRepository(Path directory)
+        throws PersistenceException
+    {
+        mLogFile             = directory.resolve(LOG_FILE);
+        mSnapshotFile        = directory.resolve(SNAPSHOT_FILE);
+        mMapper              = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mEntities            = new HashMap<>();
+        mSyncInterval        = DEFAULT_SYNC_INTERVAL;
+        mCompactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        for (byte type = PLAYER; type <= MATCH; type++)
+        {
+            mEntities.put(type, new TreeMap<>());
+        }
+        replay();
+        mSyncer              = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "finska-event-log-sync"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        mSyncTask            = scheduleSync(DEFAULT_SYNC_DELAY);
+    }
+
+    /**
+     * Gets a singleton instance of the repository. The log is kept in the
+     * factory's root directory.
+     *
+     * @param factory the factory whose root holds the log
+     *
+     * @return The repository.
+     *
+     * @throws PersistenceException error replaying the log
+     */
+    public static synchronized final EventLogRepository getRepository(PersistenceFactory factory)
+        throws PersistenceException
+    {
+        if (!sRepositories.containsKey(factory.getRoot()))
+        {
+            sRepositories.put(factory.getRoot(), new EventLogRepository(Paths.get(factory.getRoot())));
+        }
+        return sRepositories.get(factory.getRoot());
+    }
+
+    /**
+     * Sets how many appends may be made before the log is forced to disk.
+     * A value of one forces every append.
+     *
+     * @param interval the number of appends
+     */
+    public synchronized void setSyncInterval(int interval)
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Invalid sync interval: " + interval); //$NON-NLS-1$
+        }
+        mSyncInterval = interval;
+    }
+
+    /**
+     * Sets the longest time an append may remain unsynced before the log
+     * is forced to disk in the background.
+     *
+     * @param delay the time (in milliseconds)
+     */
+    public synchronized void setSyncDelay(long delay)
+    {
+        if (delay < 1)
+        {
+            throw new IllegalArgumentException("Invalid sync delay: " + delay); //$NON-NLS-1$
+        }
+        mSyncTask.cancel(false);
+        mSyncTask = scheduleSync(delay);
+    }
+
+    /**
+     * Schedules the background sync.
+     *
+     * @param delay the time between syncs (in milliseconds)
+     *
+     * @return The scheduled sync.
+     */
+    private ScheduledFuture<?> scheduleSync(long delay)
+    {
+        return mSyncer.scheduleWithFixedDelay(this::flushQuietly, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets how many records the log may hold before it is compacted.
+     *
+     * @param threshold the number of records
+     */
+    public synchronized void setCompactionThreshold(int threshold)
+    {
+        if (threshold < 1)
+        {
+            throw new IllegalArgumentException("Invalid compaction threshold: " + threshold); //$NON-NLS-1$
+        }
+        mCompactionThreshold = threshold;
+    }
+
+    /**
+     * Replays the snapshot (if any) and then the log into memory.
+     *
+     * @throws PersistenceException error reading the files
+     */
+    private void replay()
+        throws PersistenceException
+    {
+        try
+        {
+            if (Files.exists(mSnapshotFile))
+            {
+                ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(mSnapshotFile));
+                if (readRecords(snapshot) != snapshot.limit())
+                {
+                    throw new PersistenceException("Corrupt snapshot: " + mSnapshotFile); //$NON-NLS-1$
+                }
+            }
+            mLogRecords = 0;
+            mLog = openLog(mLogFile);
+            ByteBuffer log = ByteBuffer.allocate((int)mLog.size());
+            while (log.hasRemaining() && (mLog.read(log, log.position()) > 0))
+            {
+                // Keep reading.
+            }
+            log.flip();
+            int valid = readRecords(log);
+            if (valid < log.limit())
+            {
+                // A torn write at the end of the log; discard it.
+                mLog.truncate(valid);
+                mLog.force(true);
+            }
+            mLog.position(valid);
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error replaying " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Opens the log for reading and writing, creating it if need be.
+     *
+     * @param file the log file
+     *
+     * @return The open log.
+     *
+     * @throws IOException error opening the log
+     */
+    /*package*/ FileChannel openLog(Path file)
+        throws IOException
+    {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads records from the given buffer until it is exhausted or an
+     * incomplete or corrupt record is found.
+     *
+     * @param buffer the buffer to read
+     *
+     * @return The position after the last valid record.
+     */
+    @SuppressWarnings("boxing")
+    private int readRecords(ByteBuffer buffer)
+    {
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE)
+        {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if ((length < PREFIX_SIZE) || (length > buffer.remaining()))
+            {
+                return start;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if (((int)crc.getValue() != checksum) || !readPayload(payload))
+            {
+                return start;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Applies the entity or batch of entities in the given payload.
+     * Nothing is applied unless the whole payload is valid.
+     *
+     * @param payload the payload
+     *
+     * @return Whether the payload was valid.
+     */
+    @SuppressWarnings("boxing")
+    private boolean readPayload(byte[] payload)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte type = buffer.get();
+        if (type != BATCH)
+        {
+            if (!mEntities.containsKey(type))
+            {
+                return false;
+            }
+            int id = buffer.getInt();
+            byte[] json = new byte[buffer.remaining()];
+            buffer.get(json);
+            mEntities.get(type).put(id, json);
+            mLogRecords++;
+            return true;
+        }
+        int count = buffer.getInt();
+        if ((count < 1) || (count > buffer.remaining() / BATCH_PREFIX_SIZE))
+        {
+            return false;
+        }
+        byte[] types = new byte[count];
+        int[] ids = new int[count];
+        byte[][] json = new byte[count][];
+        for (int i = 0; i < count; i++)
+        {
+            if (buffer.remaining() < BATCH_PREFIX_SIZE)
+            {
+                return false;
+            }
+            types[i] = buffer.get();
+            ids[i] = buffer.getInt();
+            int length = buffer.getInt();
+            if (!mEntities.containsKey(types[i]) || (length < 0) || (length > buffer.remaining()))
+            {
+                return false;
+            }
+            json[i] = new byte[length];
+            buffer.get(json[i]);
+        }
+        if (buffer.hasRemaining())
+        {
+            return false;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            mEntities.get(types[i]).put(ids[i], json[i]);
+        }
+        mLogRecords += count;
+        return true;
+    }
+
+    /**
+     * Encodes the given entity as a log record.
+     *
+     * @param type the entity type
+     * @param id the entity's ID
+     * @param json the entity's JSON
+     *
+     * @return The framed record.
+     */
+    private static ByteBuffer encode(byte type, int id, byte[] json)
+    {
+        ByteBuffer payload = ByteBuffer.allocate(PREFIX_SIZE + json.length);
+        payload.put(type).putInt(id).put(json);
+        return frame(payload.array());
+    }
+
+    /**
+     * Encodes the given entities as a single batch log record.
+     *
+     * @param types the entities' types
+     * @param entities the entities
+     * @param json the entities' JSON
+     *
+     * @return The framed record.
+     */
+    private static ByteBuffer encode(byte[] types, AbstractEntity<?>[] entities, byte[][] json)
+    {
+        int length = PREFIX_SIZE;
+        for (byte[] entity : json)
+        {
+            length += BATCH_PREFIX_SIZE + entity.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.put(BATCH).putInt(entities.length);
+        for (int i = 0; i < entities.length; i++)
+        {
+            payload.put(types[i]).putInt(entities[i].getId()).putInt(json[i].length).put(json[i]);
+        }
+        return frame(payload.array());
+    }
+
+    /**
+     * Frames the given payload as a log record.
+     *
+     * @param payload the payload
+     *
+     * @return The framed record.
+     */
+    private static ByteBuffer frame(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int)crc.getValue()).put(payload);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Appends the given entities' current states to the log as a single record.
+     * The in-memory state is only updated once the write succeeds. If the
+     * write fails, the log is truncated back to where it was beforehand.
+     *
+     * @param types the entities' types
+     * @param entities the entities
+     *
+     * @throws PersistenceException error writing the log
+     */
+    @SuppressWarnings("boxing")
+    private void append(byte[] types, AbstractEntity<?>... entities)
+        throws PersistenceException
+    {
+        checkOpen();
+        byte[][] json = new byte[entities.length][];
+        long start = -1;
+        try
+        {
+            for (int i = 0; i < entities.length; i++)
+            {
+                json[i] = mMapper.writeValueAsBytes(entities[i]);
+            }
+            ByteBuffer record = (entities.length == 1) ? encode(types[0], entities[0].getId(), json[0])
+                                                       : encode(types, entities, json);
+            start = mLog.position();
+            while (record.hasRemaining())
+            {
+                mLog.write(record);
+            }
+            if (mUnsynced + 1 >= mSyncInterval)
+            {
+                sync();
+            }
+            else
+            {
+                mUnsynced++;
+            }
+        }
+        catch (IOException e)
+        {
+            rollback(start);
+            throw new PersistenceException("Error appending to " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        for (int i = 0; i < entities.length; i++)
+        {
+            mEntities.get(types[i]).put(entities[i].getId(), json[i]);
+        }
+        mLogRecords += entities.length;
+        if (mLogRecords >= mCompactionThreshold)
+        {
+            try
+            {
+                compact();
+            }
+            catch (PersistenceException e)
+            {
+                // The append itself succeeded; compaction is retried on the next one.
+                LOG.warn("Unable to compact " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    /**
+     * Truncates the log back to the given position, discarding a failed
+     * append. If that fails too, the log is closed so that nothing can be
+     * appended after the partial write and then lost on replay.
+     *
+     * @param position the position before the failed append (negative if nothing was written)
+     */
+    private void rollback(long position)
+    {
+        if (position < 0)
+        {
+            return;
+        }
+        try
+        {
+            mLog.truncate(position);
+            mLog.position(position);
+        }
+        catch (IOException e)
+        {
+            LOG.error("Unable to roll back " + mLogFile + ": " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+            try
+            {
+                mLog.close();
+            }
+            catch (IOException ignored)
+            {
+                // Already failed; nothing more can be done.
+            }
+            mLog = null;
+        }
+    }
+
+    /**
+     * Verifies the log can still be written to.
+     *
+     * @throws PersistenceException the log was closed after a failed rollback
+     */
+    private void checkOpen()
+        throws PersistenceException
+    {
+        if (mLog == null)
+        {
+            throw new PersistenceException("Log is unusable after a failed rollback: " + mLogFile); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Forces any unsynced appends to disk.
+     *
+     * @throws IOException error forcing the log
+     */
+    private void sync()
+        throws IOException
+    {
+        mLog.force(false);
+        mUnsynced = 0;
+    }
+
+    /**
+     * Forces any appends to disk.
+     *
+     * @throws PersistenceException error forcing the log
+     */
+    public synchronized void flush()
+        throws PersistenceException
+    {
+        try
+        {
+            if ((mLog != null) && (mUnsynced > 0))
+            {
+                sync();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error flushing " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Forces any appends to disk, logging rather than throwing any error.
+     */
+    private void flushQuietly()
+    {
+        try
+        {
+            flush();
+        }
+        catch (PersistenceException e)
+        {
+            LOG.error("Unable to sync " + mLogFile + ": " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Writes every live entity to a new snapshot and then truncates the log.
+     * The snapshot replaces the previous one atomically, and since records
+     * are replayed in order, a crash before the log is truncated is harmless.
+     *
+     * @throws PersistenceException error writing the snapshot
+     */
+    @SuppressWarnings("boxing")
+    public synchronized void compact()
+        throws PersistenceException
+    {
+        checkOpen();
+        Path temp = mSnapshotFile.resolveSibling(SNAPSHOT_FILE + TEMP_SUFFIX);
+        try
+        {
+            try (FileChannel snapshot = FileChannel.open(temp, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                for (byte type = PLAYER; type <= MATCH; type++)
+                {
+                    for (Map.Entry<Integer, byte[]> entity : mEntities.get(type).entrySet())
+                    {
+                        ByteBuffer record = encode(type, entity.getKey(), entity.getValue());
+                        while (record.hasRemaining())
+                        {
+                            snapshot.write(record);
+                        }
+                    }
+                }
+                snapshot.force(true);
+            }
+            Files.move(temp, mSnapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mLog.truncate(0);
+            mLog.position(0);
+            mLog.force(true);
+            mLogRecords = 0;
+            mUnsynced = 0;
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error compacting " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Forces any appends to disk and closes the log.
+     * The repository cannot be used afterwards.
+     *
+     * @throws PersistenceException error closing the log
+     */
+    @Override
+    public synchronized void close()
+        throws PersistenceException
+    {
+        mSyncer.shutdown();
+        flush();
+        try
+        {
+            if (mLog != null)
+            {
+                mLog.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error closing " + mLogFile + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        synchronized (EventLogRepository.class)
+        {
+            sRepositories.values().remove(this);
+        }
+    }
+
+    /**
+     * Calculates the next ID for the given entity type.
+     *
+     * @param type the entity type
+     *
+     * @return The next ID.
+     */
+    @SuppressWarnings("boxing")
+    private int nextId(byte type)
+    {
+        TreeMap<Integer, byte[]> entities = mEntities.get(type);
+        return entities.isEmpty() ? 1 : entities.lastKey() + 1;
+    }
+
+    /**
+     * Deserialises all the entities of the given type.
+     *
+     * @param type the entity type
+     * @param entityClass the entity class
+     *
+     * @return The entities.
+     *
+     * @throws PersistenceException error deserialising an entity
+     */
+    private <EntityType extends AbstractEntity<?>> Map<Integer, EntityType> getAll(byte type, Class<EntityType> entityClass)
+        throws PersistenceException
+    {
+        Map<Integer, EntityType> entities = new HashMap<>();
+        for (Map.Entry<Integer, byte[]> entity : mEntities.get(type).entrySet())
+        {
+            entities.put(entity.getKey(), read(entity.getValue(), entityClass));
+        }
+        return entities;
+    }
+
+    /**
+     * Retrieves and deserialises the given entity.
+     *
+     * @param type the entity type
+     * @param id the entity's ID
+     * @param entityClass the entity class
+     *
+     * @return The entity.
+     *
+     * @throws PersistenceException missing entity or error deserialising it
+     */
+    @SuppressWarnings("boxing")
+    private <EntityType> EntityType get(byte type, int id, Class<EntityType> entityClass)
+        throws PersistenceException
+    {
+        byte[] json = mEntities.get(type).get(id);
+        if (json == null)
+        {
+            throw new PersistenceException("Entity does not exist: " + id); //$NON-NLS-1$
+        }
+        return read(json, entityClass);
+    }
+
+    /**
+     * Deserialises the given entity.
+     *
+     * @param json the entity's JSON
+     * @param entityClass the entity class
+     *
+     * @return The entity.
+     *
+     * @throws PersistenceException error deserialising the entity
+     */
+    private <EntityType> EntityType read(byte[] json, Class<EntityType> entityClass)
+        throws PersistenceException
+    {
+        try
+        {
+            return mMapper.readValue(json, entityClass);
+        }
+        catch (IOException e)
+        {
+            throw new PersistenceException("Error reading " + entityClass.getSimpleName() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    @Override
+    public synchronized Map<Integer, Player> getPlayers()
+        throws PersistenceException
+    {
+        return getAll(PLAYER, Player.class);
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized Player getPlayer(int id)
+        throws PersistenceException
+    {
+        byte[] json = mEntities.get(PLAYER).get(id);
+        if (json == null)
+        {
+            throw new PersistenceException("Player does not exist: " + id); //$NON-NLS-1$
+        }
+        return read(json, Player.class);
+    }
+
+    @Override
+    public synchronized Map<Integer, FinskaCompetition> getCompetitions()
+        throws PersistenceException
+    {
+        Map<Integer, Player> players = getAll(PLAYER, Player.class);
+        Map<Integer, FinskaMatch> matches = getAll(MATCH, FinskaMatch.class);
+        Map<Integer, FinskaRound> rounds = getAll(ROUND, FinskaRound.class);
+        Map<Integer, FinskaCompetition> competitions = getAll(COMPETITION, FinskaCompetition.class);
+
+        EntityRepository.linkEntities(competitions, rounds, matches, players);
+
+        return competitions;
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized FinskaCompetition getCompetition(int id)
+        throws PersistenceException
+    {
+        byte[] json = mEntities.get(COMPETITION).get(id);
+        if (json == null)
+        {
+            throw new PersistenceException("Competition does not exist: " + id); //$NON-NLS-1$
+        }
+        FinskaCompetition competition = read(json, FinskaCompetition.class);
+        EntityRepository.linkCompetition(competition,
+                                         roundID -> get(ROUND, roundID, FinskaRound.class),
+                                         matchID -> get(MATCH, matchID, FinskaMatch.class),
+                                         playerID -> get(PLAYER, playerID, Player.class));
+        return competition;
+    }
+
+    @Override
+    public synchronized FinskaCompetition createCompetition(FinskaCompetition competition)
+        throws PersistenceException
+    {
+        competition.setId(nextId(COMPETITION));
+        append(new byte[] { COMPETITION }, competition);
+        return competition;
+    }
+
+    @Override
+    public synchronized void updateCompetition(FinskaCompetition competition)
+        throws PersistenceException
+    {
+        append(new byte[] { COMPETITION }, competition);
+    }
+
+    @Override
+    public synchronized FinskaRound createRound(FinskaCompetition competition, FinskaRound round)
+        throws PersistenceException
+    {
+        round.setId(nextId(ROUND));
+        competition.addRound(round);
+        try
+        {
+            append(new byte[] { ROUND, COMPETITION }, round, competition);
+        }
+        catch (PersistenceException e)
+        {
+            competition.removeRound(round);
+            throw e;
+        }
+        return round;
+    }
+
+    @Override
+    public synchronized FinskaRound createRound(FinskaCompetition competition, FinskaRound round, List<FinskaMatch> matches)
+        throws PersistenceException
+    {
+        byte[] types = new byte[matches.size() + 2];
+        AbstractEntity<?>[] entities = new AbstractEntity<?>[types.length];
+        int id = nextId(MATCH);
+        for (int i = 0; i < matches.size(); i++)
+        {
+            FinskaMatch match = matches.get(i);
+            match.setId(id++);
+            round.addMatch(match);
+            types[i] = MATCH;
+            entities[i] = match;
+        }
+        round.setId(nextId(ROUND));
+        competition.addRound(round);
+        types[types.length - 2] = ROUND;
+        entities[types.length - 2] = round;
+        types[types.length - 1] = COMPETITION;
+        entities[types.length - 1] = competition;
+        try
+        {
+            append(types, entities);
+        }
+        catch (PersistenceException e)
+        {
+            competition.removeRound(round);
+            for (FinskaMatch match : matches)
+            {
+                round.removeMatch(match);
+            }
+            throw e;
+        }
+        return round;
+    }
+
+    @Override
+    public synchronized void updateRound(FinskaRound round)
+        throws PersistenceException
+    {
+        append(new byte[] { ROUND }, round);
+    }
+
+    @Override
+    public synchronized FinskaMatch createMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
+        throws PersistenceException
+    {
+        match.setId(nextId(MATCH));
+        round.addMatch(match);
+        try
+        {
+            append(new byte[] { MATCH, ROUND }, match, round);
+        }
+        catch (PersistenceException e)
+        {
+            round.removeMatch(match);
+            throw e;
+        }
+        return match;
+    }
+
+    @Override
+    public synchronized void updateMatch(FinskaCompetition competition, FinskaRound round, FinskaMatch match)
+        throws PersistenceException
+    {
+        append(new byte[] { MATCH }, match);
+    }
+
+    @Override
+    public synchronized Player createPlayer(Player player)
+        throws PersistenceException
+    {
+        player.setId(nextId(PLAYER));
+        append(new byte[] { PLAYER }, player);
+        return player;
+    }
+
+    @Override
+    public synchronized void updatePlayer(Player player)
+        throws PersistenceException
+    {
+        append(new byte[] { PLAYER }, player);
+    }
+}
@@ -7,6 +7,7 @@
 
 package au.com.shawware.finska.persistence;
 
+import java.util.List;
 import java.util.Map;
 
 import au.com.shawware.finska.entity.FinskaCompetition;
@@ -101,6 +102,27 @@ public interface IEntityRepository
     FinskaRound createRound(FinskaCompetition competition, FinskaRound round)
         throws PersistenceException;
 
+    /**
+     * Creates a new round, together with its matches, in the given competition.
+     * Each entity is written once.
+     * 
+     * If creation fails, the round and competition are left as they were in
+     * memory. Only {@link EventLogRepository} stores the batch all or nothing:
+     * {@link EntityRepository} writes one file per entity, so a failure can
+     * leave match (and round) files behind that no competition refers to,
+     * which loading reads but never links.
+     * 
+     * @param competition the competition
+     * @param round the new round
+     * @param matches the round's new matches
+     * 
+     * @return The created round.
+     * 
+     * @throws PersistenceException error during creation
+     */
+    FinskaRound createRound(FinskaCompetition competition, FinskaRound round, List<FinskaMatch> matches)
+        throws PersistenceException;
+
     /**
      * Updates the given round.
      * 
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.com.shawware.util.persistence.PersistenceException;
+
+/**
+ * Holds pending entity writes and persists them in groups, either in the
+ * background at a fixed interval or when explicitly flushed.
+ *
+ * Writes are keyed by entity, so a later write to an entity replaces any
+ * earlier write still pending for it. Pending writes are flushed in the
+ * order their entities were first queued. A write that fails is kept
+ * (unless superseded) and retried on the next flush. Pending writes are
+ * also flushed when the JVM shuts down. Until a write has been persisted
+ * it can be retrieved with {@link #getPendingWrites()}, so that reads
+ * need not flush the queue to see it.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class WriteBehindQueue
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /**
+     * A pending write of a single entity.
+     */
+    @FunctionalInterface
+    /*package*/ interface IWriter
+    {
+        /**
+         * Persists the entity.
+         *
+         * @throws PersistenceException error persisting the entity
+         */
+        void write()
+            throws PersistenceException;
+    }
+
+    /** The pending writes by entity key. */
+    private final Map<String, IWriter> mPending;
+    /** The writes being persisted by the current flush, until each one is. */
+    private final Map<String, IWriter> mWriting;
+    /** Ensures only one flush runs at a time. */
+    private final Object mFlushLock;
+    /** Runs the background flushes. */
+    private final ScheduledExecutorService mFlusher;
+    /** Flushes any pending writes on shutdown. */
+    private final Thread mShutdownHook;
+
+    /** The number of writes that replaced a pending write. */
+    private long mCoalescedWrites;
+    /** The number of flushes that persisted at least one write. */
+    private long mFlushCount;
+    /** The number of writes persisted. */
+    private long mWrittenCount;
+    /** The duration of the most recent flush (in nanoseconds). */
+    private long mLastFlushNanos;
+    /** The duration of the longest flush (in nanoseconds). */
+    private long mMaxFlushNanos;
+    /** The total duration of all flushes (in nanoseconds). */
+    private long mTotalFlushNanos;
+
+    /**
+     * Constructs a new queue and starts flushing it in the background.
+     *
+     * @param flushInterval the time between background flushes (in milliseconds)
+     *
+     * @throws IllegalArgumentException invalid flush interval
+     */
+    /*package*/ WriteBehindQueue(long flushInterval)
+        throws IllegalArgumentException
+    {
+        if (flushInterval <= 0)
+        {
+            throw new IllegalArgumentException("Invalid flush interval: " + flushInterval); //$NON-NLS-1$
+        }
+        mPending   = new LinkedHashMap<>();
+        mWriting   = new HashMap<>();
+        mFlushLock = new Object();
+        mFlusher   = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "finska-write-behind"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        mShutdownHook = new Thread(this::flushQuietly, "finska-write-behind-shutdown"); //$NON-NLS-1$
+
+        mFlusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(mShutdownHook);
+    }
+
+    /**
+     * Queues the given write, replacing any write pending for the same entity.
+     *
+     * @param key identifies the entity being written
+     * @param writer persists the entity
+     */
+    /*package*/ synchronized void enqueue(String key, IWriter writer)
+    {
+        if (mPending.put(key, writer) != null)
+        {
+            mCoalescedWrites++;
+        }
+    }
+
+    /**
+     * Retrieves the writes not yet persisted, including those being
+     * persisted by a flush in progress, with a single write (the latest)
+     * for each entity.
+     *
+     * @return The unpersisted writes by entity key.
+     */
+    /*package*/ synchronized Map<String, IWriter> getPendingWrites()
+    {
+        Map<String, IWriter> writes = new HashMap<>(mWriting);
+        writes.putAll(mPending);
+        return writes;
+    }
+
+    /**
+     * Persists all pending writes.
+     *
+     * @throws PersistenceException error persisting a write
+     */
+    public void flush()
+        throws PersistenceException
+    {
+        synchronized (mFlushLock)
+        {
+            Map<String, IWriter> batch;
+            synchronized (this)
+            {
+                if (mPending.isEmpty())
+                {
+                    return;
+                }
+                batch = new LinkedHashMap<>(mPending);
+                mPending.clear();
+                mWriting.putAll(batch);
+            }
+
+            long start = System.nanoTime();
+            int written = 0;
+            Iterator<Map.Entry<String, IWriter>> it = batch.entrySet().iterator();
+            try
+            {
+                while (it.hasNext())
+                {
+                    Map.Entry<String, IWriter> write = it.next();
+                    write.getValue().write();
+                    it.remove();
+                    written++;
+                    synchronized (this)
+                    {
+                        mWriting.remove(write.getKey());
+                    }
+                }
+            }
+            finally
+            {
+                long elapsed = System.nanoTime() - start;
+                synchronized (this)
+                {
+                    mWriting.clear();
+                    // Requeue anything not written unless it has since been superseded.
+                    for (Map.Entry<String, IWriter> write : batch.entrySet())
+                    {
+                        mPending.putIfAbsent(write.getKey(), write.getValue());
+                    }
+                    mFlushCount++;
+                    mWrittenCount   += written;
+                    mLastFlushNanos  = elapsed;
+                    mMaxFlushNanos   = Math.max(mMaxFlushNanos, elapsed);
+                    mTotalFlushNanos += elapsed;
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists all pending writes, logging rather than throwing any error.
+     */
+    private void flushQuietly()
+    {
+        try
+        {
+            flush();
+        }
+        catch (PersistenceException | RuntimeException e)
+        {
+            LOG.error("Unable to flush pending writes: " + e.getMessage(), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Stops the background flushing and persists all pending writes.
+     *
+     * @throws PersistenceException error persisting a write
+     */
+    public void shutdown()
+        throws PersistenceException
+    {
+        mFlusher.shutdown();
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook(mShutdownHook);
+        }
+        catch (IllegalStateException e)
+        {
+            // The JVM is already shutting down and the hook will flush.
+        }
+        flush();
+    }
+
+    /**
+     * @return The number of writes waiting to be persisted.
+     */
+    public synchronized int getQueueDepth()
+    {
+        return mPending.size();
+    }
+
+    /**
+     * @return The number of writes that replaced a pending write.
+     */
+    public synchronized long getCoalescedWrites()
+    {
+        return mCoalescedWrites;
+    }
+
+    /**
+     * @return The number of flushes that persisted at least one write.
+     */
+    public synchronized long getFlushCount()
+    {
+        return mFlushCount;
+    }
+
+    /**
+     * @return The number of writes persisted.
+     */
+    public synchronized long getWrittenCount()
+    {
+        return mWrittenCount;
+    }
+
+    /**
+     * @return The duration of the most recent flush (in nanoseconds).
+     */
+    public synchronized long getLastFlushNanos()
+    {
+        return mLastFlushNanos;
+    }
+
+    /**
+     * @return The duration of the longest flush (in nanoseconds).
+     */
+    public synchronized long getMaxFlushNanos()
+    {
+        return mMaxFlushNanos;
+    }
+
+    /**
+     * @return The average duration of a flush (in nanoseconds).
+     */
+    public synchronized long getAverageFlushNanos()
+    {
+        return (mFlushCount == 0) ? 0 : mTotalFlushNanos / mFlushCount;
+    }
+}
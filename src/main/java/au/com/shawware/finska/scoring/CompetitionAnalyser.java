@@ -7,17 +7,19 @@
 
 package au.com.shawware.finska.scoring;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
 
 import au.com.shawware.compadmin.scoring.AbstractResultsCompiler;
 import au.com.shawware.compadmin.scoring.EntrantResult;
 import au.com.shawware.compadmin.scoring.ResultSpec;
+import au.com.shawware.compadmin.scoring.ResultTable;
 import au.com.shawware.finska.entity.FinskaCompetition;
 import au.com.shawware.finska.entity.FinskaMatch;
 import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.IdSet;
 import au.com.shawware.finska.entity.Player;
 
 /**
@@ -29,6 +31,10 @@ public class CompetitionAnalyser extends AbstractResultsCompiler<FinskaCompetiti
 {
     /** The scoring system in use. */
     private final ScoringSystem mScoringSystem;
+    /** The position of the round changed since the analyser this one was derived from (if any). */
+    private int mChangedRound;
+    /** The current results of the entrants whose results that change affected. */
+    private List<EntrantResult> mChangedResults;
 
     /**
      * Constructs a new analyser for the given competition and scoring system.
@@ -39,13 +45,88 @@ public class CompetitionAnalyser extends AbstractResultsCompiler<FinskaCompetiti
     public CompetitionAnalyser(FinskaCompetition competition, ScoringSystem scoringSystem)
     {
         super(competition, ResultItem.getComparisonSpecification());
-        mScoringSystem = scoringSystem;
+        mScoringSystem  = scoringSystem;
+        mChangedRound   = 0;
+        mChangedResults = Collections.emptyList();
+    }
+
+    /**
+     * Constructs a new analyser for a changed copy of the given analyser's
+     * competition, re-using the results it has already compiled.
+     * 
+     * @param analyser the analyser for the competition before the change
+     * @param competition the competition after the change
+     */
+    private CompetitionAnalyser(CompetitionAnalyser analyser, FinskaCompetition competition)
+    {
+        super(analyser, competition);
+        mScoringSystem  = analyser.mScoringSystem;
+        mChangedRound   = 0;
+        mChangedResults = Collections.emptyList();
+    }
+
+    /**
+     * Derives an analyser for the given copy of this analyser's competition
+     * after the given round was added or changed. Only that round and those
+     * after it are processed again; the results compiled for the rounds
+     * before it are shared. This analyser is left unchanged.
+     * 
+     * @param competition the competition after the change
+     * @param roundNumber the number of the changed round
+     * 
+     * @return The new analyser or null if the entrants or earlier rounds have also changed.
+     */
+    public CompetitionAnalyser withRoundChange(FinskaCompetition competition, int roundNumber)
+    {
+        int position = findChangedRound(competition, roundNumber);
+        if (position == 0)
+        {
+            return null;
+        }
+        CompetitionAnalyser analyser = new CompetitionAnalyser(this, competition);
+        analyser.invalidateFrom(position);
+        return analyser;
+    }
+
+    /**
+     * Finds the position of the given round in the given copy of this
+     * analyser's competition, provided the entrants and the rounds before
+     * it are the same as in this analyser's competition.
+     * 
+     * @param competition the competition after the change
+     * @param roundNumber the number of the changed round
+     * 
+     * @return The round's position (1-based) or zero if it is missing or other parts have changed.
+     */
+    private int findChangedRound(FinskaCompetition competition, int roundNumber)
+    {
+        FinskaCompetition current = getCompetition();
+        if ((competition == null) || (Integer.compare(competition.getId(), current.getId()) != 0) ||
+            !competition.getEntrantMap().keySet().equals(current.getEntrantMap().keySet()))
+        {
+            return 0;
+        }
+        List<FinskaRound> before = current.getRounds();
+        List<FinskaRound> after = competition.getRounds();
+        for (int i = 0; i < after.size(); i++)
+        {
+            FinskaRound round = after.get(i);
+            if (round.getKey().intValue() == roundNumber)
+            {
+                return i + 1;
+            }
+            if ((i >= before.size()) || (Integer.compare(before.get(i).getId(), round.getId()) != 0))
+            {
+                return 0;
+            }
+        }
+        return 0;
     }
 
     @Override
     protected ResultSpec createResultSpecification(boolean includeRunningTotal)
     {
-        ResultSpec spec = new ResultSpec();
+        ResultSpec spec  = new ResultSpec();
 
         spec.addItem(ResultItem.ROUNDS.toString());
         spec.addItem(ResultItem.MATCHES.toString());
@@ -78,13 +159,14 @@ public class CompetitionAnalyser extends AbstractResultsCompiler<FinskaCompetiti
     @Override
     protected void postCompile(EntrantResult result)
     {
-        if (result.getResultSpecification().hasItem(ResultItem.POINTS_PER_ROUND.toString()))
+        ResultSpec spec  = result.getResultSpecification();
+        if (spec.hasItem(ResultItem.POINTS_PER_ROUND.toString()))
         {
-            double roundsPlayed = result.getResultItemValueAsInt(ResultItem.ROUNDS.toString());
+            double roundsPlayed = result.getIntegerItem(spec.getSlot(ResultItem.ROUNDS.toString()));
             if (roundsPlayed > 0.0)
             {
-                result.setResultItem(ResultItem.POINTS_PER_ROUND.toString(),
-                        result.getResultItemValueAsInt(ResultItem.POINTS.toString()) / roundsPlayed);
+                result.setFloatingPointItem(spec.getSlot(ResultItem.POINTS_PER_ROUND.toString()),
+                        result.getIntegerItem(spec.getSlot(ResultItem.POINTS.toString())) / roundsPlayed);
             }
         }
     }
@@ -102,24 +184,106 @@ public class CompetitionAnalyser extends AbstractResultsCompiler<FinskaCompetiti
     }
 
     @Override
-    protected void processRound(Map<Integer, EntrantResult> results, FinskaRound round)
+    protected void processRound(ResultTable results, FinskaRound round)
+    {
+        scoreRound(results, 1, round.getPlayerIdSet(), round.numberOfMatches(), round.getMatches());
+    }
+
+    /**
+     * Derives an analyser for the given copy of this analyser's competition
+     * after a match in the given round was added or changed. Only that round
+     * is scored again (including its "win both" and "win all" bonuses): its
+     * old contribution is removed and its new one added to the results after
+     * that round and every later round. This analyser is left unchanged.
+     * 
+     * @param competition the competition after the change
+     * @param roundNumber the number of the round containing the match
+     * 
+     * @return The new analyser or null if the round is new or other parts have also changed.
+     */
+    public CompetitionAnalyser withMatchChange(FinskaCompetition competition, int roundNumber)
     {
-        for (Integer playerID : round.getPlayerIds())
+        int position = findChangedRound(competition, roundNumber);
+        List<FinskaRound> rounds = getCompetition().getRounds();
+        if ((position == 0) || (position > rounds.size()))
         {
-            EntrantResult result = results.get(playerID);
-            result.incrementResultItem(ResultItem.ROUNDS.toString(), 1);
-            result.incrementResultItem(ResultItem.MATCHES.toString(), round.numberOfMatches());
+            return null;
+        }
+        FinskaRound before = rounds.get(position - 1);
+        FinskaRound after = competition.getRounds().get(position - 1);
+        if (Integer.compare(before.getId(), after.getId()) != 0)
+        {
+            return null;
+        }
+
+        ResultTable delta = createDeltaTable();
+        scoreRound(delta, -1, before.getPlayerIdSet(), before.numberOfMatches(), before.getMatches());
+        scoreRound(delta, 1, after.getPlayerIdSet(), after.numberOfMatches(), after.getMatches());
+        CompetitionAnalyser analyser = new CompetitionAnalyser(this, competition);
+        analyser.mChangedRound   = position;
+        analyser.mChangedResults = Collections.unmodifiableList(analyser.applyRoundDelta(position, delta));
+        return analyser;
+    }
+
+    /**
+     * @return The position (1-based) of the round whose match change this analyser
+     *         was derived for (zero if none).
+     */
+    public int getChangedRound()
+    {
+        return mChangedRound;
+    }
+
+    /**
+     * @return The current results of the entrants whose results the match change
+     *         this analyser was derived for affected (empty if none).
+     */
+    public List<EntrantResult> getChangedResults()
+    {
+        return mChangedResults;
+    }
+
+    /**
+     * Scores a round, adding (or removing) each player's contribution.
+     * 
+     * Each match's winners are gathered into a bitset over the entrants'
+     * positions in the results, so checking whether a round's matches all
+     * had the same winners is a comparison of a few words.
+     * 
+     * @param results the results to update
+     * @param sign 1 to add the round's contribution, -1 to remove it
+     * @param playerIds the IDs of the round's players
+     * @param numberOfMatches the number of matches in the round
+     * @param matches the round's matches in match number order
+     */
+    private void scoreRound(ResultTable results, int sign, IdSet playerIds, int numberOfMatches, List<FinskaMatch> matches)
+    {
+        // Resolve the item slots once per round rather than once per update.
+        ResultSpec spec  = results.getResultSpecification();
+        int roundsSlot   = spec.getSlot(ResultItem.ROUNDS.toString());
+        int matchesSlot  = spec.getSlot(ResultItem.MATCHES.toString());
+        int winsSlot     = spec.getSlot(ResultItem.WINS.toString());
+        int pointsSlot   = spec.getSlot(ResultItem.POINTS.toString());
+        int fastWinsSlot = mScoringSystem.scoreFastWins() ? spec.getSlot(ResultItem.FAST_WINS.toString()) : -1;
+
+        for (int i = 0; i < playerIds.size(); i++)
+        {
+            int player = results.indexOf(playerIds.get(i));
+            results.incrementIntegerItem(roundsSlot, player, sign);
+            results.incrementIntegerItem(matchesSlot, player, sign * numberOfMatches);
             if (mScoringSystem.scorePointsForPlaying())
             {
-                result.incrementResultItem(ResultItem.POINTS.toString(), mScoringSystem.pointsForPlaying());
+                results.incrementIntegerItem(pointsSlot, player, sign * mScoringSystem.pointsForPlaying());
             }
         }
-        boolean recordWinBoth    = (mScoringSystem.scoreWinBoth() && (round.numberOfMatches() > 1));
-        boolean recordWinAll     = (mScoringSystem.scoreWinAll() && (round.numberOfMatches() > 1));
+        boolean recordWinBoth    = (mScoringSystem.scoreWinBoth() && (numberOfMatches > 1));
+        boolean recordWinAll     = (mScoringSystem.scoreWinAll() && (numberOfMatches > 1));
         boolean sameWinner       = true;
         int matchCount           = 0;
-        Set<Integer> lastWinners = new HashSet<>();
-        Iterator<FinskaMatch> it = round.getMatches().iterator();
+        int words                = (results.getEntrantIndex().size() + Long.SIZE - 1) / Long.SIZE;
+        long[] firstWinners      = null;
+        long[] winners           = new long[words];
+        Iterator<FinskaMatch> it = matches.iterator();
         while (it.hasNext())
         {
             FinskaMatch match = it.next();
@@ -128,45 +292,53 @@ public class CompetitionAnalyser extends AbstractResultsCompiler<FinskaCompetiti
                 continue; // Skip matches that have not been played yet.
             }
             matchCount++;
-            Set<Integer> winnerIds = match.getWinnerIds();
-            for (Integer winnerId : winnerIds)
+            // Track "win both" and "win all"
+            boolean track = (recordWinBoth && sameWinner && matchCount <= 2) ||
+                            (recordWinAll && sameWinner);
+            IdSet winnerIds = match.getWinnerIdSet();
+            for (int i = 0; i < winnerIds.size(); i++)
             {
-                EntrantResult result = results.get(winnerId);
-                result.incrementResultItem(ResultItem.WINS.toString(), 1);
-                result.incrementResultItem(ResultItem.POINTS.toString(), mScoringSystem.pointsForWin());
+                int winner = results.indexOf(winnerIds.get(i));
+                results.incrementIntegerItem(winsSlot, winner, sign);
+                results.incrementIntegerItem(pointsSlot, winner, sign * mScoringSystem.pointsForWin());
                 if (mScoringSystem.scoreFastWins() && match.isFastWin())
                 {
-                    result.incrementResultItem(ResultItem.FAST_WINS.toString(), 1);
-                    result.incrementResultItem(ResultItem.POINTS.toString(), mScoringSystem.pointsForFastWin());
+                    results.incrementIntegerItem(fastWinsSlot, winner, sign);
+                    results.incrementIntegerItem(pointsSlot, winner, sign * mScoringSystem.pointsForFastWin());
+                }
+                if (track)
+                {
+                    winners[winner / Long.SIZE] |= 1L << (winner % Long.SIZE);
                 }
             }
-            // Track "win both" and "win all"
-            if ((recordWinBoth && sameWinner && matchCount <= 2) ||
-                (recordWinAll && sameWinner))
+            if (track)
             {
-                if (lastWinners.size() == 0)
+                if (firstWinners == null)
                 {
-                    lastWinners.addAll(winnerIds);
+                    firstWinners = winners;
+                    winners      = new long[words];
                 }
                 else
                 {
-                    if (!lastWinners.equals(winnerIds))
-                    {
-                        sameWinner = false;
-                    }
+                    sameWinner = Arrays.equals(firstWinners, winners);
+                    Arrays.fill(winners, 0L);
                 }
             }
         }
         // Score "win both" and "win all"
-        if (sameWinner && (recordWinBoth || recordWinAll))
+        if (sameWinner && (recordWinBoth || recordWinAll) && (firstWinners != null))
         {
             ResultItem winItem = recordWinBoth ? ResultItem.WIN_BOTH : ResultItem.WIN_ALL;
+            int winSlot        = spec.getSlot(winItem.toString());
             int winPoints      = recordWinBoth ? mScoringSystem.pointsForWinBoth() : mScoringSystem.pointsForWinAll();
-            for (Integer winnerId : lastWinners)
+            for (int w = 0; w < words; w++)
             {
-                EntrantResult result = results.get(winnerId);
-                result.incrementResultItem(winItem.toString(), 1);
-                result.incrementResultItem(ResultItem.POINTS.toString(), winPoints);
+                for (long word = firstWinners[w]; word != 0; word &= word - 1)
+                {
+                    int winner = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                    results.incrementIntegerItem(winSlot, winner, sign);
+                    results.incrementIntegerItem(pointsSlot, winner, sign * winPoints);
+                }
             }
         }
     }
@@ -12,6 +12,10 @@ import au.com.shawware.finska.persistence.IEntityRepository;
 /**
  * Base class for services.
  *
+ * A service validates the whole of a change before it alters any entity.
+ * With a cached repository the entities it alters are the cached ones,
+ * so an invalid change must leave them untouched.
+ *
  * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
  */
 public abstract class AbstractService
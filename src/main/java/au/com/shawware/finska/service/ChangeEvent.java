@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.service;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * Describes a single change made to the repository by a service.
+ * This allows observers to refresh only what has been affected.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class ChangeEvent
+{
+    /**
+     * The kinds of entity that can be changed.
+     */
+    public enum EntityType
+    {
+        /** A player was created or updated. */
+        PLAYER,
+        /** A competition was created or updated. */
+        COMPETITION,
+        /** A round was created or updated. */
+        ROUND,
+        /** A match was created or updated. */
+        MATCH;
+    }
+
+    /** The kind of entity that changed. */
+    private final EntityType mEntityType;
+    /** The ID of the changed player (if any). */
+    private final int mPlayerID;
+    /** The ID of the affected competition (if any). */
+    private final int mCompetitionID;
+    /** The number of the affected round (if any). */
+    private final int mRoundNumber;
+    /** The number of the affected match (if any). */
+    private final int mMatchNumber;
+
+    /**
+     * Constructs a new change event.
+     *
+     * @param entityType the kind of entity that changed
+     * @param playerID the ID of the changed player (0 if none)
+     * @param competitionID the ID of the affected competition (0 if none)
+     * @param roundNumber the number of the affected round (0 if none)
+     * @param matchNumber the number of the affected match (0 if none)
+     */
+    private ChangeEvent(EntityType entityType, int playerID, int competitionID, int roundNumber, int matchNumber)
+    {
+        mEntityType    = entityType;
+        mPlayerID      = playerID;
+        mCompetitionID = competitionID;
+        mRoundNumber   = roundNumber;
+        mMatchNumber   = matchNumber;
+    }
+
+    /**
+     * Creates an event for a change to a player.
+     *
+     * @param playerID the player's ID
+     *
+     * @return The corresponding event.
+     */
+    public static ChangeEvent playerChanged(int playerID)
+    {
+        return new ChangeEvent(EntityType.PLAYER, playerID, 0, 0, 0);
+    }
+
+    /**
+     * Creates an event for a change to a competition.
+     *
+     * @param competitionID the competition's ID
+     *
+     * @return The corresponding event.
+     */
+    public static ChangeEvent competitionChanged(int competitionID)
+    {
+        return new ChangeEvent(EntityType.COMPETITION, 0, competitionID, 0, 0);
+    }
+
+    /**
+     * Creates an event for a change to a round.
+     *
+     * @param competitionID the ID of the round's competition
+     * @param roundNumber the round's number
+     *
+     * @return The corresponding event.
+     */
+    public static ChangeEvent roundChanged(int competitionID, int roundNumber)
+    {
+        return new ChangeEvent(EntityType.ROUND, 0, competitionID, roundNumber, 0);
+    }
+
+    /**
+     * Creates an event for a change to a match.
+     *
+     * @param competitionID the ID of the match's competition
+     * @param roundNumber the number of the match's round
+     * @param matchNumber the match's number
+     *
+     * @return The corresponding event.
+     */
+    public static ChangeEvent matchChanged(int competitionID, int roundNumber, int matchNumber)
+    {
+        return new ChangeEvent(EntityType.MATCH, 0, competitionID, roundNumber, matchNumber);
+    }
+
+    /**
+     * @return The kind of entity that changed.
+     */
+    public EntityType getEntityType()
+    {
+        return mEntityType;
+    }
+
+    /**
+     * @return The ID of the changed player (0 if not a player change).
+     */
+    public int getPlayerID()
+    {
+        return mPlayerID;
+    }
+
+    /**
+     * @return The ID of the affected competition (0 if not applicable).
+     */
+    public int getCompetitionID()
+    {
+        return mCompetitionID;
+    }
+
+    /**
+     * @return The number of the affected round (0 if not applicable).
+     */
+    public int getRoundNumber()
+    {
+        return mRoundNumber;
+    }
+
+    /**
+     * @return The number of the affected match (0 if not applicable).
+     */
+    public int getMatchNumber()
+    {
+        return mMatchNumber;
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public String toString()
+    {
+        return StringUtil.toString(mEntityType, mPlayerID, mCompetitionID, mRoundNumber, mMatchNumber);
+    }
+}
@@ -64,7 +64,7 @@ public class CompetitionService extends AbstractService
 
         LOG.info("Created new competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.competitionChanged(competition.getId()));
 
         return competition;
     }
@@ -99,7 +99,7 @@ public class CompetitionService extends AbstractService
  
         LOG.info("Updated competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.competitionChanged(competitionID));
 
         return competition;
     }
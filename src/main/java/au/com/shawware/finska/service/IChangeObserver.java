@@ -17,10 +17,22 @@ import au.com.shawware.util.persistence.PersistenceException;
 public interface IChangeObserver
 {
     /**
-     * Notify the observer that the repository has been updated.
-     * 
+     * Notify the observer that the repository has been updated in some
+     * unspecified way, ie. everything should be refreshed.
+     *
      * @throws PersistenceException error accessing repository
      */
     void repositoryUpdated()
         throws PersistenceException;
+
+    /**
+     * Notify the observer that the repository has been updated as
+     * described by the given event.
+     *
+     * @param event describes what has changed
+     *
+     * @throws PersistenceException error accessing repository
+     */
+    void repositoryUpdated(ChangeEvent event)
+        throws PersistenceException;
 }
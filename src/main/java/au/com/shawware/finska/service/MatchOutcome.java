@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.service;
+
+import java.util.Arrays;
+
+import au.com.shawware.util.StringUtil;
+
+/**
+ * The outcome of a single match, as supplied when recording a whole round.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class MatchOutcome
+{
+    /** The IDs of the winning players. */
+    private final int[] mWinnerIds;
+    /** Whether the winning players had a fast win. */
+    private final boolean mFastWin;
+
+    /**
+     * Constructs a new match outcome.
+     *
+     * @param winnerIds the IDs of the winning players
+     * @param fastWin whether the winning players had a fast win
+     */
+    public MatchOutcome(int[] winnerIds, boolean fastWin)
+    {
+        mWinnerIds = winnerIds;
+        mFastWin   = fastWin;
+    }
+
+    /**
+     * @return The IDs of the winning players.
+     */
+    public int[] getWinnerIds()
+    {
+        return mWinnerIds;
+    }
+
+    /**
+     * @return Whether the winning players had a fast win.
+     */
+    public boolean isFastWin()
+    {
+        return mFastWin;
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public String toString()
+    {
+        return StringUtil.toString(Arrays.toString(mWinnerIds), mFastWin);
+    }
+}
@@ -53,7 +53,7 @@ public class MatchService extends AbstractService
      * @throws PersistenceException storage error
      * @throws IllegalArgumentException empty or invalid argument
      */
-    @SuppressWarnings({ "nls" })
+    @SuppressWarnings({ "nls", "boxing" })
     public FinskaMatch createMatch(int competitionID, int roundNumber, int[] winnerIds, boolean fastWin)
         throws PersistenceException, IllegalArgumentException
     {
@@ -71,7 +71,7 @@ public class MatchService extends AbstractService
         match = mRepository.createMatch(competition, round, match);
         LOG.info("Created new match " + match.getKey() + " in round " + roundNumber + " in competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.matchChanged(competitionID, roundNumber, match.getKey()));
 
         return match;
     }
@@ -106,7 +106,7 @@ public class MatchService extends AbstractService
         mRepository.updateMatch(competition, round, match);
         LOG.info("Updated match " + match.getKey() + " in round " + roundNumber + " in competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.matchChanged(competitionID, roundNumber, matchNumber));
 
         return match;
     }
@@ -122,11 +122,10 @@ public class MatchService extends AbstractService
      * 
      * @throws IllegalArgumentException validation error
      */
-    @SuppressWarnings({ "nls", "boxing", "static-method" })
-    private void updateMatch(Map<Integer, Player> players, FinskaRound round, FinskaMatch match, int[] winnerIds, boolean fastWin)
+    @SuppressWarnings({ "nls", "boxing" })
+    /*package*/ static void updateMatch(Map<Integer, Player> players, FinskaRound round, FinskaMatch match, int[] winnerIds, boolean fastWin)
         throws IllegalArgumentException
     {
-        match.setWinnerIds(Collections.emptySet()); // TODO: is this the best way to clear the player IDs?
         for (int winnerId : winnerIds)
         {
             // TODO: handle duplicates
@@ -138,6 +137,10 @@ public class MatchService extends AbstractService
             {
                 throw new IllegalArgumentException("Cannot find player eith ID " + winnerId +  " in round " + round.getKey());
             }
+        }
+        match.setWinnerIds(Collections.emptySet()); // TODO: is this the best way to clear the player IDs?
+        for (int winnerId : winnerIds)
+        {
             match.addWinner(players.get(winnerId));
         }
         match.setFastWin(fastWin);
@@ -150,8 +153,8 @@ public class MatchService extends AbstractService
      * 
      * @throws IllegalArgumentException invalid parameter
      */
-    @SuppressWarnings({ "nls", "static-method" })
-    private void verifyParameters(int[] winnerIds)
+    @SuppressWarnings({ "nls" })
+    /*package*/ static void verifyParameters(int[] winnerIds)
         throws IllegalArgumentException
     {
         if ((winnerIds == null) || (winnerIds.length == 0))
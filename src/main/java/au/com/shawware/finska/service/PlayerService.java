@@ -86,7 +86,7 @@ public class PlayerService extends AbstractService
         player = mRepository.createPlayer(player);
         LOG.info("Created new player " + player.getId());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.playerChanged(player.getId()));
 
         return player;
     }
@@ -115,7 +115,7 @@ public class PlayerService extends AbstractService
         mRepository.updatePlayer(player);
         LOG.info("Updated player " + player.getId());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.playerChanged(id));
 
         return player;
     }
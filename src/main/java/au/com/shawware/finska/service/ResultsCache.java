@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import au.com.shawware.compadmin.scoring.IResultsCompiler;
+import au.com.shawware.util.StringUtil;
+
+/**
+ * A bounded, least-recently-used cache of computed results, keyed by
+ * competition, number of rounds and view.
+ *
+ * Each entry remembers the compiler it was computed with. An entry whose
+ * compiler is not the caller's current compiler for that competition is
+ * treated as a miss, so a reader holding an older results snapshot can
+ * never see (or leave behind) results from a different version.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class ResultsCache
+{
+    /**
+     * The kinds of results that are cached.
+     */
+    public enum View
+    {
+        /** A leader board. */
+        LEADER_BOARD,
+        /** The results of each round. */
+        ROUND_RESULTS,
+        /** Each entrant's rank history. */
+        RANK_HISTORY,
+        /** Each entrant's result history. */
+        RESULT_HISTORY;
+    }
+
+    /** The cached entries, in least-recently-used order. */
+    private final Map<Key, Entry> mEntries;
+    /** The number of lookups that found a valid entry. */
+    private final AtomicLong mHits;
+    /** The number of lookups that had to compute the results. */
+    private final AtomicLong mMisses;
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param maximumSize the maximum number of entries to hold
+     *
+     * @throws IllegalArgumentException invalid maximum size
+     */
+    public ResultsCache(int maximumSize)
+        throws IllegalArgumentException
+    {
+        if (maximumSize <= 0)
+        {
+            throw new IllegalArgumentException("Invalid cache size: " + maximumSize); //$NON-NLS-1$
+        }
+        mEntries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                return size() > maximumSize;
+            }
+        };
+        mHits   = new AtomicLong(0);
+        mMisses = new AtomicLong(0);
+    }
+
+    /**
+     * Retrieves the given results, computing and caching them if they are
+     * not present or were computed with a different compiler.
+     *
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds the results cover
+     * @param view the kind of results
+     * @param compiler the competition's current results compiler
+     * @param compute computes the results
+     *
+     * @return The results.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int competitionID, int rounds, View view, IResultsCompiler compiler, Supplier<T> compute)
+    {
+        Key key = new Key(competitionID, rounds, view);
+        synchronized (mEntries)
+        {
+            Entry entry = mEntries.get(key);
+            if ((entry != null) && (entry.mCompiler == compiler))
+            {
+                mHits.incrementAndGet();
+                return (T)entry.mValue;
+            }
+        }
+        mMisses.incrementAndGet();
+        // Compute outside the lock so slow compilations do not block other readers.
+        T value = compute.get();
+        synchronized (mEntries)
+        {
+            mEntries.put(key, new Entry(compiler, value));
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the given results only if they are cached for the given
+     * compiler, without computing them or counting a hit or miss.
+     *
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds the results cover
+     * @param view the kind of results
+     * @param compiler the compiler the results must have been computed with
+     *
+     * @return The results or null if they are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T peek(int competitionID, int rounds, View view, IResultsCompiler compiler)
+    {
+        synchronized (mEntries)
+        {
+            Entry entry = mEntries.get(new Key(competitionID, rounds, view));
+            return ((entry != null) && (entry.mCompiler == compiler)) ? (T)entry.mValue : null;
+        }
+    }
+
+    /**
+     * Caches the given results, computed with the given compiler.
+     *
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds the results cover
+     * @param view the kind of results
+     * @param compiler the compiler the results were computed with
+     * @param value the results
+     */
+    public void put(int competitionID, int rounds, View view, IResultsCompiler compiler, Object value)
+    {
+        synchronized (mEntries)
+        {
+            mEntries.put(new Key(competitionID, rounds, view), new Entry(compiler, value));
+        }
+    }
+
+    /**
+     * Discards all cached results for the given competition.
+     *
+     * @param competitionID the competition ID
+     */
+    public void invalidate(int competitionID)
+    {
+        synchronized (mEntries)
+        {
+            mEntries.keySet().removeIf(key -> key.mCompetitionID == competitionID);
+        }
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void clear()
+    {
+        synchronized (mEntries)
+        {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @return The number of cached entries.
+     */
+    public int size()
+    {
+        synchronized (mEntries)
+        {
+            return mEntries.size();
+        }
+    }
+
+    /**
+     * @return The number of lookups that found a valid entry.
+     */
+    public long getHits()
+    {
+        return mHits.get();
+    }
+
+    /**
+     * @return The number of lookups that had to compute the results.
+     */
+    public long getMisses()
+    {
+        return mMisses.get();
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public String toString()
+    {
+        return StringUtil.toString(size(), mHits.get(), mMisses.get());
+    }
+
+    /**
+     * Identifies a set of cached results.
+     */
+    private static final class Key
+    {
+        /** The competition ID. */
+        private final int mCompetitionID;
+        /** The number of rounds. */
+        private final int mRounds;
+        /** The kind of results. */
+        private final View mView;
+
+        /**
+         * Constructs a new key.
+         *
+         * @param competitionID the competition ID
+         * @param rounds the number of rounds
+         * @param view the kind of results
+         */
+        Key(int competitionID, int rounds, View view)
+        {
+            mCompetitionID = competitionID;
+            mRounds        = rounds;
+            mView          = view;
+        }
+
+        @Override
+        @SuppressWarnings("boxing")
+        public int hashCode()
+        {
+            return Objects.hash(mCompetitionID, mRounds, mView);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key)other;
+            return (mCompetitionID == key.mCompetitionID) && (mRounds == key.mRounds) && (mView == key.mView);
+        }
+    }
+
+    /**
+     * A set of cached results and the compiler they were computed with.
+     */
+    private static final class Entry
+    {
+        /** The compiler used. */
+        private final IResultsCompiler mCompiler;
+        /** The computed results. */
+        private final Object mValue;
+
+        /**
+         * Constructs a new entry.
+         *
+         * @param compiler the compiler used
+         * @param value the computed results
+         */
+        Entry(IResultsCompiler compiler, Object value)
+        {
+            mCompiler = compiler;
+            mValue    = value;
+        }
+    }
+}
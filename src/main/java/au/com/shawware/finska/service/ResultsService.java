@@ -9,14 +9,22 @@ package au.com.shawware.finska.service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import au.com.shawware.compadmin.entity.Competition;
+import au.com.shawware.compadmin.metrics.Metrics;
+import au.com.shawware.compadmin.metrics.Operation;
 import au.com.shawware.compadmin.scoring.EntrantHistory;
 import au.com.shawware.compadmin.scoring.EntrantResult;
 import au.com.shawware.compadmin.scoring.IResultsCompiler;
@@ -35,6 +43,11 @@ import au.com.shawware.util.persistence.PersistenceException;
  */
 public class ResultsService implements IChangeObserver
 {
+    private static final Logger LOG = LoggerFactory.getLogger(ResultsService.class);
+
+    /** The maximum number of results to cache. */
+    private static final int RESULTS_CACHE_SIZE = 256;
+
     /** The source for competition data. */
     private final IEntityRepository mRepository;
     /** The Finska scoring system to use. */
@@ -45,13 +58,14 @@ public class ResultsService implements IChangeObserver
     /** A comparator for sorting competitions by the start date in reverse. */
     private final Comparator<FinskaCompetition> mReverseSortByStartDate;
 
-    // Items based on others, created during initialisation.
-    /** The full set of competitions. */
-    private Map<Integer, FinskaCompetition> mCompetitions;
-    /** The current competition (if any) we are processing. */
-    private FinskaCompetition mCurrentCompetition;
-    /** The results compiler for each competition. */
-    private Map<Integer, IResultsCompiler> mCompilers;
+    /** The latest results, replaced whole whenever the repository changes. */
+    private volatile ResultsSnapshot mSnapshot;
+    /** The computed results, invalidated per competition as it changes. */
+    private final ResultsCache mCache;
+    /** The number of recent competitions to pre-warm. */
+    private volatile int mPrewarmCount;
+    /** Pre-warms competitions (if enabled). */
+    private volatile Executor mPrewarmExecutor;
 
     /**
      * Constructs a new service.
@@ -63,22 +77,261 @@ public class ResultsService implements IChangeObserver
     {
         mRepository             = repository;
         mScoringSystem          = scoringSystem;
-        mCompilers              = new HashMap<>();
         mNaturalSortByStartDate = Comparator.comparing(Competition::getStartDate, Comparator.naturalOrder());
         mReverseSortByStartDate = Comparator.comparing(Competition::getStartDate, Comparator.reverseOrder());
+        mSnapshot               = new ResultsSnapshot();
+        mCache                  = new ResultsCache(RESULTS_CACHE_SIZE);
+        mPrewarmCount           = 0;
+        mPrewarmExecutor        = null;
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public synchronized void repositoryUpdated()
+        throws PersistenceException
+    {
+        long start = Metrics.start();
+        // Each competition's compiler is built when it is first needed.
+        Map<Integer, FinskaCompetition> competitions = new HashMap<>();
+        mRepository.getCompetitions().forEach((id, competition) -> competitions.put(id, competition.copy()));
+        mCache.clear();
+        publish(competitions, Collections.emptyMap());
+        Metrics.record(Operation.RESULTS_REFRESH, Metrics.NO_COMPETITION, start);
     }
 
     @Override
     @SuppressWarnings("boxing")
-    public void repositoryUpdated()
+    public synchronized void repositoryUpdated(ChangeEvent event)
         throws PersistenceException
     {
-        mCompetitions = mRepository.getCompetitions();
-        mCurrentCompetition = getCurrentCompetition(mCompetitions);
-        mCompilers.clear();
-        mCompetitions.values().forEach(competition -> {
-            mCompilers.put(competition.getId(), new CompetitionAnalyser(competition, mScoringSystem));
-        });
+        ResultsSnapshot snapshot = mSnapshot;
+        if (event.getEntityType() == ChangeEvent.EntityType.PLAYER)
+        {
+            /*
+             * A new player does not belong to any competition yet. An updated
+             * player may appear in any number of competitions so refresh them all.
+             */
+            boolean entrant = snapshot.getCompetitions().values().stream().anyMatch(c -> c.hasEntrant(event.getPlayerID()));
+            if (entrant)
+            {
+                repositoryUpdated();
+            }
+            return;
+        }
+
+        // Only the affected competition needs to be reloaded and re-analysed.
+        long start = Metrics.start();
+        FinskaCompetition competition = mRepository.getCompetition(event.getCompetitionID()).copy();
+        Map<Integer, FinskaCompetition> competitions = new HashMap<>(snapshot.getCompetitions());
+        Map<Integer, IResultsCompiler> compilers = snapshot.getBuiltCompilers();
+        competitions.put(competition.getId(), competition);
+        IResultsCompiler previous = compilers.remove(competition.getId());
+        IResultsCompiler compiler = deriveCompiler(previous, competition, event);
+        List<EntrantResult> leaderBoard = updateLeaderBoard(previous, compiler, competition.numberOfRounds());
+        // Invalidate first so pre-warmed results are not discarded.
+        mCache.invalidate(competition.getId());
+        if (compiler != null)
+        {
+            compilers.put(competition.getId(), compiler);
+            if (leaderBoard != null)
+            {
+                mCache.put(competition.getId(), competition.numberOfRounds(), ResultsCache.View.LEADER_BOARD, compiler, leaderBoard);
+            }
+        }
+        publish(competitions, compilers);
+        Metrics.record(Operation.RESULTS_REFRESH, competition.getId(), start);
+    }
+
+    /**
+     * Derives a compiler for the given changed competition from its previous
+     * compiler, re-using what the previous one compiled before the change.
+     * The previous compiler is left unchanged, as older snapshots still use it.
+     * 
+     * @param previous the previous compiler (may be null if not built)
+     * @param competition the copy of the competition after the change
+     * @param event the change
+     * 
+     * @return The new compiler or null if one must be built from scratch.
+     */
+    private static IResultsCompiler deriveCompiler(IResultsCompiler previous, FinskaCompetition competition, ChangeEvent event)
+    {
+        IResultsCompiler compiler = null;
+        if (previous instanceof CompetitionAnalyser)
+        {
+            CompetitionAnalyser analyser = (CompetitionAnalyser)previous;
+            switch (event.getEntityType())
+            {
+                case ROUND:
+                    compiler = analyser.withRoundChange(competition, event.getRoundNumber());
+                    break;
+                case MATCH:
+                    compiler = analyser.withMatchChange(competition, event.getRoundNumber());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return compiler;
+    }
+
+    /**
+     * Updates the previous compiler's cached leader board for a match change,
+     * rather than generating the new compiler's leader board again.
+     * 
+     * @param previous the previous compiler (may be null)
+     * @param compiler the compiler derived from it (may be null)
+     * @param rounds the number of rounds in the competition
+     * 
+     * @return The updated leader board or null if there is none to update.
+     */
+    private List<EntrantResult> updateLeaderBoard(IResultsCompiler previous, IResultsCompiler compiler, int rounds)
+    {
+        if (!(compiler instanceof CompetitionAnalyser) || (((CompetitionAnalyser)compiler).getChangedRound() == 0))
+        {
+            return null;
+        }
+        CompetitionAnalyser analyser = (CompetitionAnalyser)compiler;
+        List<EntrantResult> leaderBoard = mCache.peek(analyser.getCompetitionID(), rounds, ResultsCache.View.LEADER_BOARD, previous);
+        if (leaderBoard == null)
+        {
+            return null;
+        }
+        return LeaderBoardGenerator.updateLeaderBoard(leaderBoard, analyser.getChangedResults(), analyser,
+                                                      rounds, analyser.getChangedRound());
+    }
+
+    /**
+     * Builds the next snapshot from the given competitions and compilers
+     * and then publishes it. Readers continue to use the previous snapshot
+     * until this one is complete. The competitions must be copies that no
+     * one else holds, since the repository may hand out the instances that
+     * the other services change in place.
+     * 
+     * @param competitions the full set of competitions
+     * @param compilers the compilers that can be re-used from the previous snapshot
+     */
+    private void publish(Map<Integer, FinskaCompetition> competitions, Map<Integer, IResultsCompiler> compilers)
+    {
+        ResultsSnapshot snapshot = new ResultsSnapshot(mSnapshot.getVersion() + 1, competitions,
+                                                       getCurrentCompetition(competitions), compilers,
+                                                       this::createCompiler);
+        mSnapshot = snapshot;
+        prewarm(snapshot);
+    }
+
+    /**
+     * Creates a compiler for the given competition.
+     * 
+     * @param competition the competition
+     * 
+     * @return The new compiler.
+     */
+    private IResultsCompiler createCompiler(FinskaCompetition competition)
+    {
+        long start = Metrics.start();
+        IResultsCompiler compiler = new CompetitionAnalyser(competition, mScoringSystem);
+        Metrics.record(Operation.ANALYSER_BUILD, competition.getId(), start);
+        return compiler;
+    }
+
+    /**
+     * Specifies how many of the most recent competitions to pre-warm each
+     * time the results change. Their compilers are built and their leader
+     * boards computed and cached using the given executor, so the caller
+     * is not delayed. A bounded executor limits the work done at once.
+     * 
+     * @param competitions the number of competitions to pre-warm (zero disables pre-warming)
+     * @param executor the executor to use (may be null if disabled)
+     * 
+     * @throws IllegalArgumentException invalid number of competitions or missing executor
+     */
+    public synchronized void setPrewarming(int competitions, Executor executor)
+        throws IllegalArgumentException
+    {
+        if (competitions < 0)
+        {
+            throw new IllegalArgumentException("Invalid number of competitions: " + competitions); //$NON-NLS-1$
+        }
+        if ((competitions > 0) && (executor == null))
+        {
+            throw new IllegalArgumentException("Empty executor"); //$NON-NLS-1$
+        }
+        mPrewarmCount    = competitions;
+        mPrewarmExecutor = executor;
+    }
+
+    /**
+     * Pre-warms the most recent competitions in the given snapshot, if enabled.
+     * 
+     * @param snapshot the snapshot to pre-warm
+     */
+    private void prewarm(ResultsSnapshot snapshot)
+    {
+        if (mPrewarmCount == 0)
+        {
+            return;
+        }
+        Executor executor = mPrewarmExecutor;
+        snapshot.getCompetitions().values().stream()
+                .sorted(mReverseSortByStartDate)
+                .limit(mPrewarmCount)
+                .forEach(competition -> {
+                    try
+                    {
+                        executor.execute(() -> prewarm(snapshot, competition));
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        // Pre-warming is only an optimisation so skip it when the executor is full.
+                        LOG.debug("Skipped pre-warming competition " + competition.getId()); //$NON-NLS-1$
+                    }
+                });
+    }
+
+    /**
+     * Builds the given competition's compiler and caches its leader board.
+     * 
+     * @param snapshot the snapshot containing the competition
+     * @param competition the competition to pre-warm
+     */
+    @SuppressWarnings("boxing")
+    private void prewarm(ResultsSnapshot snapshot, FinskaCompetition competition)
+    {
+        try
+        {
+            IResultsCompiler compiler = snapshot.getCompiler(competition.getId());
+            int rounds = competition.numberOfRounds();
+            if (rounds > 0)
+            {
+                mCache.get(competition.getId(), rounds, ResultsCache.View.LEADER_BOARD, compiler,
+                        () -> LeaderBoardGenerator.generateLeaderBoard(compiler, rounds));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Unable to pre-warm competition " + competition.getId() + ": " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Retrieves the latest results snapshot. The snapshot never changes,
+     * so it can be used to make several consistent queries.
+     * 
+     * @return The latest snapshot.
+     */
+    public ResultsSnapshot getSnapshot()
+    {
+        return mSnapshot;
+    }
+
+    /**
+     * Retrieves the cache of computed results, mainly for its statistics.
+     * 
+     * @return The results cache.
+     */
+    public ResultsCache getResultsCache()
+    {
+        return mCache;
     }
 
     /**
@@ -127,19 +380,9 @@ public class ResultsService implements IChangeObserver
      * 
      * @return The calculated leader board.
      */
-    @SuppressWarnings("boxing")
     public List<EntrantResult> getLeaderBoard()
     {
-        List<EntrantResult> leaderBoard;
-        if (mCurrentCompetition == null)
-        {
-            leaderBoard = new ArrayList<>();
-        }
-        else
-        {
-            leaderBoard = LeaderBoardGenerator.generateLeaderBoard(mCompilers.get(mCurrentCompetition.getId()));
-        }
-        return leaderBoard;
+        return mSnapshot.getLeaderBoard();
     }
 
     /**
@@ -159,11 +402,68 @@ public class ResultsService implements IChangeObserver
     @SuppressWarnings("boxing")
     public List<EntrantResult> getLeaderBoard(int competitionID, int rounds)
     {
-        if (!mCompetitions.containsKey(competitionID))
+        ResultsSnapshot snapshot = mSnapshot;
+        if (!snapshot.getCompetitions().containsKey(competitionID))
         {
             throw new IllegalArgumentException("Competition does not exist: " + competitionID); //$NON-NLS-1$
         }
-        return LeaderBoardGenerator.generateLeaderBoard(mCompilers.get(competitionID), rounds);
+        IResultsCompiler compiler = snapshot.getCompiler(competitionID);
+        List<EntrantResult> leaderBoard = mCache.get(competitionID, rounds, ResultsCache.View.LEADER_BOARD, compiler,
+                () -> LeaderBoardGenerator.generateLeaderBoard(compiler, rounds));
+        return ResultsSnapshot.copyResults(leaderBoard);
+    }
+
+    /**
+     * Calculates the top of the leader board for the given competition
+     * and number of rounds, without ranking every entrant.
+     * 
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds
+     * @param count the maximum number of results to return
+     * 
+     * @return The top results (with their previous ranks).
+     *
+     * @throws IllegalArgumentException invalid competition ID, number of rounds or number of results
+     */
+    public List<EntrantResult> getTopResults(int competitionID, int rounds, int count)
+    {
+        return LeaderBoardGenerator.generateTopResults(getCompiler(competitionID), rounds, count);
+    }
+
+    /**
+     * Calculates the given player's result and rank in the given
+     * competition after the given number of rounds.
+     * 
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds
+     * @param playerID the player's ID
+     * 
+     * @return The player's result (with its rank and previous rank).
+     *
+     * @throws IllegalArgumentException invalid competition ID, number of rounds or player
+     */
+    public EntrantResult getPlayerResult(int competitionID, int rounds, int playerID)
+    {
+        return LeaderBoardGenerator.generateEntrantResult(getCompiler(competitionID), rounds, playerID);
+    }
+
+    /**
+     * Retrieves the given competition's results compiler from the current snapshot.
+     * 
+     * @param competitionID the competition ID
+     * 
+     * @return The compiler.
+     *
+     * @throws IllegalArgumentException invalid competition ID
+     */
+    private IResultsCompiler getCompiler(int competitionID)
+    {
+        IResultsCompiler compiler = mSnapshot.getCompiler(competitionID);
+        if (compiler == null)
+        {
+            throw new IllegalArgumentException("Competition does not exist: " + competitionID); //$NON-NLS-1$
+        }
+        return compiler;
     }
 
     /**
@@ -174,14 +474,23 @@ public class ResultsService implements IChangeObserver
     @SuppressWarnings("boxing")
     public List<List<EntrantResult>> getRoundResults()
     {
+        ResultsSnapshot snapshot = mSnapshot;
+        FinskaCompetition current = snapshot.getCurrentCompetition();
         List<List<EntrantResult>> roundResults;
-        if (mCurrentCompetition == null)
+        if (current == null)
         {
             roundResults = new ArrayList<>();
         }
         else
         {
-            roundResults = mCompilers.get(mCurrentCompetition.getId()).compileRoundResults();
+            IResultsCompiler compiler = snapshot.getCompiler(current.getId());
+            List<List<EntrantResult>> cached = mCache.get(current.getId(), current.numberOfRounds(), ResultsCache.View.ROUND_RESULTS,
+                                                          compiler, compiler::compileRoundResults);
+            roundResults = new ArrayList<>(cached.size());
+            for (List<EntrantResult> results : cached)
+            {
+                roundResults.add(ResultsSnapshot.copyResults(results));
+            }
         }
         return roundResults;
     }
@@ -189,14 +498,19 @@ public class ResultsService implements IChangeObserver
     @SuppressWarnings("boxing")
     public List<EntrantHistory> getRankHistory()
     {
+        ResultsSnapshot snapshot = mSnapshot;
+        FinskaCompetition current = snapshot.getCurrentCompetition();
         List<EntrantHistory> history;
-        if (mCurrentCompetition == null)
+        if (current == null)
         {
             history = new ArrayList<>();
         }
         else
         {
-            history = LeaderBoardGenerator.generateRankHistory(mCompilers.get(mCurrentCompetition.getId()), mCurrentCompetition.numberOfRounds());
+            IResultsCompiler compiler = snapshot.getCompiler(current.getId());
+            int rounds = current.numberOfRounds();
+            history = ResultsSnapshot.copyHistory(mCache.get(current.getId(), rounds, ResultsCache.View.RANK_HISTORY, compiler,
+                                                             () -> LeaderBoardGenerator.generateRankHistory(compiler, rounds)));
         }
         return history;
     }
@@ -204,14 +518,19 @@ public class ResultsService implements IChangeObserver
     @SuppressWarnings("boxing")
     public List<EntrantHistory> getResultHistory()
     {
+        ResultsSnapshot snapshot = mSnapshot;
+        FinskaCompetition current = snapshot.getCurrentCompetition();
         List<EntrantHistory> history;
-        if (mCurrentCompetition == null)
+        if (current == null)
         {
             history = new ArrayList<>();
         }
         else
         {
-            history = LeaderBoardGenerator.generateResultHistory(mCompilers.get(mCurrentCompetition.getId()), mCurrentCompetition.numberOfRounds(), ResultItem.POINTS.toString());
+            IResultsCompiler compiler = snapshot.getCompiler(current.getId());
+            int rounds = current.numberOfRounds();
+            history = ResultsSnapshot.copyHistory(mCache.get(current.getId(), rounds, ResultsCache.View.RESULT_HISTORY, compiler,
+                                                             () -> LeaderBoardGenerator.generateResultHistory(compiler, rounds, ResultItem.POINTS.toString())));
         }
         return history;
     }
@@ -223,7 +542,7 @@ public class ResultsService implements IChangeObserver
      */
     public List<FinskaCompetition> getCompetitions()
     {
-        return mCompetitions.values().stream()
+        return mSnapshot.getCompetitions().values().stream()
                 .sorted(mReverseSortByStartDate)
                 .collect(Collectors.toList());
     }
@@ -238,7 +557,7 @@ public class ResultsService implements IChangeObserver
     @SuppressWarnings("boxing")
     public FinskaCompetition getCompetition(int id)
     {
-        return mCompetitions.get(id);
+        return mSnapshot.getCompetitions().get(id);
     }
 
     /**
@@ -248,6 +567,6 @@ public class ResultsService implements IChangeObserver
      */
     public FinskaCompetition getCurrentCompetition()
     {
-        return mCurrentCompetition;
+        return mSnapshot.getCurrentCompetition();
     }
 }
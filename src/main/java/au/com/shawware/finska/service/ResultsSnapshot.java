@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.service;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import au.com.shawware.compadmin.scoring.EntrantHistory;
+import au.com.shawware.compadmin.scoring.EntrantResult;
+import au.com.shawware.compadmin.scoring.IResultsCompiler;
+import au.com.shawware.compadmin.scoring.LeaderBoardGenerator;
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.util.StringUtil;
+
+/**
+ * An immutable, versioned view of the competitions and their results.
+ * A new snapshot is built for every change and then published whole,
+ * so readers always see a consistent set of competitions and compilers.
+ *
+ * A competition's results compiler is only built the first time it is
+ * needed and is then kept for the life of the snapshot.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+public class ResultsSnapshot
+{
+    /** The version of this snapshot (increases with each change). */
+    private final long mVersion;
+    /** The full set of competitions. */
+    private final Map<Integer, FinskaCompetition> mCompetitions;
+    /** The current competition (if any). */
+    private final FinskaCompetition mCurrentCompetition;
+    /** The results compilers built so far, by competition ID. */
+    private final Map<Integer, IResultsCompiler> mCompilers;
+    /** Builds the results compiler for a competition. */
+    private final Function<FinskaCompetition, IResultsCompiler> mCompilerFactory;
+    /** A read-only view of every competition's compiler. */
+    private final Map<Integer, IResultsCompiler> mCompilerView;
+    /** The leader board for the current competition. */
+    private final List<EntrantResult> mLeaderBoard;
+
+    /**
+     * Constructs a new snapshot, computing the current leader board.
+     * The given maps are copied.
+     *
+     * @param version the snapshot's version
+     * @param competitions the full set of competitions
+     * @param currentCompetition the current competition (may be null)
+     * @param compilers compilers already built for unchanged competitions
+     * @param compilerFactory builds the compiler for any other competition
+     */
+    @SuppressWarnings("boxing")
+    /*package*/ ResultsSnapshot(long version, Map<Integer, FinskaCompetition> competitions,
+                                FinskaCompetition currentCompetition, Map<Integer, IResultsCompiler> compilers,
+                                Function<FinskaCompetition, IResultsCompiler> compilerFactory)
+    {
+        mVersion            = version;
+        mCompetitions       = Collections.unmodifiableMap(new HashMap<>(competitions));
+        mCurrentCompetition = currentCompetition;
+        mCompilers          = new ConcurrentHashMap<>();
+        mCompilerFactory    = compilerFactory;
+        mCompilerView       = new CompilerView();
+        compilers.forEach((id, compiler) -> {
+            if (mCompetitions.containsKey(id))
+            {
+                mCompilers.put(id, compiler);
+            }
+        });
+        if (currentCompetition == null)
+        {
+            mLeaderBoard = Collections.emptyList();
+        }
+        else
+        {
+            mLeaderBoard = Collections.unmodifiableList(
+                    LeaderBoardGenerator.generateLeaderBoard(getCompiler(currentCompetition.getId())));
+        }
+    }
+
+    /**
+     * Constructs an empty snapshot.
+     */
+    /*package*/ ResultsSnapshot()
+    {
+        this(0, Collections.emptyMap(), null, Collections.emptyMap(), competition -> null);
+    }
+
+    /**
+     * @return The version of this snapshot.
+     */
+    public long getVersion()
+    {
+        return mVersion;
+    }
+
+    /**
+     * @return The full set of competitions (unmodifiable).
+     */
+    public Map<Integer, FinskaCompetition> getCompetitions()
+    {
+        return mCompetitions;
+    }
+
+    /**
+     * @return The current competition or null if there is none.
+     */
+    public FinskaCompetition getCurrentCompetition()
+    {
+        return mCurrentCompetition;
+    }
+
+    /**
+     * The results compiler for each competition (unmodifiable). Looking up
+     * a competition's compiler builds it if need be.
+     *
+     * @return The results compiler for each competition.
+     */
+    public Map<Integer, IResultsCompiler> getCompilers()
+    {
+        return mCompilerView;
+    }
+
+    /**
+     * Retrieves the given competition's results compiler, building it
+     * the first time it is needed.
+     *
+     * @param competitionID the competition ID
+     *
+     * @return The compiler or null if there is no such competition.
+     */
+    @SuppressWarnings("boxing")
+    public IResultsCompiler getCompiler(int competitionID)
+    {
+        FinskaCompetition competition = mCompetitions.get(competitionID);
+        if (competition == null)
+        {
+            return null;
+        }
+        return mCompilers.computeIfAbsent(competitionID, id -> mCompilerFactory.apply(competition));
+    }
+
+    /**
+     * @return A copy of the compilers built so far, by competition ID.
+     */
+    /*package*/ Map<Integer, IResultsCompiler> getBuiltCompilers()
+    {
+        return new HashMap<>(mCompilers);
+    }
+
+    /**
+     * The leader board for the current competition, computed when the
+     * snapshot was built. The list is never null but may be empty.
+     *
+     * @return A copy of the current leader board.
+     */
+    public List<EntrantResult> getLeaderBoard()
+    {
+        return copyResults(mLeaderBoard);
+    }
+
+    /**
+     * Copies the given results, including their ranks, so that callers
+     * cannot alter the shared originals.
+     *
+     * @param results the results to copy
+     *
+     * @return The copies.
+     */
+    /*package*/ static List<EntrantResult> copyResults(List<EntrantResult> results)
+    {
+        List<EntrantResult> copies = new ArrayList<>(results.size());
+        for (EntrantResult result : results)
+        {
+            EntrantResult copy = new EntrantResult(result);
+            copy.setRank(result.getRank());
+            copy.setPreviousRank(result.getPreviousRank());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Copies the given histories so that callers cannot alter the shared
+     * originals.
+     *
+     * @param history the histories to copy
+     *
+     * @return The copies.
+     */
+    /*package*/ static List<EntrantHistory> copyHistory(List<EntrantHistory> history)
+    {
+        List<EntrantHistory> copies = new ArrayList<>(history.size());
+        for (EntrantHistory entrant : history)
+        {
+            copies.add(new EntrantHistory(entrant.getEntrantID(), entrant.getHistory().clone()));
+        }
+        return copies;
+    }
+
+    /**
+     * A read-only map of every competition's compiler, building each one
+     * as it is retrieved.
+     */
+    private final class CompilerView extends AbstractMap<Integer, IResultsCompiler>
+    {
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return mCompetitions.containsKey(key);
+        }
+
+        @Override
+        @SuppressWarnings("boxing")
+        public IResultsCompiler get(Object key)
+        {
+            return (key instanceof Integer) ? getCompiler((Integer)key) : null;
+        }
+
+        @Override
+        public Set<Integer> keySet()
+        {
+            return mCompetitions.keySet();
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, IResultsCompiler>> entrySet()
+        {
+            return new AbstractSet<Map.Entry<Integer, IResultsCompiler>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, IResultsCompiler>> iterator()
+                {
+                    Iterator<Integer> ids = mCompetitions.keySet().iterator();
+                    return new Iterator<Map.Entry<Integer, IResultsCompiler>>() {
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return ids.hasNext();
+                        }
+
+                        @Override
+                        @SuppressWarnings("boxing")
+                        public Map.Entry<Integer, IResultsCompiler> next()
+                        {
+                            Integer id = ids.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(id, getCompiler(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return mCompetitions.size();
+                }
+            };
+        }
+    }
+
+    @Override
+    @SuppressWarnings("boxing")
+    public String toString()
+    {
+        return StringUtil.toString(mVersion, mCompetitions.keySet(),
+                (mCurrentCompetition == null) ? null : mCurrentCompetition.getId());
+    }
+}
@@ -8,13 +8,16 @@
 package au.com.shawware.finska.service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
 import au.com.shawware.finska.entity.FinskaRound;
 import au.com.shawware.finska.entity.Player;
 import au.com.shawware.finska.persistence.IEntityRepository;
@@ -52,7 +55,7 @@ public class RoundService extends AbstractService
      * @throws PersistenceException storage error
      * @throws IllegalArgumentException empty or invalid argument
      */
-    @SuppressWarnings({ "nls" })
+    @SuppressWarnings({ "nls", "boxing" })
     public FinskaRound createRound(int competitionID, LocalDate roundDate, int[] playerIds)
         throws PersistenceException, IllegalArgumentException
     {
@@ -68,7 +71,58 @@ public class RoundService extends AbstractService
         round = mRepository.createRound(competition, round);
         LOG.info("Created new round " + round.getKey() + " in competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.roundChanged(competitionID, round.getKey()));
+
+        return round;
+    }
+
+    /**
+     * Creates a new round, together with all of its matches, in the specified
+     * competition. Everything is validated before anything is stored, each
+     * entity is written once and a single change notification is issued.
+     * 
+     * @param competitionID the competition ID
+     * @param roundDate the round date
+     * @param playerIds the players participating in the round
+     * @param outcomes the outcome of each match in the order they were played
+     * 
+     * @return The new round.
+     * 
+     * @throws PersistenceException storage error
+     * @throws IllegalArgumentException empty or invalid argument
+     */
+    @SuppressWarnings({ "nls", "boxing" })
+    public FinskaRound createRound(int competitionID, LocalDate roundDate, int[] playerIds, List<MatchOutcome> outcomes)
+        throws PersistenceException, IllegalArgumentException
+    {
+        verifyParameters(roundDate, playerIds);
+        if ((outcomes == null) || (outcomes.size() == 0))
+        {
+            throw new IllegalArgumentException("Empty match outcomes");
+        }
+        for (MatchOutcome outcome : outcomes)
+        {
+            MatchService.verifyParameters(outcome.getWinnerIds());
+        }
+
+        FinskaCompetition competition = mRepository.getCompetition(competitionID);
+        Map<Integer, Player> players = competition.getEntrantMap();
+
+        FinskaRound round = new FinskaRound(competition.numberOfRounds() + 1, roundDate);
+        updateRound(players, round, roundDate, playerIds);
+
+        List<FinskaMatch> matches = new ArrayList<>(outcomes.size());
+        for (MatchOutcome outcome : outcomes)
+        {
+            FinskaMatch match = new FinskaMatch(matches.size() + 1, roundDate);
+            MatchService.updateMatch(players, round, match, outcome.getWinnerIds(), outcome.isFastWin());
+            matches.add(match);
+        }
+
+        round = mRepository.createRound(competition, round, matches);
+        LOG.info("Created new round " + round.getKey() + " with " + matches.size() + " matches in competition " + competition.getKey());
+
+        mObserver.repositoryUpdated(ChangeEvent.roundChanged(competitionID, round.getKey()));
 
         return round;
     }
@@ -101,7 +155,7 @@ public class RoundService extends AbstractService
         mRepository.updateRound(round);
         LOG.info("Updated round " + round.getKey() + " in competition " + competition.getKey());
 
-        mObserver.repositoryUpdated();
+        mObserver.repositoryUpdated(ChangeEvent.roundChanged(competitionID, number));
 
         return round;
     }
@@ -120,8 +174,6 @@ public class RoundService extends AbstractService
     private void updateRound(Map<Integer, Player> players, FinskaRound round, LocalDate roundDate, int[] playerIds)
         throws IllegalArgumentException
     {
-        round.setRoundDate(roundDate);
-        round.setPlayerIds(Collections.emptySet()); // TODO: is this the best way to clear the player IDs?
         for (int playerId : playerIds)
         {
             // TODO: handle duplicates
@@ -129,6 +181,11 @@ public class RoundService extends AbstractService
             {
                 throw new IllegalArgumentException("Cannot find player with ID: " + playerId);
             }
+        }
+        round.setRoundDate(roundDate);
+        round.setPlayerIds(Collections.emptySet()); // TODO: is this the best way to clear the player IDs?
+        for (int playerId : playerIds)
+        {
             round.addPlayer(players.get(playerId));
         }
     }
@@ -66,6 +66,27 @@ public class ServiceFactory
      */
     public static synchronized ServiceFactory getFactory(PersistenceFactory factory, ScoringSystem scoringSystem)
         throws PersistenceException
+    {
+        return getFactory(factory, EntityRepository.getRepository(factory), scoringSystem);
+    }
+
+    /**
+     * Constructs a new service factory for the given persistence layer, repository
+     * and scoring system. This allows an alternative repository implementation,
+     * eg. a {@link au.com.shawware.finska.persistence.CachedEntityRepository},
+     * to be used over the persistence layer.
+     * Only the first call for a given persistence layer determines the repository.
+     * 
+     * @param factory the persistence factory
+     * @param repository the repository to use
+     * @param scoringSystem the scoring system
+     * 
+     * @return The service factory
+     * 
+     * @throws PersistenceException error during initialisation
+     */
+    public static synchronized ServiceFactory getFactory(PersistenceFactory factory, IEntityRepository repository, ScoringSystem scoringSystem)
+        throws PersistenceException
     {
         if (sInstances == null)
         {
@@ -73,7 +94,6 @@ public class ServiceFactory
         }
         if (!sInstances.containsKey(factory.getRoot()))
         {
-            IEntityRepository repository = EntityRepository.getRepository(factory);
             sInstances.put(factory.getRoot(), new ServiceFactory(repository, scoringSystem));
         }
         return sInstances.get(factory.getRoot());
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.entity;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.util.test.AbstractUnitTest;
+
+/**
+ * Exercises and verifies the indexed lookups and sorted views in
+ * {@link Competition} and {@link Round}.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({ "boxing", "nls", "static-method" })
+public class CompetitionUnitTest extends AbstractUnitTest
+{
+    /**
+     * Verify round and entrant lookups and views.
+     */
+    @Test
+    public void testCompetition()
+    {
+        LocalDate date = LocalDate.of(2018, 3, 9);
+        TestCompetition competition = new TestCompetition(1, "Test", date);
+        TestEntrant e1 = new TestEntrant(1, "Zoe");
+        TestEntrant e2 = new TestEntrant(2, "Adam");
+        competition.addEntrant(e1);
+        competition.addEntrant(e2);
+        Assert.assertEquals(Arrays.asList(e2, e1), competition.getEntrants());
+        Assert.assertSame(competition.getEntrants(), competition.getEntrants());
+        Assert.assertSame(e1, competition.getEntrant(1));
+
+        // A renamed entrant is re-sorted.
+        e2.setKey("Zack");
+        Assert.assertEquals(Arrays.asList(e2, e1), competition.getEntrants());
+        e1.setKey("Amy");
+        Assert.assertEquals(Arrays.asList(e1, e2), competition.getEntrants());
+
+        TestRound r2 = new TestRound(12, 2, date);
+        TestRound r1 = new TestRound(11, 1, date);
+        competition.addRound(r2);
+        Assert.assertSame(r2, competition.getRound(2));
+        competition.addRound(r1);
+        List<TestRound> rounds = competition.getRounds();
+        Assert.assertEquals(Arrays.asList(r1, r2), rounds);
+        Assert.assertSame(rounds, competition.getRounds());
+        Assert.assertSame(r1, competition.getRound(1));
+
+        TestRound r3 = new TestRound(13, 3, date);
+        competition.addRound(r3);
+        Assert.assertEquals(Arrays.asList(r1, r2, r3), competition.getRounds());
+        Assert.assertSame(r3, competition.getRound(3));
+
+        try
+        {
+            rounds.clear();
+            Assert.fail("The rounds can be modified");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected.
+        }
+        verifyExceptionThrown(() -> competition.getRound(4), IllegalArgumentException.class, "Round 4 is not present in this competition");
+        verifyExceptionThrown(() -> competition.getEntrant(3), IllegalArgumentException.class, "Entrant 3 is not present in this competition");
+    }
+
+    /**
+     * Verify match lookups and views.
+     */
+    @Test
+    public void testRound()
+    {
+        LocalDate date = LocalDate.of(2018, 3, 9);
+        TestRound round = new TestRound(1, 1, date);
+        TestMatch m2 = new TestMatch(22, 2, date, 1, 2, 0, 0);
+        TestMatch m1 = new TestMatch(21, 1, date, 1, 2, 0, 0);
+        round.addMatch(m2);
+        Assert.assertSame(m2, round.getMatch(2));
+        round.addMatch(m1);
+        Assert.assertEquals(Arrays.asList(m1, m2), round.getMatches());
+        Assert.assertSame(round.getMatches(), round.getMatches());
+        Assert.assertSame(m1, round.getMatch(1));
+
+        verifyExceptionThrown(() -> round.getMatch(3), IllegalArgumentException.class, "Match 3 is not present in this round");
+    }
+
+    /**
+     * Verify the views never keep a stale copy when read while rounds
+     * and matches are being added.
+     *
+     * @throws InterruptedException error waiting for the reader
+     */
+    @Test
+    public void testConcurrentViews()
+        throws InterruptedException
+    {
+        final int count = 2000;
+        LocalDate date = LocalDate.of(2018, 3, 9);
+        TestCompetition competition = new TestCompetition(1, "Test", date);
+        TestRound round = new TestRound(1, 1, date);
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            while (!done.get())
+            {
+                competition.getRounds();
+                round.getMatches();
+            }
+        });
+        reader.start();
+        try
+        {
+            for (int i = 1; i <= count; i++)
+            {
+                competition.addRound(new TestRound(i, i, date));
+                round.addMatch(new TestMatch(i, i, date, 1, 2, 0, 0));
+            }
+        }
+        finally
+        {
+            done.set(true);
+            reader.join();
+        }
+        Assert.assertEquals(count, competition.getRounds().size());
+        Assert.assertEquals(count, round.getMatches().size());
+        Assert.assertEquals(count, competition.getRound(count).getKey().intValue());
+        Assert.assertEquals(count, round.getMatch(count).getKey().intValue());
+    }
+}
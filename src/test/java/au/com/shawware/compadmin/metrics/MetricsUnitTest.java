@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.compadmin.scoring.AbstractScoringUnitTest;
+import au.com.shawware.compadmin.scoring.LeaderBoardGenerator;
+import au.com.shawware.compadmin.scoring.TestCompiler;
+
+/**
+ * Exercises and verifies the timing {@link Metrics}.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({ "boxing", "nls", "static-method" })
+public class MetricsUnitTest extends AbstractScoringUnitTest
+{
+    /**
+     * Verify timings are recorded overall and per competition.
+     */
+    @Test
+    public void testRecording()
+    {
+        try
+        {
+            Metrics.reset();
+            Assert.assertFalse(Metrics.isEnabled());
+            Assert.assertEquals(0L, Metrics.start());
+            Metrics.record(Operation.LEADER_BOARD, 1, Metrics.start());
+            Assert.assertEquals(0L, Metrics.snapshot().getOverall(Operation.LEADER_BOARD).getCount());
+
+            Metrics.setEnabled(true);
+            LeaderBoardGenerator.generateLeaderBoard(new TestCompiler(sCompetition));
+            LeaderBoardGenerator.generateLeaderBoard(new TestCompiler(sCompetition));
+            Metrics.record(Operation.LEADER_BOARD, Metrics.NO_COMPETITION, Metrics.start());
+            Metrics.record(Operation.RANK_HISTORY, 70000, Metrics.start());
+
+            MetricsSnapshot snapshot = Metrics.snapshot();
+            LatencySnapshot overall = snapshot.getOverall(Operation.LEADER_BOARD);
+            Assert.assertEquals(3L, overall.getCount());
+            Assert.assertTrue(overall.getMaximumNanos() <= overall.getTotalNanos());
+            Map<Integer, LatencySnapshot> competitions = snapshot.getCompetitions(Operation.LEADER_BOARD);
+            Assert.assertEquals(1, competitions.size());
+            Assert.assertEquals(2L, snapshot.getCompetition(Operation.LEADER_BOARD, 1).getCount());
+            Assert.assertNull(snapshot.getCompetition(Operation.LEADER_BOARD, 2));
+            // Competitions beyond the largest ID are only included overall.
+            Assert.assertEquals(1L, snapshot.getOverall(Operation.RANK_HISTORY).getCount());
+            Assert.assertEquals(0, snapshot.getCompetitions(Operation.RANK_HISTORY).size());
+            Assert.assertEquals(0L, snapshot.getOverall(Operation.TOP_RESULTS).getCount());
+
+            Metrics.reset();
+            snapshot = Metrics.snapshot();
+            Assert.assertEquals(0L, snapshot.getOverall(Operation.LEADER_BOARD).getCount());
+            Assert.assertEquals(0, snapshot.getCompetitions(Operation.LEADER_BOARD).size());
+        }
+        finally
+        {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
+
+    /**
+     * Verify the histogram buckets and percentiles.
+     */
+    @Test
+    public void testHistogram()
+    {
+        Assert.assertEquals(0, LatencyHistogram.bucket(0L));
+        Assert.assertEquals(0, LatencyHistogram.bucket(1L));
+        Assert.assertEquals(9, LatencyHistogram.bucket(1023L));
+        Assert.assertEquals(10, LatencyHistogram.bucket(1024L));
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencySnapshot empty = histogram.snapshot();
+        Assert.assertEquals(0L, empty.getPercentileNanos(99.0));
+        Assert.assertEquals(0.0, empty.getMeanNanos(), 0.0);
+
+        for (int i = 0; i < 99; i++)
+        {
+            histogram.record(100L);
+        }
+        histogram.record(1_000_000L);
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(100L, snapshot.getCount());
+        Assert.assertEquals(1_009_900L, snapshot.getTotalNanos());
+        Assert.assertEquals(1_000_000L, snapshot.getMaximumNanos());
+        Assert.assertEquals(10_099.0, snapshot.getMeanNanos(), 0.0);
+        Assert.assertEquals(127L, snapshot.getPercentileNanos(50.0));
+        Assert.assertEquals(127L, snapshot.getPercentileNanos(99.0));
+        Assert.assertEquals(1_000_000L, snapshot.getPercentileNanos(100.0));
+        Assert.assertEquals(99L, snapshot.getBuckets()[6]);
+        verifyExceptionThrown(() -> snapshot.getPercentileNanos(101.0), IllegalArgumentException.class, "Invalid percentile: 101.0");
+    }
+
+    /**
+     * Verify the JMX view.
+     *
+     * @throws Exception error accessing the MBean
+     */
+    @Test
+    public void testMBean()
+        throws Exception
+    {
+        try
+        {
+            Metrics.registerMBean();
+            Metrics.registerMBean();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(Metrics.MBEAN_NAME);
+
+            Assert.assertEquals(Boolean.FALSE, server.getAttribute(name, "Enabled"));
+            server.setAttribute(name, new Attribute("Enabled", Boolean.TRUE));
+            Assert.assertTrue(Metrics.isEnabled());
+
+            Metrics.record(Operation.HTML_OVERALL_RESULTS, 4, Metrics.start());
+            TabularData counts = (TabularData)server.getAttribute(name, "Counts");
+            Assert.assertEquals(2, counts.size());
+            Assert.assertEquals(1L, counts.get(new Object[] { "HTML_OVERALL_RESULTS[4]" }).get("value"));
+            Assert.assertNotNull(server.getAttribute(name, "P99Millis"));
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assert.assertEquals(0, ((TabularData)server.getAttribute(name, "Counts")).size());
+        }
+        finally
+        {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
+}
@@ -42,6 +42,22 @@ public class EntrantResultUnitTest extends AbstractUnitTest
         Assert.assertEquals(3.5, result.getResultItemValueAsDouble("b"), 0.0001);
         result.setResultItem("b", 12.99);
         Assert.assertEquals(12.99, result.getResultItemValueAsDouble("b"), 0.0001);
+
+        // The slot-based accessors share the same storage.
+        int a = spec.getSlot("a");
+        int b = spec.getSlot("b");
+        Assert.assertEquals(2, result.getIntegerItem(a));
+        result.incrementIntegerItem(a, 5);
+        Assert.assertEquals(7, result.getResultItemValueAsInt("a"));
+        Assert.assertEquals(12.99, result.getFloatingPointItem(b), 0.0001);
+        result.setFloatingPointItem(b, 1.25);
+        Assert.assertEquals(1.25, result.getResultItemValueAsDouble("b"), 0.0001);
+
+        EntrantResult copy = new EntrantResult(result);
+        copy.incrementIntegerItem(a, 1);
+        Assert.assertEquals(8, copy.getIntegerItem(a));
+        Assert.assertEquals(7, result.getIntegerItem(a));
+        Assert.assertEquals(1.25, copy.getFloatingPointItem(b), 0.0001);
     }
 
     /**
@@ -10,11 +10,14 @@ package au.com.shawware.compadmin.scoring;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import au.com.shawware.compadmin.entity.TestCompetition;
+import au.com.shawware.compadmin.entity.TestMatch;
+import au.com.shawware.compadmin.entity.TestRound;
 
 /**
  * Exercise and verify the leaderboard generator business logic.
@@ -159,6 +162,192 @@ public class LeaderBoardUnitTest extends AbstractScoringUnitTest
         };
         verifyHistory(expectedScoreHistory, actualHistory);
     }
+
+    /**
+     * Verifies the cumulative results match compiling each round separately.
+     */
+    @Test
+    public void verifyCumulativeResults()
+    {
+        TestCompetition competition = generateCompetition(MATCHES, 0, 9);
+        IResultsCompiler compiler = new TestCompiler(competition);
+
+        List<List<EntrantResult>> cumulativeResults = compiler.compileCumulativeResults(3);
+        Assert.assertEquals(3, cumulativeResults.size());
+        for (int i = 1; i <= 3; i++)
+        {
+            List<EntrantResult> expected = compiler.compileResults(i);
+            List<EntrantResult> actual = cumulativeResults.get(i - 1);
+            expected.sort((result1, result2) -> Integer.compare(result1.getEntrantID(), result2.getEntrantID()));
+            actual.sort((result1, result2) -> Integer.compare(result1.getEntrantID(), result2.getEntrantID()));
+            Assert.assertEquals(expected.toString(), actual.toString());
+        }
+        Assert.assertEquals(2, compiler.compileCumulativeResults(2).size());
+
+        verifyExceptionThrown(() -> compiler.compileCumulativeResults(0), IllegalArgumentException.class, "Invalid number of rounds: 0");
+        verifyExceptionThrown(() -> compiler.compileCumulativeResults(4), IllegalArgumentException.class, "Invalid number of rounds: 4");
+    }
+
+    /**
+     * Verifies that the top results and single entrant queries match the
+     * full leader board.
+     */
+    @Test
+    public void verifyPartialQueries()
+    {
+        TestCompetition competition = generateCompetition(MATCHES, 0, 10);
+        IResultsCompiler compiler = new TestCompiler(competition);
+        for (int rounds = 1; rounds <= 4; rounds++)
+        {
+            List<EntrantResult> leaderBoard = LeaderBoardGenerator.generateLeaderBoard(compiler, rounds);
+            for (int count = 1; count <= leaderBoard.size() + 1; count++)
+            {
+                List<EntrantResult> topResults = LeaderBoardGenerator.generateTopResults(compiler, rounds, count);
+                Assert.assertEquals(leaderBoard.subList(0, Math.min(count, leaderBoard.size())).toString(), topResults.toString());
+                for (int i = 0; i < topResults.size(); i++)
+                {
+                    Assert.assertEquals(leaderBoard.get(i).getPreviousRank(), topResults.get(i).getPreviousRank());
+                }
+            }
+            for (EntrantResult expected : leaderBoard)
+            {
+                EntrantResult actual = LeaderBoardGenerator.generateEntrantResult(compiler, rounds, expected.getEntrantID());
+                Assert.assertEquals(expected.toString(), actual.toString());
+                Assert.assertEquals(expected.getPreviousRank(), actual.getPreviousRank());
+                Assert.assertEquals(expected.getRankDelta(), actual.getRankDelta());
+            }
+        }
+
+        verifyExceptionThrown(() -> LeaderBoardGenerator.generateTopResults(compiler, 1, 0), IllegalArgumentException.class, "Invalid number of results: 0");
+        verifyExceptionThrown(() -> LeaderBoardGenerator.generateEntrantResult(compiler, 1, 99), IllegalArgumentException.class, "Unknown entrant: 99");
+    }
+
+    /**
+     * Verifies that parallel compilation matches sequential compilation.
+     */
+    @Test
+    public void verifyParallelCompilation()
+    {
+        TestCompetition competition = generateCompetition(MATCHES, 0, 10);
+        IResultsCompiler sequential = new TestCompiler(competition);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try
+        {
+            for (int chunkSize = 1; chunkSize <= 3; chunkSize++)
+            {
+                TestCompiler parallel = new TestCompiler(competition);
+                parallel.setForkJoinPool(pool);
+                parallel.setChunkSize(chunkSize);
+
+                Assert.assertEquals(sequential.compileRoundResults().toString(), parallel.compileRoundResults().toString());
+                Assert.assertEquals(sequential.compileCumulativeResults(4).toString(), parallel.compileCumulativeResults(4).toString());
+                for (int rounds = 1; rounds <= 4; rounds++)
+                {
+                    Assert.assertEquals(LeaderBoardGenerator.generateLeaderBoard(sequential, rounds).toString(),
+                                        LeaderBoardGenerator.generateLeaderBoard(parallel, rounds).toString());
+                }
+
+                // Extending existing checkpoints in parallel.
+                TestCompiler extended = new TestCompiler(competition);
+                extended.setForkJoinPool(pool);
+                extended.setChunkSize(chunkSize);
+                extended.compileResults(1);
+                Assert.assertEquals(sequential.compileCurrentResults().toString(), extended.compileCurrentResults().toString());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        TestCompiler compiler = new TestCompiler(competition);
+        verifyExceptionThrown(() -> compiler.setChunkSize(0), IllegalArgumentException.class, "Invalid chunk size: 0");
+    }
+
+    /**
+     * Verifies that rounds are only processed again once invalidated.
+     */
+    @Test
+    public void verifyCheckpoints()
+    {
+        TestCompetition competition = generateCompetition(MATCHES, 0, 9);
+        int[] processed = new int[1];
+        IResultsCompiler compiler = new TestCompiler(competition) {
+            @Override
+            protected void processRound(ResultTable results, TestRound round)
+            {
+                processed[0]++;
+                super.processRound(results, round);
+            }
+        };
+
+        String expected = compiler.compileResults(2).toString();
+        Assert.assertEquals(2, processed[0]);
+        Assert.assertEquals(expected, compiler.compileResults(2).toString());
+        Assert.assertEquals(2, processed[0]);
+
+        // Only the outstanding round is processed.
+        String current = compiler.compileCurrentResults().toString();
+        Assert.assertEquals(3, processed[0]);
+        compiler.compilePreviousResults();
+        compiler.compileCumulativeResults(3);
+        Assert.assertEquals(3, processed[0]);
+
+        // Invalidating round 2 re-processes rounds 2 and 3 only.
+        compiler.invalidateFrom(2);
+        Assert.assertEquals(expected, compiler.compileResults(2).toString());
+        Assert.assertEquals(4, processed[0]);
+        Assert.assertEquals(current, compiler.compileCurrentResults().toString());
+        Assert.assertEquals(5, processed[0]);
+
+        compiler.invalidateFrom(10);
+        compiler.compileCurrentResults();
+        Assert.assertEquals(5, processed[0]);
+
+        verifyExceptionThrown(() -> compiler.invalidateFrom(0), IllegalArgumentException.class, "Invalid round: 0");
+    }
+
+    /**
+     * Verifies that long competitions only keep some checkpoints and
+     * replay the rounds since the nearest one kept.
+     */
+    @Test
+    public void verifyBoundedCheckpoints()
+    {
+        TestCompetition competition = generateCompetition(MATCHES, 0, 1);
+        for (int number = 2; number <= 200; number++)
+        {
+            int[] match = MATCHES[number % MATCHES.length];
+            TestRound round = new TestRound(number, number, competition.getStartDate());
+            round.addMatch(new TestMatch(number, 1, competition.getStartDate(), match[1], match[2], match[3], match[4]));
+            competition.addRound(round);
+        }
+        int[] processed = new int[1];
+        IResultsCompiler compiler = new TestCompiler(competition) {
+            @Override
+            protected void processRound(ResultTable results, TestRound round)
+            {
+                processed[0]++;
+                super.processRound(results, round);
+            }
+        };
+
+        compiler.compileCurrentResults();
+        compiler.compilePreviousResults();
+        Assert.assertEquals(200, processed[0]);
+
+        // Every fourth checkpoint is kept, so the others are replayed.
+        Assert.assertEquals(new TestCompiler(competition).compileResults(100).toString(), compiler.compileResults(100).toString());
+        Assert.assertEquals(200, processed[0]);
+        String expected = new TestCompiler(competition).compileResults(103).toString();
+        Assert.assertEquals(expected, compiler.compileResults(103).toString());
+        Assert.assertEquals(203, processed[0]);
+        Assert.assertEquals(expected, compiler.compileCumulativeResults(200).get(102).toString());
+
+        // Processing resumes from the latest checkpoint kept.
+        compiler.invalidateFrom(103);
+        Assert.assertEquals(expected, compiler.compileResults(103).toString());
+    }
     
     /**
      * Verifies the actual history matches the expected.
@@ -61,6 +61,12 @@ public class ResultSpecUnitTest extends AbstractUnitTest
             Assert.assertEquals(expectedNames[i], actualName);
             i++;
         }
+
+        Assert.assertEquals(2, spec.getIntegerItemCount());
+        Assert.assertEquals(1, spec.getFloatingPointItemCount());
+        Assert.assertEquals(0, spec.getSlot("alpha"));
+        Assert.assertEquals(1, spec.getSlot("beta"));
+        Assert.assertEquals(0, spec.getSlot("gamma"));
     }
 
     /**
@@ -94,5 +100,10 @@ public class ResultSpecUnitTest extends AbstractUnitTest
 
         verifyExceptionThrown(() -> spec.isInteger("b"),        IllegalArgumentException.class, "Unknown item name: b");
         verifyExceptionThrown(() -> spec.isFloatingPoint("b"),  IllegalArgumentException.class, "Unknown item name: b");
+        verifyExceptionThrown(() -> spec.getSlot("b"),          IllegalArgumentException.class, "Unknown item name: b");
+        verifyExceptionThrown(() -> spec.getSlot(""),           IllegalArgumentException.class, "Empty item name");
+
+        new EntrantResult(1, spec);
+        verifyExceptionThrown(() -> spec.addItem("b"),          IllegalStateException.class, "Specification in use, cannot add: b");
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.scoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.util.test.AbstractUnitTest;
+
+/**
+ * Exercises and verifies {@link EntrantIndex} and {@link ResultTable}.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({ "nls", "static-method", "boxing" })
+public class ResultTableUnitTest extends AbstractUnitTest
+{
+    /**
+     * Verify the mapping of entrant IDs to indices.
+     */
+    @Test
+    public void testIndex()
+    {
+        EntrantIndex index = new EntrantIndex(Arrays.asList(7, 3, 5, 3));
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(0, index.indexOf(3));
+        Assert.assertEquals(1, index.indexOf(5));
+        Assert.assertEquals(2, index.indexOf(7));
+        Assert.assertEquals(-1, index.indexOf(4));
+        Assert.assertEquals(-1, index.indexOf(8));
+        Assert.assertEquals(-1, index.indexOf(-1));
+        Assert.assertEquals(7, index.getEntrantID(2));
+
+        // Widely spread IDs are found without a lookup table.
+        EntrantIndex sparse = new EntrantIndex(Arrays.asList(1, 1000000, 50000000));
+        Assert.assertEquals(0, sparse.indexOf(1));
+        Assert.assertEquals(1, sparse.indexOf(1000000));
+        Assert.assertEquals(2, sparse.indexOf(50000000));
+        Assert.assertEquals(-1, sparse.indexOf(2));
+
+        verifyExceptionThrown(() -> new EntrantIndex(null), IllegalArgumentException.class, "Empty entrant IDs");
+        verifyExceptionThrown(() -> new EntrantIndex(Collections.emptyList()), IllegalArgumentException.class, "Empty entrant IDs");
+        verifyExceptionThrown(() -> new EntrantIndex(Arrays.asList(-2, 1)), IllegalArgumentException.class, "Invalid entrant ID: -2");
+    }
+
+    /**
+     * Verify the accumulation and conversion of results.
+     */
+    @Test
+    public void testTable()
+    {
+        ResultSpec spec = new ResultSpec();
+        spec.addItem("a", true);
+        spec.addItem("b", false);
+        spec.addItem("c", true);
+        EntrantIndex index = new EntrantIndex(Arrays.asList(10, 20));
+        ResultTable table = new ResultTable(spec, index);
+
+        int a = spec.getSlot("a");
+        int b = spec.getSlot("b");
+        int c = spec.getSlot("c");
+        table.incrementIntegerItem(a, table.indexOf(10), 2);
+        table.incrementIntegerItem(c, table.indexOf(20), 5);
+        table.incrementIntegerItem(c, table.indexOf(20), -1);
+        table.setFloatingPointItem(b, table.indexOf(10), 1.5);
+        Assert.assertEquals(2, table.getIntegerItem(a, 0));
+        Assert.assertEquals(4, table.getIntegerItem(c, 1));
+        Assert.assertEquals(1.5, table.getFloatingPointItem(b, 0), 0.0001);
+
+        ResultTable copy = new ResultTable(table);
+        copy.incrementIntegerItem(a, 0, 1);
+        Assert.assertEquals(3, copy.getIntegerItem(a, 0));
+        Assert.assertEquals(2, table.getIntegerItem(a, 0));
+
+        List<EntrantResult> results = table.toResults();
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(10, results.get(0).getEntrantID());
+        Assert.assertEquals(2, results.get(0).getResultItemValueAsInt("a"));
+        Assert.assertEquals(1.5, results.get(0).getResultItemValueAsDouble("b"), 0.0001);
+        Assert.assertEquals(0, results.get(0).getResultItemValueAsInt("c"));
+        Assert.assertEquals(20, results.get(1).getEntrantID());
+        Assert.assertEquals(4, results.get(1).getResultItemValueAsInt("c"));
+
+        verifyExceptionThrown(() -> table.indexOf(30), IllegalArgumentException.class, "Unknown entrant: 30");
+        verifyExceptionThrown(() -> new ResultTable(null, index), IllegalArgumentException.class, "Empty result specification");
+        verifyExceptionThrown(() -> new ResultTable(spec, null), IllegalArgumentException.class, "Empty entrant index");
+    }
+}
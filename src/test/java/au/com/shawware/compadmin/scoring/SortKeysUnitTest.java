@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.compadmin.scoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.util.test.AbstractUnitTest;
+
+/**
+ * Exercises and verifies {@link SortKeys}.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({ "nls", "static-method" })
+public class SortKeysUnitTest extends AbstractUnitTest
+{
+    /**
+     * Verify packed integer keys, including ties and negative values.
+     */
+    @Test
+    public void testPackedKeys()
+    {
+        ResultSpec spec = new ResultSpec();
+        spec.addItem("points");
+        spec.addItem("diff");
+        ResultSpec comparisonSpec = new ResultSpec();
+        comparisonSpec.addItem("points");
+        comparisonSpec.addItem("diff");
+
+        Random random = new Random(17);
+        for (int trial = 0; trial < 20; trial++)
+        {
+            List<EntrantResult> results = new ArrayList<>();
+            for (int id = 1; id <= 40; id++)
+            {
+                EntrantResult result = new EntrantResult(id, spec);
+                result.incrementResultItem("points", random.nextInt(5));
+                result.incrementResultItem("diff", random.nextInt(7) - 3);
+                results.add(result);
+            }
+            verifySortAndRank(results, comparisonSpec);
+        }
+    }
+
+    /**
+     * Verify keys that do not fit into a single long.
+     */
+    @Test
+    public void testUnpackedKeys()
+    {
+        ResultSpec spec = new ResultSpec();
+        spec.addItem("points");
+        spec.addItem("average", false);
+        ResultSpec comparisonSpec = new ResultSpec();
+        comparisonSpec.addItem("average", false);
+        comparisonSpec.addItem("points");
+
+        double[] averages = new double[] { -1.5, -0.0, 0.0, 0.5, 2.0, 1.0E300, Double.MAX_VALUE };
+        Random random = new Random(23);
+        List<EntrantResult> results = new ArrayList<>();
+        for (int id = 30; id > 0; id--)
+        {
+            EntrantResult result = new EntrantResult(id, spec);
+            result.incrementResultItem("points", random.nextBoolean() ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+            result.setResultItem("average", averages[random.nextInt(averages.length)]);
+            results.add(result);
+        }
+        verifySortAndRank(results, comparisonSpec);
+    }
+
+    /**
+     * Verify the trivial cases.
+     */
+    @Test
+    public void testSmallLists()
+    {
+        ResultSpec spec = new ResultSpec();
+        spec.addItem("points");
+
+        List<EntrantResult> results = new ArrayList<>();
+        SortKeys.sortAndRank(results, spec);
+        Assert.assertEquals(0, results.size());
+
+        results.add(new EntrantResult(5, spec));
+        SortKeys.sortAndRank(results, spec);
+        Assert.assertEquals(1, results.get(0).getRank());
+    }
+
+    /**
+     * Verifies the given results are sorted and ranked as per comparing
+     * each item in turn and then the entrant ID.
+     *
+     * @param results the results to verify
+     * @param comparisonSpec the comparison items
+     */
+    private void verifySortAndRank(List<EntrantResult> results, ResultSpec comparisonSpec)
+    {
+        Comparator<EntrantResult> comparator = (result1, result2) -> {
+            for (String name : comparisonSpec.getItemNames())
+            {
+                int rc = result1.compare(result2, name);
+                if (rc != 0)
+                {
+                    return rc;
+                }
+            }
+            return 0;
+        };
+        List<EntrantResult> expected = new ArrayList<>(results);
+        Collections.sort(expected, comparator.thenComparingInt(EntrantResult::getEntrantID));
+
+        SortKeys.sortAndRank(results, comparisonSpec);
+        Assert.assertEquals(expected, results);
+        for (int i = 0; i < results.size(); i++)
+        {
+            int rank = ((i > 0) && (comparator.compare(results.get(i - 1), results.get(i)) == 0)) ?
+                    results.get(i - 1).getRank() : i + 1;
+            Assert.assertEquals(rank, results.get(i).getRank());
+        }
+    }
+}
@@ -7,8 +7,6 @@
 
 package au.com.shawware.compadmin.scoring;
 
-import java.util.Map;
-
 import au.com.shawware.compadmin.entity.TestCompetition;
 import au.com.shawware.compadmin.entity.TestEntrant;
 import au.com.shawware.compadmin.entity.TestMatch;
@@ -66,45 +64,54 @@ public class TestCompiler extends AbstractResultsCompiler<TestCompetition, TestR
     }
 
     @Override
-    @SuppressWarnings("boxing")
-    protected void processRound(Map<Integer, EntrantResult> results, TestRound round)
+    protected void processRound(ResultTable results, TestRound round)
     {
+        ResultSpec spec = results.getResultSpecification();
+        int matches     = spec.getSlot(TestResultItems.MATCHES);
+        int goalsFor    = spec.getSlot(TestResultItems.FOR);
+        int against     = spec.getSlot(TestResultItems.AGAINST);
+        int goalDiff    = spec.getSlot(TestResultItems.GOAL_DIFF);
+        int points      = spec.getSlot(TestResultItems.POINTS);
+        int wins        = spec.getSlot(TestResultItems.WINS);
+        int draws       = spec.getSlot(TestResultItems.DRAWS);
+        int losses      = spec.getSlot(TestResultItems.LOSSES);
+
         round.getMatches().forEach(match ->
         {
-            EntrantResult result1 = results.get(match.getTeam1());
-            EntrantResult result2 = results.get(match.getTeam2());
+            int team1 = results.indexOf(match.getTeam1());
+            int team2 = results.indexOf(match.getTeam2());
 
             int goalDifference = match.getScore1() - match.getScore2();
 
-            result1.incrementResultItem(TestResultItems.MATCHES, 1);
-            result2.incrementResultItem(TestResultItems.MATCHES, 1);
+            results.incrementIntegerItem(matches, team1, 1);
+            results.incrementIntegerItem(matches, team2, 1);
 
-            result1.incrementResultItem(TestResultItems.FOR, match.getScore1());
-            result1.incrementResultItem(TestResultItems.AGAINST, match.getScore2());
-            result1.incrementResultItem(TestResultItems.GOAL_DIFF, goalDifference);
+            results.incrementIntegerItem(goalsFor, team1, match.getScore1());
+            results.incrementIntegerItem(against, team1, match.getScore2());
+            results.incrementIntegerItem(goalDiff, team1, goalDifference);
  
-            result2.incrementResultItem(TestResultItems.FOR, match.getScore2());
-            result2.incrementResultItem(TestResultItems.AGAINST, match.getScore1());
-            result2.incrementResultItem(TestResultItems.GOAL_DIFF, -goalDifference);
+            results.incrementIntegerItem(goalsFor, team2, match.getScore2());
+            results.incrementIntegerItem(against, team2, match.getScore1());
+            results.incrementIntegerItem(goalDiff, team2, -goalDifference);
 
             if (goalDifference > 0)
             {
-                result1.incrementResultItem(TestResultItems.POINTS, 3);
-                result1.incrementResultItem(TestResultItems.WINS, 1);
-                result2.incrementResultItem(TestResultItems.LOSSES, 1);
+                results.incrementIntegerItem(points, team1, 3);
+                results.incrementIntegerItem(wins, team1, 1);
+                results.incrementIntegerItem(losses, team2, 1);
             }
             else if (goalDifference < 0)
             {
-                result1.incrementResultItem(TestResultItems.LOSSES, 1);
-                result2.incrementResultItem(TestResultItems.WINS, 1);
-                result2.incrementResultItem(TestResultItems.POINTS, 3);
+                results.incrementIntegerItem(losses, team1, 1);
+                results.incrementIntegerItem(wins, team2, 1);
+                results.incrementIntegerItem(points, team2, 3);
             }
             else
             {
-                result1.incrementResultItem(TestResultItems.POINTS, 1);
-                result1.incrementResultItem(TestResultItems.DRAWS, 1);
-                result2.incrementResultItem(TestResultItems.DRAWS, 1);
-                result2.incrementResultItem(TestResultItems.POINTS, 1);
+                results.incrementIntegerItem(points, team1, 1);
+                results.incrementIntegerItem(draws, team1, 1);
+                results.incrementIntegerItem(draws, team2, 1);
+                results.incrementIntegerItem(points, team2, 1);
             }
         });
     }
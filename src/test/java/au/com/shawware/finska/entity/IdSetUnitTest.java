@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * https://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.entity;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.util.test.AbstractUnitTest;
+
+/**
+ * Exercises and verifies {@link IdSet} and its use for round players and match winners.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({ "nls", "static-method", "boxing" })
+public class IdSetUnitTest extends AbstractUnitTest
+{
+    /**
+     * Verify the set's contents, ordering and equality with other sets.
+     */
+    @Test
+    public void testSet()
+    {
+        IdSet ids = new IdSet();
+        Assert.assertEquals(0, ids.size());
+        Assert.assertEquals(0, ids.insert(7));
+        Assert.assertEquals(0, ids.insert(3));
+        Assert.assertEquals(1, ids.insert(5));
+        Assert.assertEquals(3, ids.insert(11));
+        Assert.assertEquals(4, ids.insert(13));
+
+        Assert.assertEquals(5, ids.size());
+        Assert.assertArrayEquals(new int[] { 3, 5, 7, 11, 13 }, ids.toIntArray());
+        Assert.assertEquals(2, ids.indexOf(7));
+        Assert.assertTrue(ids.indexOf(6) < 0);
+        Assert.assertTrue(ids.contains(11));
+        Assert.assertTrue(ids.contains(Integer.valueOf(11)));
+        Assert.assertFalse(ids.contains("11"));
+        Assert.assertEquals(13, ids.get(4));
+        Assert.assertEquals("[3, 5, 7, 11, 13]", ids.toString());
+
+        Set<Integer> other = new HashSet<>(Arrays.asList(13, 11, 7, 5, 3));
+        Assert.assertEquals(other, ids);
+        Assert.assertEquals(ids, other);
+        Assert.assertEquals(other.hashCode(), ids.hashCode());
+
+        // The set cannot be changed through the Set interface.
+        verifyExceptionThrown(() -> ids.add(17), UnsupportedOperationException.class, "Read-only ID set");
+        verifyExceptionThrown(() -> ids.remove(3), UnsupportedOperationException.class, "Read-only ID set");
+        verifyExceptionThrown(() -> ids.clear(), UnsupportedOperationException.class, "Read-only ID set");
+        verifyExceptionThrown(() -> ids.get(5), IndexOutOfBoundsException.class, "Invalid index: 5");
+
+        ids.reset();
+        Assert.assertEquals(0, ids.size());
+        Assert.assertFalse(ids.iterator().hasNext());
+    }
+
+    /**
+     * Verify round players and match winners, both linked and unlinked.
+     */
+    @Test
+    public void testPlayersAndWinners()
+    {
+        Player p1 = new Player(1, "David");
+        Player p2 = new Player(2, "Paul");
+
+        FinskaRound round = new FinskaRound(1, LocalDate.now());
+        round.setPlayerIds(new HashSet<>(Arrays.asList(2, 1)));
+        Assert.assertTrue(round.getPlayerIds().contains(1));
+        Assert.assertFalse(round.hasPlayer(1));
+        round.addPlayer(p2);
+        Assert.assertTrue(round.hasPlayer(2));
+        Assert.assertFalse(round.hasPlayer(1));
+        Assert.assertSame(p2, round.getPlayer(2));
+        Assert.assertEquals(Arrays.asList(p2), round.getPlayers());
+        verifyExceptionThrown(() -> round.getPlayer(1), IllegalArgumentException.class, "Player 1 is not present in this round");
+
+        FinskaMatch match = new FinskaMatch(1, LocalDate.now());
+        Assert.assertFalse(match.hasWinner());
+        match.addWinner(p2);
+        match.addWinner(p1);
+        Assert.assertTrue(match.hasWinner());
+        Assert.assertArrayEquals(new int[] { 1, 2 }, match.getWinnerIdSet().toIntArray());
+        Assert.assertSame(p1, match.getWinner(1));
+        Assert.assertSame(p2, match.getWinner(2));
+        verifyExceptionThrown(() -> match.addWinner(p1), IllegalArgumentException.class, "Player 1 has already been recorded");
+
+        match.setWinnerIds(new HashSet<>(Arrays.asList(1)));
+        Assert.assertTrue(match.isWinner(1));
+        Assert.assertFalse(match.isWinner(2));
+        verifyExceptionThrown(() -> match.getWinner(1), IllegalArgumentException.class, "Player 1 is not present in this match");
+        match.addWinner(p1);
+        Assert.assertSame(p1, match.getWinner(1));
+    }
+}
@@ -9,6 +9,7 @@ package au.com.shawware.finska.persistence;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.BeforeClass;
 
@@ -29,13 +30,13 @@ import au.com.shawware.util.persistence.PersistenceFactory;
 public abstract class AbstractFinskaPersistenceUnitTest extends AbstractPersistenceUnitTest
 {
     /** Persisted match sub-directory. */
-    private static final String MATCH_DIR  = "match";
+    protected static final String MATCH_DIR  = "match";
     /** Persisted round sub-directory. */
-    private static final String ROUND_DIR  = "round";
+    protected static final String ROUND_DIR  = "round";
     /** Persisted player sub-directory. */
-    private static final String PLAYER_DIR = "player";
+    protected static final String PLAYER_DIR = "player";
     /** Persisted competition sub-directory. */
-    private static final String COMP_DIR   = "competition";
+    protected static final String COMP_DIR   = "competition";
 
     /** The repository factory. */
     protected static PersistenceFactory sFactory;
@@ -58,10 +59,7 @@ public abstract class AbstractFinskaPersistenceUnitTest extends AbstractPersiste
     public static void setup()
         throws IOException
     {
-        Files.createDirectory(sRoot.resolve(PLAYER_DIR));
-        Files.createDirectory(sRoot.resolve(COMP_DIR));
-        Files.createDirectory(sRoot.resolve(ROUND_DIR));
-        Files.createDirectory(sRoot.resolve(MATCH_DIR));
+        createStoreDirectories(sRoot);
 
         sFactory          = PersistenceFactory.getFactory(PERSISTENCE_ROOT);
         sPlayerStore      = sFactory.getStore(Player.class);
@@ -69,4 +67,20 @@ public abstract class AbstractFinskaPersistenceUnitTest extends AbstractPersiste
         sRoundStore       = sFactory.getStore(FinskaRound.class, "Finska");
         sMatchStore       = sFactory.getStore(FinskaMatch.class, "Finska");
     }
+
+    /**
+     * Creates the sub-directory for each entity store under the given root.
+     * 
+     * @param root the persistence root
+     * 
+     * @throws IOException file error
+     */
+    protected static void createStoreDirectories(Path root)
+        throws IOException
+    {
+        Files.createDirectory(root.resolve(PLAYER_DIR));
+        Files.createDirectory(root.resolve(COMP_DIR));
+        Files.createDirectory(root.resolve(ROUND_DIR));
+        Files.createDirectory(root.resolve(MATCH_DIR));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.PersistenceException;
+
+/**
+ * Exercise the binary snapshot of the entity graph.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({"nls", "boxing" })
+public class BinarySnapshotUnitTest extends AbstractFinskaPersistenceUnitTest
+{
+    /**
+     * Verifies that the snapshot reproduces the graph loaded from the
+     * stores and is only used while it is current.
+     *
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void snapshotChecks()
+        throws PersistenceException, IOException
+    {
+        EntityRepository repository = EntityRepository.getRepository(sFactory);
+        Player p1 = repository.createPlayer(new Player("David"));
+        Player p2 = repository.createPlayer(new Player("Paul"));
+
+        FinskaCompetition c1 = new FinskaCompetition("C1", LocalDate.of(2018, 3, 9));
+        c1.addEntrant(p1);
+        c1.addEntrant(p2);
+        c1 = repository.createCompetition(c1);
+        FinskaRound r1 = new FinskaRound(1, LocalDate.of(2018, 3, 10));
+        r1.addPlayer(p1);
+        r1.addPlayer(p2);
+        r1 = repository.createRound(c1, r1);
+        FinskaMatch m1 = new FinskaMatch(1, r1.getRoundDate());
+        m1.addWinner(p2);
+        m1.setFastWin(true);
+        repository.createMatch(c1, r1, m1);
+        repository.createMatch(c1, r1, new FinskaMatch(2, r1.getRoundDate()));
+
+        Map<Integer, FinskaCompetition> expected = repository.getCompetitions();
+        Path snapshot = sRoot.resolve(EntityRepository.SNAPSHOT_FILE);
+        Assert.assertFalse(Files.exists(snapshot));
+
+        try
+        {
+            repository.setSnapshotEnabled(true);
+            repository.getCompetitions();
+            Assert.assertTrue(Files.exists(snapshot));
+
+            // Avoid relying on the file system's timestamp resolution.
+            Files.setLastModifiedTime(snapshot, FileTime.from(System.currentTimeMillis() + 60000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(repository.isSnapshotCurrent());
+            verifyGraph(expected, repository.getCompetitions());
+            verifyGraph(expected, BinarySnapshot.read(snapshot));
+
+            // An externally edited store makes the snapshot stale.
+            Files.setLastModifiedTime(sRoot.resolve(PLAYER_DIR), FileTime.from(System.currentTimeMillis() + 120000, TimeUnit.MILLISECONDS));
+            Assert.assertFalse(repository.isSnapshotCurrent());
+
+            // Any write discards the snapshot.
+            repository.createPlayer(new Player("Mary"));
+            Assert.assertFalse(Files.exists(snapshot));
+
+            // A corrupt snapshot is discarded in favour of the stores and then rewritten.
+            Files.write(snapshot, new byte[] { 0x46, 0x53, 0x4E, 0x50, 0, 0, 0, 1, 0 });
+            Files.setLastModifiedTime(snapshot, FileTime.from(System.currentTimeMillis() + 180000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(repository.isSnapshotCurrent());
+            verifyGraph(expected, repository.getCompetitions());
+            verifyGraph(expected, BinarySnapshot.read(snapshot));
+
+            // A snapshot that cannot be written does not prevent loading.
+            Files.delete(snapshot);
+            Files.createDirectories(snapshot.resolve("blocked"));
+            verifyGraph(expected, repository.getCompetitions());
+            Assert.assertTrue(Files.isDirectory(snapshot));
+            Assert.assertFalse(Files.exists(sRoot.resolve(EntityRepository.SNAPSHOT_FILE + ".tmp")));
+        }
+        finally
+        {
+            repository.setSnapshotEnabled(false);
+            Files.deleteIfExists(snapshot.resolve("blocked"));
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Verifies that the given graphs are the same.
+     *
+     * @param expected the expected competitions
+     * @param actual the actual competitions
+     */
+    private static void verifyGraph(Map<Integer, FinskaCompetition> expected, Map<Integer, FinskaCompetition> actual)
+    {
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (FinskaCompetition competition : expected.values())
+        {
+            FinskaCompetition copy = actual.get(competition.getId());
+            Assert.assertEquals(competition.toString(), copy.toString());
+            Assert.assertEquals(competition.getEntrants().toString(), copy.getEntrants().toString());
+            Assert.assertEquals(competition.getRounds().size(), copy.getRounds().size());
+            for (FinskaRound round : competition.getRounds())
+            {
+                FinskaRound roundCopy = copy.getRound(round.getKey());
+                Assert.assertEquals(round.toString(), roundCopy.toString());
+                for (FinskaMatch match : round.getMatches())
+                {
+                    FinskaMatch matchCopy = roundCopy.getMatch(match.getKey());
+                    Assert.assertEquals(match.toString(), matchCopy.toString());
+                    for (Integer id : match.getWinnerIds())
+                    {
+                        Assert.assertSame(copy.getEntrant(id), matchCopy.getWinner(id));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.PersistenceException;
+
+/**
+ * Exercise the write-through cache over the persistence layer.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({"nls", "boxing" })
+public class CachedRepositoryUnitTest extends AbstractFinskaPersistenceUnitTest
+{
+    /**
+     * Verifies that writes through the cache are visible in the cache
+     * and in the underlying repository.
+     *
+     * @throws PersistenceException persistence error
+     */
+    @Test
+    public void writeThroughChecks()
+        throws PersistenceException
+    {
+        IEntityRepository store = EntityRepository.getRepository(sFactory);
+        CachedEntityRepository cache = new CachedEntityRepository(store);
+
+        Player p1 = cache.createPlayer(new Player("David"));
+        Player p2 = cache.createPlayer(new Player("Paul"));
+
+        FinskaCompetition c1 = new FinskaCompetition("C1", LocalDate.of(2018, 3, 9));
+        c1.addEntrantId(p1.getId());
+        c1.addEntrantId(p2.getId());
+        c1 = cache.createCompetition(c1);
+
+        // Reads are served from the cache and the entities are linked.
+        FinskaCompetition c2 = cache.getCompetition(c1.getId());
+        Assert.assertSame(c1, c2);
+        Assert.assertSame(p1, c2.getEntrant(p1.getId()));
+        Assert.assertSame(p2, cache.getPlayer(p2.getId()));
+
+        FinskaRound r1 = new FinskaRound(1, LocalDate.of(2018, 3, 10));
+        r1.addPlayer(p1);
+        r1.addPlayer(p2);
+        r1 = cache.createRound(c2, r1);
+        Assert.assertSame(r1, cache.getCompetition(c1.getId()).getRound(1));
+
+        FinskaMatch m1 = new FinskaMatch(1, r1.getRoundDate());
+        m1.addWinner(p2);
+        m1 = cache.createMatch(c2, r1, m1);
+        Assert.assertSame(m1, cache.getCompetition(c1.getId()).getRound(1).getMatch(1));
+
+        m1.setFastWin(true);
+        cache.updateMatch(c2, r1, m1);
+
+        p2.setKey("Jane");
+        cache.updatePlayer(p2);
+        Assert.assertEquals("Jane", cache.getCompetition(c1.getId()).getEntrant(p2.getId()).getKey());
+
+        // The underlying repository sees the same data.
+        Map<Integer, FinskaCompetition> stored = store.getCompetitions();
+        FinskaCompetition c3 = stored.get(c1.getId());
+        Assert.assertEquals(c2.toString(), c3.toString());
+        Assert.assertEquals(r1.toString(), c3.getRound(1).toString());
+        Assert.assertEquals(m1.toString(), c3.getRound(1).getMatch(1).toString());
+        Assert.assertEquals("Jane", c3.getEntrant(p2.getId()).getKey());
+
+        // A fresh cache loads the same data.
+        CachedEntityRepository reloaded = new CachedEntityRepository(store);
+        FinskaCompetition c4 = reloaded.getCompetition(c1.getId());
+        Assert.assertEquals(c2.toString(), c4.toString());
+        Assert.assertSame(reloaded.getPlayer(p1.getId()), c4.getEntrant(p1.getId()));
+        Assert.assertSame(reloaded.getPlayer(p2.getId()), c4.getRound(1).getMatch(1).getWinner(p2.getId()));
+
+        verifyCheckedExceptionThrown(() -> cache.getCompetition(0), PersistenceException.class, "Competition does not exist: 0");
+        verifyCheckedExceptionThrown(() -> cache.getPlayer(0), PersistenceException.class, "Player does not exist: 0");
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2018 shawware.com.au
+ *
+ * License: GNU General Public License V3 (or later)
+ * http://www.gnu.org/copyleft/gpl.html
+ */
+
+package au.com.shawware.finska.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import au.com.shawware.finska.entity.FinskaCompetition;
+import au.com.shawware.finska.entity.FinskaMatch;
+import au.com.shawware.finska.entity.FinskaRound;
+import au.com.shawware.finska.entity.Player;
+import au.com.shawware.util.persistence.PersistenceException;
+
+/**
+ * Exercise the event log repository.
+ *
+ * @author <a href="mailto:david.shaw@shawware.com.au">David Shaw</a>
+ */
+@SuppressWarnings({"nls", "boxing" })
+public class EventLogRepositoryUnitTest extends AbstractFinskaPersistenceUnitTest
+{
+    /** Whether the next write to a {@link FailingChannel} fails part-way through. */
+    private static volatile boolean sFailWrites = false;
+    /** The number of times a {@link FailingChannel} has been forced to disk. */
+    private static final AtomicInteger sForces = new AtomicInteger();
+
+    /**
+     * Verifies that entities written to the log are replayed into the
+     * same entity graph, including after compaction and a torn write.
+     *
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void replayChecks()
+        throws PersistenceException, IOException
+    {
+        Path dir = Files.createDirectory(sRoot.resolve("eventlog"));
+        EventLogRepository log = new EventLogRepository(dir);
+
+        Player p1 = log.createPlayer(new Player("David"));
+        Player p2 = log.createPlayer(new Player("Paul"));
+        Assert.assertEquals(1, p1.getId());
+        Assert.assertEquals(2, p2.getId());
+
+        FinskaCompetition c1 = new FinskaCompetition("C1", LocalDate.of(2018, 3, 9));
+        c1.addEntrant(p1);
+        c1.addEntrant(p2);
+        c1 = log.createCompetition(c1);
+
+        FinskaRound r1 = new FinskaRound(1, LocalDate.of(2018, 3, 10));
+        r1.addPlayer(p1);
+        r1.addPlayer(p2);
+        r1 = log.createRound(c1, r1);
+
+        FinskaMatch m1 = new FinskaMatch(1, r1.getRoundDate());
+        m1.addWinner(p2);
+        m1 = log.createMatch(c1, r1, m1);
+        m1.setFastWin(true);
+        log.updateMatch(c1, r1, m1);
+
+        p2.setKey("Jane");
+        log.updatePlayer(p2);
+        log.close();
+
+        // Replay the log from scratch.
+        log = new EventLogRepository(dir);
+        verifyGraph(log.getCompetitions(), c1, r1, m1);
+        Assert.assertEquals("Jane", log.getPlayer(p2.getId()).getKey());
+
+        // Compact and then append beyond the snapshot.
+        log.compact();
+        Assert.assertEquals(0, Files.size(dir.resolve(EventLogRepository.LOG_FILE)));
+        FinskaMatch m2 = log.createMatch(c1, r1, new FinskaMatch(2, r1.getRoundDate()));
+        log.close();
+
+        // Simulate a torn write at the end of the log.
+        long length = Files.size(dir.resolve(EventLogRepository.LOG_FILE));
+        Files.write(dir.resolve(EventLogRepository.LOG_FILE), new byte[] { 0, 0, 1, 0, 7 }, StandardOpenOption.APPEND);
+
+        EventLogRepository reopened = new EventLogRepository(dir);
+        Assert.assertEquals(length, Files.size(dir.resolve(EventLogRepository.LOG_FILE)));
+        Map<Integer, FinskaCompetition> competitions = reopened.getCompetitions();
+        verifyGraph(competitions, c1, r1, m1);
+        Assert.assertEquals(m2.toString(), competitions.get(c1.getId()).getRound(1).getMatch(2).toString());
+        Assert.assertEquals(3, reopened.createPlayer(new Player("Mary")).getId());
+
+        verifyCheckedExceptionThrown(() -> reopened.getCompetition(0), PersistenceException.class, "Competition does not exist: 0");
+        verifyCheckedExceptionThrown(() -> reopened.getPlayer(0), PersistenceException.class, "Player does not exist: 0");
+        reopened.close();
+    }
+
+    /**
+     * Verifies that an append that fails part-way through a batch is
+     * rolled back, both on disk and in memory, and that later appends
+     * succeed and replay correctly.
+     *
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void rollbackChecks()
+        throws PersistenceException, IOException
+    {
+        Path dir = Files.createDirectory(sRoot.resolve("rollback"));
+        Path file = dir.resolve(EventLogRepository.LOG_FILE);
+        LocalDate date = LocalDate.of(2018, 3, 10);
+        EventLogRepository log = new FailingLogRepository(dir);
+        try
+        {
+            log.createPlayer(new Player("David"));
+            FinskaCompetition c1 = log.createCompetition(new FinskaCompetition("C1", date));
+            long length = Files.size(file);
+
+            sFailWrites = true;
+            FinskaRound failed = new FinskaRound(1, date);
+            verifyCheckedExceptionThrown(() -> log.createRound(c1, failed,
+                                                               Arrays.asList(new FinskaMatch(1, date), new FinskaMatch(2, date))),
+                    PersistenceException.class, "Error appending to " + file + ": Disk full");
+            sFailWrites = false;
+            Assert.assertEquals(length, Files.size(file));
+            Assert.assertEquals(0, log.getCompetition(c1.getId()).numberOfRounds());
+            // Nor are the caller's entities left changed.
+            Assert.assertEquals(0, c1.numberOfRounds());
+            Assert.assertEquals(0, failed.numberOfMatches());
+
+            FinskaCompetition c2 = log.getCompetition(c1.getId());
+            FinskaRound r1 = log.createRound(c2, new FinskaRound(1, date), Arrays.asList(new FinskaMatch(1, date)));
+            Assert.assertEquals(1, r1.getId());
+            Assert.assertEquals(1, r1.getMatch(1).getId());
+        }
+        finally
+        {
+            sFailWrites = false;
+            log.close();
+        }
+
+        EventLogRepository reopened = new EventLogRepository(dir);
+        FinskaCompetition competition = reopened.getCompetition(1);
+        Assert.assertEquals(1, competition.numberOfRounds());
+        Assert.assertEquals(1, competition.getRound(1).numberOfMatches());
+        Assert.assertEquals(2, reopened.createPlayer(new Player("Paul")).getId());
+        reopened.close();
+    }
+
+    /**
+     * Verifies that a round and its matches are replayed together or not
+     * at all when the log ends part-way through their batch.
+     *
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void batchChecks()
+        throws PersistenceException, IOException
+    {
+        Path dir = Files.createDirectory(sRoot.resolve("batch"));
+        Path file = dir.resolve(EventLogRepository.LOG_FILE);
+        LocalDate date = LocalDate.of(2018, 3, 10);
+        EventLogRepository log = new EventLogRepository(dir);
+        FinskaCompetition c1 = log.createCompetition(new FinskaCompetition("C1", date));
+        long length = Files.size(file);
+        log.createRound(c1, new FinskaRound(1, date), Arrays.asList(new FinskaMatch(1, date), new FinskaMatch(2, date)));
+        log.close();
+
+        log = new EventLogRepository(dir);
+        Assert.assertEquals(2, log.getCompetition(c1.getId()).getRound(1).numberOfMatches());
+        log.close();
+
+        // Lose the end of the batch; none of it should be replayed.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.truncate(Files.size(file) - 10);
+        }
+        EventLogRepository reopened = new EventLogRepository(dir);
+        Assert.assertEquals(length, Files.size(file));
+        Assert.assertEquals(0, reopened.getCompetition(c1.getId()).numberOfRounds());
+        FinskaRound r1 = reopened.createRound(reopened.getCompetition(c1.getId()), new FinskaRound(1, date),
+                                              Arrays.asList(new FinskaMatch(1, date)));
+        Assert.assertEquals(1, r1.getId());
+        Assert.assertEquals(1, r1.getMatch(1).getId());
+        reopened.close();
+    }
+
+    /**
+     * Verifies that appends are forced to disk in the background once
+     * the sync delay has passed, without waiting for the sync interval.
+     *
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     * @throws InterruptedException interrupted while waiting
+     */
+    @Test
+    public void syncChecks()
+        throws PersistenceException, IOException, InterruptedException
+    {
+        EventLogRepository log = new FailingLogRepository(Files.createDirectory(sRoot.resolve("sync")));
+        try
+        {
+            verifyExceptionThrown(() -> log.setSyncInterval(0), IllegalArgumentException.class, "Invalid sync interval: 0");
+            verifyExceptionThrown(() -> log.setSyncDelay(0), IllegalArgumentException.class, "Invalid sync delay: 0");
+            log.setSyncInterval(100);
+            log.setSyncDelay(10);
+            int forces = sForces.get();
+            log.createPlayer(new Player("David"));
+            for (int i = 0; (i < 100) && (sForces.get() == forces); i++)
+            {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(forces + 1, sForces.get());
+        }
+        finally
+        {
+            log.close();
+        }
+    }
+
+    /**
+     * Verifies the replayed graph matches the given entities.
+     *
+     * @param competitions the replayed competitions
+     * @param competition the expected competition
+     * @param round the expected round
+     * @param match the expected match
+     */
+    private void verifyGraph(Map<Integer, FinskaCompetition> competitions, FinskaCompetition competition,
+                             FinskaRound round, FinskaMatch match)
+    {
+        verifyEntityMap(competitions, competition);
+        FinskaCompetition c = competitions.get(competition.getId());
+        Assert.assertEquals("Jane", c.getEntrant(2).getKey());
+        FinskaRound r = c.getRound(round.getKey());
+        Assert.assertEquals(round.getRoundDate(), r.getRoundDate());
+        Assert.assertTrue(r.hasPlayer(1));
+        FinskaMatch m = r.getMatch(match.getKey());
+        Assert.assertEquals(match.toString(), m.toString());
+        Assert.assertEquals("Jane", m.getWinner(2).getKey());
+    }
+
+    /**
+     * An event log whose writes can be made to fail.
+     */
+    private static final class FailingLogRepository extends EventLogRepository
+    {
+        /**
+         * Constructs a new repository.
+         *
+         * @param directory the directory holding the log
+         *
+         * @throws PersistenceException error replaying the log
+         */
+        FailingLogRepository(Path directory)
+            throws PersistenceException
+        {
+            super(directory);
+        }
+
+        @Override
+        FileChannel openLog(Path file)
+            throws IOException
+        {
+            return new FailingChannel(super.openLog(file));
+        }
+    }
+
+    /**
+     * A file channel that counts how often it is forced and, when
+     * {@link #sFailWrites} is set, writes only half of a buffer and then
+     * fails.
+     */
+    private static final class FailingChannel extends FileChannel
+    {
+        /** The channel written to. */
+        private final FileChannel mChannel;
+
+        /**
+         * Constructs a new channel.
+         *
+         * @param channel the channel written to
+         */
+        FailingChannel(FileChannel channel)
+        {
+            mChannel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src)
+            throws IOException
+        {
+            if (sFailWrites)
+            {
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                mChannel.write(half);
+                throw new IOException("Disk full");
+            }
+            return mChannel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+            throws IOException
+        {
+            return mChannel.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position)
+            throws IOException
+        {
+            return mChannel.write(src, position);
+        }
+
+        @Override
+        public int read(ByteBuffer dst)
+            throws IOException
+        {
+            return mChannel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length)
+            throws IOException
+        {
+            return mChannel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position)
+            throws IOException
+        {
+            return mChannel.read(dst, position);
+        }
+
+        @Override
+        public long position()
+            throws IOException
+        {
+            return mChannel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition)
+            throws IOException
+        {
+            mChannel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size()
+            throws IOException
+        {
+            return mChannel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size)
+            throws IOException
+        {
+            mChannel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData)
+            throws IOException
+        {
+            sForces.incrementAndGet();
+            mChannel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException
+        {
+            return mChannel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count)
+            throws IOException
+        {
+            return mChannel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size)
+            throws IOException
+        {
+            return mChannel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared)
+            throws IOException
+        {
+            return mChannel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared)
+            throws IOException
+        {
+            return mChannel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel()
+            throws IOException
+        {
+            mChannel.close();
+        }
+    }
+}
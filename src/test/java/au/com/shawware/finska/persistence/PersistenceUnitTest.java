@@ -7,8 +7,15 @@
 
 package au.com.shawware.finska.persistence;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -18,6 +25,7 @@ import au.com.shawware.finska.entity.FinskaMatch;
 import au.com.shawware.finska.entity.FinskaRound;
 import au.com.shawware.finska.entity.Player;
 import au.com.shawware.util.persistence.PersistenceException;
+import au.com.shawware.util.persistence.PersistenceFactory;
 
 /**
  * Exercise the persistence layer.
@@ -70,4 +78,281 @@ public class PersistenceUnitTest extends AbstractFinskaPersistenceUnitTest
         p2 = r2.getPlayer(p1.getId());
         Assert.assertEquals(p1.toString(), p2.toString());
     }
+
+    /**
+     * Verifies that loading in parallel produces the same results as
+     * loading serially, including failing on a dangling reference.
+     * 
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void parallelLoadChecks()
+        throws PersistenceException, IOException
+    {
+        Path root = Files.createDirectory(sRoot.resolve("parallel"));
+        createStoreDirectories(root);
+        PersistenceFactory factory = PersistenceFactory.getFactory(root.toString());
+        EntityRepository repository = EntityRepository.getRepository(factory);
+
+        Player p1 = repository.createPlayer(new Player("Anne"));
+        Player p2 = repository.createPlayer(new Player("Bill"));
+        for (int c = 1; c <= 3; c++)
+        {
+            FinskaCompetition competition = new FinskaCompetition("C" + c, LocalDate.of(2018, c, 1));
+            competition.addEntrant(p1);
+            competition.addEntrant(p2);
+            repository.createCompetition(competition);
+            for (int r = 1; r <= 3; r++)
+            {
+                FinskaRound round = new FinskaRound(r, competition.getStartDate().plusDays(r));
+                round.addPlayer(p1);
+                round.addPlayer(p2);
+                repository.createRound(competition, round);
+                FinskaMatch match = new FinskaMatch(1, round.getRoundDate());
+                match.addWinner((r % 2 == 0) ? p1 : p2);
+                repository.createMatch(competition, round, match);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            Map<Integer, FinskaCompetition> serial = repository.getCompetitions();
+            repository.setExecutor(executor);
+            Map<Integer, FinskaCompetition> parallel = repository.getCompetitions();
+            Assert.assertEquals(serial.size(), parallel.size());
+            for (FinskaCompetition competition : serial.values())
+            {
+                FinskaCompetition copy = parallel.get(competition.getId());
+                Assert.assertEquals(competition.toString(), copy.toString());
+                Assert.assertEquals(competition.getEntrants().toString(), copy.getEntrants().toString());
+                Assert.assertEquals(competition.getRounds().toString(), copy.getRounds().toString());
+                for (FinskaRound round : competition.getRounds())
+                {
+                    Assert.assertEquals(round.getMatches().toString(), copy.getRound(round.getKey()).getMatches().toString());
+                }
+            }
+
+            // A dangling reference fails the same way in both modes.
+            FinskaRound round = serial.get(1).getRound(1);
+            round.setMatchIds(Collections.singleton(99));
+            repository.updateRound(round);
+            String message = "Entity " + round.getId() + " refers to non-existent entity; 99";
+            verifyCheckedExceptionThrown(() -> repository.getCompetitions(), PersistenceException.class, message);
+            repository.setExecutor(null);
+            verifyCheckedExceptionThrown(() -> repository.getCompetitions(), PersistenceException.class, message);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that lazily loaded competitions only load their rounds
+     * when they are needed and then match those loaded eagerly.
+     * 
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void lazyLoadChecks()
+        throws PersistenceException, IOException
+    {
+        Path root = Files.createDirectory(sRoot.resolve("lazy"));
+        createStoreDirectories(root);
+        EntityRepository repository = EntityRepository.getRepository(PersistenceFactory.getFactory(root.toString()));
+
+        Player p1 = repository.createPlayer(new Player("Anne"));
+        Player p2 = repository.createPlayer(new Player("Bill"));
+        FinskaCompetition c1 = null;
+        for (int c = 1; c <= 2; c++)
+        {
+            FinskaCompetition competition = new FinskaCompetition("C" + c, LocalDate.of(2018, c, 1));
+            competition.addEntrant(p1);
+            competition.addEntrant(p2);
+            repository.createCompetition(competition);
+            for (int r = 1; r <= 2; r++)
+            {
+                FinskaRound round = new FinskaRound(r, competition.getStartDate().plusDays(r));
+                round.addPlayer(p1);
+                round.addPlayer(p2);
+                repository.createRound(competition, round);
+                FinskaMatch match = new FinskaMatch(1, round.getRoundDate());
+                match.addWinner(p2);
+                repository.createMatch(competition, round, match);
+            }
+            c1 = (c1 == null) ? competition : c1;
+        }
+
+        Map<Integer, FinskaCompetition> eager = repository.getCompetitions();
+        repository.setLazyLoading(true);
+        try
+        {
+            Map<Integer, FinskaCompetition> lazy = repository.getCompetitions();
+            for (FinskaCompetition competition : eager.values())
+            {
+                FinskaCompetition copy = lazy.get(competition.getId());
+                Assert.assertEquals(competition.toString(), copy.toString());
+                Assert.assertEquals(competition.numberOfRounds(), copy.numberOfRounds());
+                Assert.assertEquals(competition.getEntrants().toString(), copy.getEntrants().toString());
+                Assert.assertEquals(competition.getRounds().toString(), copy.getRounds().toString());
+                FinskaMatch match = copy.getRound(1).getMatch(1);
+                Assert.assertEquals(competition.getRound(1).getMatch(1).toString(), match.toString());
+                Assert.assertSame(copy.getEntrant(p2.getId()), match.getWinner(p2.getId()));
+            }
+
+            // A competition's rounds are only read when they are needed.
+            lazy = repository.getCompetitions();
+            FinskaCompetition touched = lazy.get(c1.getId());
+            FinskaCompetition untouched = lazy.get(c1.getId() + 1);
+            Assert.assertEquals(2, touched.getRounds().size());
+            // Nor does copying a competition read them.
+            FinskaCompetition copy = untouched.copy();
+            Assert.assertTrue(untouched.hasRoundLoader());
+            Assert.assertTrue(copy.hasRoundLoader());
+            Assert.assertFalse(touched.copy().hasRoundLoader());
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(root.resolve(ROUND_DIR)))
+            {
+                for (Path file : files)
+                {
+                    Files.delete(file);
+                }
+            }
+            Assert.assertEquals(eager.get(c1.getId()).getRounds().toString(), touched.getRounds().toString());
+            Assert.assertEquals(2, untouched.numberOfRounds());
+            verifyExceptionThrown(() -> untouched.getRounds(), IllegalStateException.class,
+                                  "Unable to load the rounds for competition " + untouched.getId());
+            verifyExceptionThrown(() -> copy.getRounds(), IllegalStateException.class,
+                                  "Unable to load the rounds for competition " + untouched.getId());
+            Assert.assertEquals(2, copy.numberOfRounds());
+        }
+        finally
+        {
+            repository.setLazyLoading(false);
+        }
+    }
+
+    /**
+     * Verifies that retrieving a single competition only reads the
+     * entities that competition refers to.
+     * 
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void singleLoadChecks()
+        throws PersistenceException, IOException
+    {
+        Path root = Files.createDirectory(sRoot.resolve("single"));
+        createStoreDirectories(root);
+        PersistenceFactory factory = PersistenceFactory.getFactory(root.toString());
+        EntityRepository repository = EntityRepository.getRepository(factory);
+
+        Player p1 = repository.createPlayer(new Player("Anne"));
+        Player p2 = repository.createPlayer(new Player("Bill"));
+        FinskaCompetition c1 = null;
+        FinskaRound broken = null;
+        for (int c = 1; c <= 2; c++)
+        {
+            FinskaCompetition competition = new FinskaCompetition("C" + c, LocalDate.of(2018, c, 1));
+            competition.addEntrant(p1);
+            repository.createCompetition(competition);
+            FinskaRound round = new FinskaRound(1, competition.getStartDate().plusDays(1));
+            round.addPlayer(p1);
+            round.addPlayer(p2);
+            FinskaMatch match = new FinskaMatch(1, round.getRoundDate());
+            match.addWinner(p2);
+            repository.createRound(competition, round, Collections.singletonList(match));
+            c1 = (c1 == null) ? competition : c1;
+            broken = round;
+        }
+        String expected = repository.getCompetitions().get(c1.getId()).getRounds().toString();
+
+        // Break the second competition; the first can still be retrieved on its own.
+        broken.setMatchIds(Collections.singleton(99));
+        factory.getStore(FinskaRound.class, "Finska").update(broken);
+        verifyCheckedExceptionThrown(() -> repository.getCompetitions(), PersistenceException.class,
+                                     "Entity " + broken.getId() + " refers to non-existent entity; 99");
+        FinskaCompetition competition = repository.getCompetition(c1.getId());
+        Assert.assertEquals(expected, competition.getRounds().toString());
+        Assert.assertSame(competition.getEntrant(p1.getId()), competition.getRound(1).getPlayer(p1.getId()));
+        Assert.assertEquals("Bill", competition.getRound(1).getMatch(1).getWinner(p2.getId()).getKey());
+        verifyCheckedExceptionThrown(() -> repository.getCompetition(0), PersistenceException.class,
+                                     "Competition does not exist: 0");
+    }
+
+    /**
+     * Verifies that queued updates are coalesced and flushed.
+     * 
+     * @throws PersistenceException persistence error
+     * @throws IOException file error
+     */
+    @Test
+    public void writeBehindChecks()
+        throws PersistenceException, IOException
+    {
+        Path root = Files.createDirectory(sRoot.resolve("writebehind"));
+        createStoreDirectories(root);
+        PersistenceFactory factory = PersistenceFactory.getFactory(root.toString());
+        EntityRepository repository = EntityRepository.getRepository(factory);
+
+        Player p1 = repository.createPlayer(new Player("Anne"));
+        FinskaCompetition competition = new FinskaCompetition("C1", LocalDate.of(2018, 5, 1));
+        competition.addEntrant(p1);
+        repository.createCompetition(competition);
+        FinskaRound round = new FinskaRound(1, LocalDate.of(2018, 5, 2));
+        round.addPlayer(p1);
+        repository.createRound(competition, round);
+        FinskaMatch match = repository.createMatch(competition, round, new FinskaMatch(1, round.getRoundDate()));
+
+        // Use a long interval so that only explicit flushes occur.
+        repository.setWriteBehind(3600000);
+        try
+        {
+            WriteBehindQueue queue = repository.getWriteBehindQueue();
+            match.addWinner(p1);
+            repository.updateMatch(competition, round, match);
+            match.setFastWin(true);
+            repository.updateMatch(competition, round, match);
+            repository.updateMatch(competition, round, match);
+            p1.setKey("Annie");
+            repository.updatePlayer(p1);
+
+            Assert.assertEquals(2, queue.getQueueDepth());
+            Assert.assertEquals(2, queue.getCoalescedWrites());
+            Assert.assertEquals(0, queue.getFlushCount());
+            Assert.assertFalse(factory.getStore(FinskaMatch.class, "Finska").get(match.getId()).isFastWin());
+
+            // A read sees the queued updates without flushing them.
+            FinskaCompetition copy = repository.getCompetition(competition.getId());
+            Assert.assertEquals(match.toString(), copy.getRound(1).getMatch(1).toString());
+            Assert.assertEquals("Annie", copy.getEntrant(p1.getId()).getKey());
+            Assert.assertEquals("Annie", repository.getPlayer(p1.getId()).getKey());
+            Assert.assertEquals("Annie", repository.getPlayers().get(p1.getId()).getKey());
+            Assert.assertEquals(match.toString(), repository.getCompetitions().get(competition.getId()).getRound(1).getMatch(1).toString());
+            Assert.assertEquals(2, queue.getQueueDepth());
+            Assert.assertEquals(0, queue.getFlushCount());
+
+            repository.flush();
+            Assert.assertEquals(0, queue.getQueueDepth());
+            Assert.assertEquals(1, queue.getFlushCount());
+            Assert.assertEquals(2, queue.getWrittenCount());
+            Assert.assertTrue(queue.getMaxFlushNanos() >= queue.getLastFlushNanos());
+
+            match.setFastWin(false);
+            repository.updateMatch(competition, round, match);
+            Assert.assertEquals(1, queue.getQueueDepth());
+
+            // The queued update holds the match as it was when queued.
+            match.setFastWin(true);
+        }
+        finally
+        {
+            repository.setWriteBehind(0);
+        }
+        Assert.assertNull(repository.getWriteBehindQueue());
+        Assert.assertFalse(factory.getStore(FinskaMatch.class, "Finska").get(match.getId()).isFastWin());
+    }
 }
@@ -8,6 +8,7 @@
 package au.com.shawware.finska.scoring;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Assert;
@@ -111,6 +112,122 @@ public class AnalyserUnitTest extends AbstractUnitTest
         verifyAlgorithm(competition, scoringSystem, expectedResults);
     }
 
+    /**
+     * Test that applying a single match change gives the same leader board
+     * as analysing the changed competition from scratch, without changing
+     * the original analyser or leader board.
+     */
+    @Test
+    public void testMatchChanges()
+    {
+        FinskaCompetition competition = createCompetition();
+        ScoringSystem scoringSystem = new ScoringSystem(3, 1, 1, 1, 0);
+        CompetitionAnalyser analyser = new CompetitionAnalyser(competition.copy(), scoringSystem);
+        List<EntrantResult> leaderBoard = LeaderBoardGenerator.generateLeaderBoard(analyser);
+        String original = leaderBoard.toString();
+
+        // Give round 1, match 2 to player 1 as well, who then wins both.
+        FinskaCompetition changed = competition.copy();
+        FinskaMatch m2 = changed.getRound(1).getMatch(2);
+        m2.setWinnerIds(Collections.emptySet());
+        m2.addWinner(changed.getEntrant(1));
+
+        CompetitionAnalyser derived = analyser.withMatchChange(changed, 1);
+        Assert.assertNotNull(derived);
+        Assert.assertEquals(1, derived.getChangedRound());
+        List<EntrantResult> changedResults = derived.getChangedResults();
+        Assert.assertEquals(2, changedResults.size());
+        Assert.assertEquals(1, changedResults.get(0).getEntrantID());
+        Assert.assertEquals(2, changedResults.get(1).getEntrantID());
+        List<EntrantResult> updated = LeaderBoardGenerator.updateLeaderBoard(leaderBoard, changedResults, derived, 6, 1);
+        verifySameLeaderBoard(changed, scoringSystem, updated);
+        Assert.assertEquals(original, leaderBoard.toString());
+        Assert.assertEquals(original, LeaderBoardGenerator.generateLeaderBoard(analyser).toString());
+
+        // Add a second fast win to the last round.
+        FinskaCompetition added = changed.copy();
+        FinskaRound r6 = added.getRound(6);
+        FinskaMatch m13 = new FinskaMatch(13, 13, r6.getRoundDate());
+        m13.addWinner(added.getEntrant(2));
+        m13.setFastWin(true);
+        r6.addMatch(m13);
+
+        derived = derived.withMatchChange(added, 6);
+        Assert.assertNotNull(derived);
+        Assert.assertEquals(6, derived.getChangedRound());
+        Assert.assertEquals(5, derived.getChangedResults().size());
+        updated = LeaderBoardGenerator.updateLeaderBoard(updated, derived.getChangedResults(), derived, 6, 6);
+        verifySameLeaderBoard(added, scoringSystem, updated);
+
+        // Other changes need a new analyser.
+        Assert.assertNull(analyser.withMatchChange(changed, 9));
+        FinskaCompetition entrants = changed.copy();
+        entrants.addEntrant(new Player(6, "Jane"));
+        Assert.assertNull(analyser.withMatchChange(entrants, 1));
+
+        verifyExceptionThrown(() -> LeaderBoardGenerator.updateLeaderBoard(leaderBoard, changedResults, analyser, 6, 7),
+                              IllegalArgumentException.class, "Invalid round: 7");
+    }
+
+    /**
+     * Verify the given leader board matches one generated from scratch,
+     * including the previous ranks.
+     * 
+     * @param competition the competition
+     * @param scoringSystem the scoring system
+     * @param leaderBoard the leader board to verify
+     */
+    private void verifySameLeaderBoard(FinskaCompetition competition, ScoringSystem scoringSystem, List<EntrantResult> leaderBoard)
+    {
+        List<EntrantResult> expected = LeaderBoardGenerator.generateLeaderBoard(new CompetitionAnalyser(competition, scoringSystem));
+        Assert.assertEquals(expected.toString(), leaderBoard.toString());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertEquals(expected.get(i).getPreviousRank(), leaderBoard.get(i).getPreviousRank());
+        }
+    }
+
+    /**
+     * Test that an analyser derived after a round change gives the same
+     * leader board as analysing the changed competition from scratch,
+     * without changing the original analyser.
+     */
+    @Test
+    public void testRoundChanges()
+    {
+        FinskaCompetition competition = createCompetition();
+        ScoringSystem scoringSystem = new ScoringSystem(3, 1, 1, 1, 0);
+        CompetitionAnalyser analyser = new CompetitionAnalyser(competition.copy(), scoringSystem);
+        String original = LeaderBoardGenerator.generateLeaderBoard(analyser).toString();
+
+        // Player 3 also plays in round 3.
+        FinskaCompetition changed = competition.copy();
+        changed.getRound(3).addPlayer(changed.getEntrant(3));
+        CompetitionAnalyser derived = analyser.withRoundChange(changed, 3);
+        Assert.assertNotNull(derived);
+        verifySameLeaderBoard(changed, scoringSystem, LeaderBoardGenerator.generateLeaderBoard(derived));
+        Assert.assertEquals(original, LeaderBoardGenerator.generateLeaderBoard(analyser).toString());
+
+        // A new round is added at the end.
+        FinskaCompetition added = changed.copy();
+        FinskaRound r7 = new FinskaRound(13, 7, LocalDate.of(2018, 3, 16));
+        FinskaMatch m13 = new FinskaMatch(13, 13, r7.getRoundDate());
+        m13.addWinner(added.getEntrant(4));
+        r7.addPlayer(added.getEntrant(4));
+        r7.addPlayer(added.getEntrant(5));
+        r7.addMatch(m13);
+        added.addRound(r7);
+        derived = derived.withRoundChange(added, 7);
+        Assert.assertNotNull(derived);
+        verifySameLeaderBoard(added, scoringSystem, LeaderBoardGenerator.generateLeaderBoard(derived));
+
+        // Other changes need a new analyser.
+        Assert.assertNull(analyser.withRoundChange(changed, 9));
+        FinskaCompetition entrants = changed.copy();
+        entrants.addEntrant(new Player(6, "Jane"));
+        Assert.assertNull(analyser.withRoundChange(entrants, 3));
+    }
+
     /**
      * Verify the {@link CompetitionAnalyser#compileCurrentResults()} algorithm
      * for the given competition and scoring system.
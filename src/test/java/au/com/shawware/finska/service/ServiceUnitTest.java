@@ -9,19 +9,30 @@ package au.com.shawware.finska.service;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import au.com.shawware.compadmin.scoring.EntrantResult;
+import au.com.shawware.compadmin.scoring.IResultsCompiler;
 import au.com.shawware.finska.entity.FinskaCompetition;
 import au.com.shawware.finska.entity.FinskaMatch;
 import au.com.shawware.finska.entity.FinskaRound;
 import au.com.shawware.finska.entity.Player;
 import au.com.shawware.finska.persistence.AbstractFinskaPersistenceUnitTest;
+import au.com.shawware.finska.persistence.CachedEntityRepository;
+import au.com.shawware.finska.persistence.EntityRepository;
+import au.com.shawware.finska.persistence.WriteBehindQueue;
+import au.com.shawware.finska.scoring.ResultItem;
 import au.com.shawware.finska.scoring.ScoringSystem;
 import au.com.shawware.util.persistence.PersistenceException;
 
@@ -319,6 +330,45 @@ public class ServiceUnitTest extends AbstractFinskaPersistenceUnitTest
         Assert.assertEquals(match.toString(), copy.toString());
     }
 
+    /**
+     * Verifies that a change to one competition only refreshes that competition.
+     * 
+     * @throws PersistenceException error during storage
+     */
+    @Test
+    public void verifyChangePropagation()
+        throws PersistenceException
+    {
+        Player p1 = sPlayerService.createPlayer("Anne");
+        Player p2 = sPlayerService.createPlayer("Bill");
+        int[] playerIds = new int[] { p1.getId(), p2.getId() };
+
+        FinskaCompetition c1 = sCompetitionService.createCompetition("CP-1", sToday.plusDays(30), playerIds);
+        FinskaCompetition c2 = sCompetitionService.createCompetition("CP-2", sToday.plusDays(40), playerIds);
+        FinskaRound round = sRoundService.createRound(c1.getId(), c1.getStartDate(), playerIds);
+
+        FinskaCompetition before1 = sResultsService.getCompetition(c1.getId());
+        FinskaCompetition before2 = sResultsService.getCompetition(c2.getId());
+
+        sMatchService.createMatch(c1.getId(), round.getKey(), new int[] { p1.getId() }, false);
+
+        FinskaCompetition after1 = sResultsService.getCompetition(c1.getId());
+        Assert.assertNotSame(before1, after1);
+        Assert.assertEquals(1, after1.getRound(round.getKey()).numberOfMatches());
+        Assert.assertSame(before2, sResultsService.getCompetition(c2.getId()));
+        Assert.assertEquals(p1.getId(), sResultsService.getLeaderBoard(c1.getId(), 1).get(0).getEntrantID());
+
+        // Creating a player does not affect any competition.
+        sPlayerService.createPlayer("Carl");
+        Assert.assertSame(after1, sResultsService.getCompetition(c1.getId()));
+        Assert.assertSame(before2, sResultsService.getCompetition(c2.getId()));
+
+        // Updating an entrant refreshes every competition.
+        sPlayerService.updatePlayer(p2.getId(), "William");
+        Assert.assertNotSame(before2, sResultsService.getCompetition(c2.getId()));
+        Assert.assertEquals("William", sResultsService.getCompetition(c2.getId()).getEntrant(p2.getId()).getKey());
+    }
+
     /**
      * Test the player service.
      * 
@@ -407,4 +457,410 @@ public class ServiceUnitTest extends AbstractFinskaPersistenceUnitTest
 
         verifyCheckedExceptionThrown(() -> sResultsService.getLeaderBoard(0, 0),                   IllegalArgumentException.class, "Competition does not exist: 0");
     }
+
+    /**
+     * Verifies that a round can be recorded together with all its matches.
+     * 
+     * @throws PersistenceException persistence error
+     */
+    @Test
+    public void verifyRoundIngestion()
+        throws PersistenceException
+    {
+        int[] playerIds = new int[] { 1, 2, 3 };
+        FinskaCompetition competition = sCompetitionService.createCompetition("Ingestion Test", sToday.plusDays(21), playerIds);
+        LocalDate roundDate = competition.getStartDate().plusDays(1);
+
+        List<MatchOutcome> outcomes = Arrays.asList(new MatchOutcome(new int[] { 1 }, false),
+                                                    new MatchOutcome(new int[] { 2, 3 }, true),
+                                                    new MatchOutcome(new int[] { 1 }, false));
+        FinskaRound round = sRoundService.createRound(competition.getId(), roundDate, new int[] { 1, 2, 3 }, outcomes);
+        Assert.assertEquals(1, round.getKey().intValue());
+        Assert.assertEquals(3, round.numberOfMatches());
+
+        FinskaCompetition stored = sResultsService.getCompetition(competition.getId());
+        Assert.assertEquals(1, stored.numberOfRounds());
+        FinskaRound copy = stored.getRound(1);
+        Assert.assertEquals(round.toString(), copy.toString());
+        for (int i = 0; i < outcomes.size(); i++)
+        {
+            FinskaMatch match = copy.getMatch(i + 1);
+            Assert.assertEquals(roundDate, match.getMatchDate());
+            Assert.assertEquals(outcomes.get(i).isFastWin(), match.isFastWin());
+            Assert.assertEquals(outcomes.get(i).getWinnerIds().length, match.getWinnerIds().size());
+        }
+        Assert.assertEquals(1, sResultsService.getLeaderBoard(competition.getId(), 1).get(0).getEntrantID());
+
+        // Nothing is stored if any match is invalid.
+        List<MatchOutcome> invalid = Arrays.asList(new MatchOutcome(new int[] { 1 }, false),
+                                                   new MatchOutcome(new int[] { 3 }, false));
+        verifyCheckedExceptionThrown(() -> sRoundService.createRound(competition.getId(), roundDate, new int[] { 1, 2 }, invalid),
+                                     IllegalArgumentException.class, "Cannot find player eith ID 3 in round 2");
+        verifyCheckedExceptionThrown(() -> sRoundService.createRound(competition.getId(), roundDate, playerIds, null),
+                                     IllegalArgumentException.class, "Empty match outcomes");
+        verifyCheckedExceptionThrown(() -> sRoundService.createRound(competition.getId(), roundDate, playerIds,
+                                                                     Arrays.asList(new MatchOutcome(new int[0], false))),
+                                     IllegalArgumentException.class, "Empty winner IDs");
+        Assert.assertEquals(1, sResultsService.getCompetition(competition.getId()).numberOfRounds());
+    }
+
+    /**
+     * Verifies that an invalid match update through a cached repository
+     * leaves the cached match unchanged, and that changes to the cached
+     * entities do not alter published results.
+     *
+     * @throws PersistenceException persistence error
+     */
+    @Test
+    public void verifyCachedUpdates()
+        throws PersistenceException
+    {
+        CachedEntityRepository repository = (CachedEntityRepository)CachedEntityRepository.getRepository(sFactory);
+        repository.invalidate();
+        ResultsService results = new ResultsService(repository, new ScoringSystem(1, 0, 0, 0, 0));
+        CompetitionService competitions = new CompetitionService(repository, results);
+        RoundService rounds = new RoundService(repository, results);
+        MatchService matches = new MatchService(repository, results);
+
+        // Held long ago so that it never becomes the most recent or current competition.
+        int[] playerIds = new int[] { 1, 2 };
+        int id = competitions.createCompetition("Cached Test", sToday.minusDays(400), playerIds).getId();
+        rounds.createRound(id, sToday.minusDays(400), playerIds, Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+
+        verifyCheckedExceptionThrown(() -> matches.updateMatch(id, 1, 1, new int[] { 2, 99 }, true),
+                                     IllegalArgumentException.class, "Cannot find player with ID: 99");
+        verifyCheckedExceptionThrown(() -> rounds.updateRound(id, 1, sToday, new int[] { 1, 99 }),
+                                     IllegalArgumentException.class, "Cannot find player with ID: 99");
+        FinskaRound round = repository.getCompetition(id).getRound(1);
+        Assert.assertEquals(sToday.minusDays(400), round.getRoundDate());
+        Assert.assertEquals(2, round.getPlayerIds().size());
+        FinskaMatch match = round.getMatch(1);
+        Assert.assertEquals(Collections.singleton(1), match.getWinnerIds());
+        Assert.assertFalse(match.isFastWin());
+
+        // Published results are unaffected by later changes to the cached entities.
+        FinskaMatch published = results.getCompetition(id).getRound(1).getMatch(1);
+        Assert.assertNotSame(match, published);
+        matches.updateMatch(id, 1, 1, new int[] { 2 }, true);
+        Assert.assertEquals(Collections.singleton(1), published.getWinnerIds());
+        Assert.assertFalse(published.isFastWin());
+        FinskaCompetition competition = results.getCompetition(id);
+        FinskaMatch updated = competition.getRound(1).getMatch(1);
+        Assert.assertEquals(Collections.singleton(2), updated.getWinnerIds());
+        Assert.assertTrue(updated.isFastWin());
+        Assert.assertSame(competition.getEntrant(2), updated.getWinner(2));
+        Assert.assertSame(competition.getEntrant(2), competition.getRound(1).getPlayer(2));
+    }
+
+    /**
+     * Verifies that successive match updates written behind are persisted
+     * as a single write, while the services still see each update.
+     *
+     * @throws PersistenceException persistence error
+     */
+    @Test
+    public void verifyWriteBehindCoalescing()
+        throws PersistenceException
+    {
+        EntityRepository repository = EntityRepository.getRepository(sFactory);
+        ResultsService results = new ResultsService(repository, new ScoringSystem(1, 0, 0, 0, 0));
+        CompetitionService competitions = new CompetitionService(repository, results);
+        RoundService rounds = new RoundService(repository, results);
+        MatchService matches = new MatchService(repository, results);
+
+        // Held long ago so that it never becomes the most recent or current competition.
+        int[] playerIds = new int[] { 1, 2 };
+        int id = competitions.createCompetition("Write Behind Test", sToday.minusDays(500), playerIds).getId();
+        rounds.createRound(id, sToday.minusDays(500), playerIds, Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+
+        // Use a long interval so that only explicit flushes occur.
+        repository.setWriteBehind(3600000);
+        try
+        {
+            WriteBehindQueue queue = repository.getWriteBehindQueue();
+            int matchId = matches.updateMatch(id, 1, 1, new int[] { 2 }, false).getId();
+            matches.updateMatch(id, 1, 1, new int[] { 2 }, true);
+            Assert.assertEquals(1, queue.getQueueDepth());
+            Assert.assertEquals(1, queue.getCoalescedWrites());
+            Assert.assertEquals(Collections.singleton(1), sMatchStore.get(matchId).getWinnerIds());
+
+            FinskaMatch match = results.getCompetition(id).getRound(1).getMatch(1);
+            Assert.assertEquals(Collections.singleton(2), match.getWinnerIds());
+            Assert.assertTrue(match.isFastWin());
+
+            repository.flush();
+            Assert.assertEquals(1, queue.getWrittenCount());
+            Assert.assertTrue(sMatchStore.get(matchId).isFastWin());
+        }
+        finally
+        {
+            repository.setWriteBehind(0);
+        }
+    }
+
+    /**
+     * Verifies that results snapshots are versioned, never change once
+     * published and are always internally consistent for readers.
+     * 
+     * @throws PersistenceException persistence error
+     * @throws InterruptedException interrupted while waiting for readers
+     */
+    @Test
+    public void verifyResultsSnapshots()
+        throws PersistenceException, InterruptedException
+    {
+        int[] playerIds = new int[] { 1, 2 };
+        ResultsSnapshot before = sResultsService.getSnapshot();
+        Set<Integer> competitionIds = new HashSet<>(before.getCompetitions().keySet());
+        FinskaCompetition competition = sCompetitionService.createCompetition("Snapshot Test", sToday.plusDays(60), playerIds);
+
+        ResultsSnapshot after = sResultsService.getSnapshot();
+        Assert.assertTrue(after.getVersion() > before.getVersion());
+        Assert.assertEquals(competitionIds, before.getCompetitions().keySet());
+        Assert.assertFalse(before.getCompetitions().containsKey(competition.getId()));
+        Assert.assertTrue(after.getCompetitions().containsKey(competition.getId()));
+        Assert.assertTrue(after.getCompilers().containsKey(competition.getId()));
+
+        // Readers always see a complete snapshot while it is being replaced.
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicInteger failures = new AtomicInteger(0);
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++)
+        {
+            readers[i] = new Thread(() -> {
+                while (!done.get())
+                {
+                    ResultsSnapshot snapshot = sResultsService.getSnapshot();
+                    FinskaCompetition current = snapshot.getCurrentCompetition();
+                    if (!snapshot.getCompilers().keySet().equals(snapshot.getCompetitions().keySet()) ||
+                        ((current != null) && !snapshot.getCompilers().containsKey(current.getId())))
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for (int i = 0; i < 20; i++)
+        {
+            sCompetitionService.updateCompetition(competition.getId(), "Snapshot Test " + i, competition.getStartDate(), playerIds);
+        }
+        done.set(true);
+        for (Thread reader : readers)
+        {
+            reader.join();
+        }
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals("Snapshot Test 19", sResultsService.getCompetition(competition.getId()).getKey());
+    }
+
+    /**
+     * Verifies that computed results are cached and that only changes to
+     * a competition invalidate its cached results.
+     *
+     * @throws PersistenceException error during test
+     */
+    @Test
+    public void verifyResultCaching()
+        throws PersistenceException
+    {
+        int[] playerIds = new int[] { 1, 2 };
+        FinskaCompetition competition = sCompetitionService.createCompetition("Cache Test", sToday.plusDays(90), playerIds);
+        FinskaCompetition other = sCompetitionService.createCompetition("Other Cache Test", sToday.plusDays(91), playerIds);
+        sRoundService.createRound(competition.getId(), competition.getStartDate(), playerIds,
+                                  Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+
+        ResultsCache cache = sResultsService.getResultsCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        List<EntrantResult> first = sResultsService.getLeaderBoard(competition.getId(), 1);
+        Assert.assertEquals(misses + 1, cache.getMisses());
+        List<EntrantResult> second = sResultsService.getLeaderBoard(competition.getId(), 1);
+        Assert.assertEquals(hits + 1, cache.getHits());
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(first.toString(), second.toString());
+
+        // Callers cannot alter the cached results, or the results within them.
+        second.get(0).setRank(99);
+        second.get(0).incrementResultItem(ResultItem.POINTS.toString(), 5);
+        second.clear();
+        Assert.assertEquals(first.toString(), sResultsService.getLeaderBoard(competition.getId(), 1).toString());
+        Assert.assertEquals(hits + 2, cache.getHits());
+
+        // A change to another competition leaves the cached results intact.
+        sRoundService.createRound(other.getId(), other.getStartDate(), playerIds);
+        sResultsService.getLeaderBoard(competition.getId(), 1);
+        Assert.assertEquals(hits + 3, cache.getHits());
+        Assert.assertEquals(misses + 1, cache.getMisses());
+
+        // A change to the competition itself forces the results to be recomputed.
+        sRoundService.createRound(competition.getId(), competition.getStartDate().plusDays(1), playerIds,
+                                  Arrays.asList(new MatchOutcome(new int[] { 2 }, true)));
+        List<EntrantResult> third = sResultsService.getLeaderBoard(competition.getId(), 1);
+        Assert.assertEquals(misses + 2, cache.getMisses());
+        Assert.assertEquals(first.toString(), third.toString());
+        sResultsService.getLeaderBoard(competition.getId(), 2);
+        Assert.assertEquals(misses + 3, cache.getMisses());
+
+        // Partial queries agree with the full leader board.
+        List<EntrantResult> leaderBoard = sResultsService.getLeaderBoard(competition.getId(), 2);
+        Assert.assertEquals(leaderBoard.subList(0, 1).toString(), sResultsService.getTopResults(competition.getId(), 2, 1).toString());
+        Assert.assertEquals(leaderBoard.get(1).toString(),
+                            sResultsService.getPlayerResult(competition.getId(), 2, leaderBoard.get(1).getEntrantID()).toString());
+        verifyExceptionThrown(() -> sResultsService.getTopResults(-1, 1, 5), IllegalArgumentException.class, "Competition does not exist: -1");
+
+        verifyExceptionThrown(() -> new ResultsCache(0), IllegalArgumentException.class, "Invalid cache size: 0");
+    }
+
+    /**
+     * Verifies that results compilers are only built when needed and that
+     * recent competitions can be pre-warmed.
+     *
+     * @throws PersistenceException error during test
+     */
+    @Test
+    public void verifyLazyAnalysis()
+        throws PersistenceException
+    {
+        int[] playerIds = new int[] { 1, 2 };
+        sResultsService.repositoryUpdated();
+        ResultsSnapshot snapshot = sResultsService.getSnapshot();
+        Assert.assertEquals(Collections.singleton(snapshot.getCurrentCompetition().getId()),
+                            snapshot.getBuiltCompilers().keySet());
+
+        // A competition's compiler is built on first use and then re-used.
+        FinskaCompetition competition = sCompetitionService.createCompetition("Lazy Test", sToday.plusDays(120), playerIds);
+        sRoundService.createRound(competition.getId(), competition.getStartDate(), playerIds,
+                                  Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+        snapshot = sResultsService.getSnapshot();
+        Assert.assertFalse(snapshot.getBuiltCompilers().containsKey(competition.getId()));
+        IResultsCompiler compiler = snapshot.getCompiler(competition.getId());
+        Assert.assertNotNull(compiler);
+        Assert.assertSame(compiler, snapshot.getCompiler(competition.getId()));
+        Assert.assertSame(compiler, snapshot.getCompilers().get(competition.getId()));
+        Assert.assertTrue(snapshot.getBuiltCompilers().containsKey(competition.getId()));
+        Assert.assertNull(snapshot.getCompiler(-1));
+
+        // Pre-warming builds the most recent competition's compiler and caches its leader board.
+        ResultsCache cache = sResultsService.getResultsCache();
+        try
+        {
+            sResultsService.setPrewarming(1, Runnable::run);
+            sRoundService.createRound(competition.getId(), competition.getStartDate().plusDays(1), playerIds,
+                                      Arrays.asList(new MatchOutcome(new int[] { 2 }, false)));
+            snapshot = sResultsService.getSnapshot();
+            Assert.assertTrue(snapshot.getBuiltCompilers().containsKey(competition.getId()));
+            long hits = cache.getHits();
+            long misses = cache.getMisses();
+            sResultsService.getLeaderBoard(competition.getId(), 2);
+            Assert.assertEquals(hits + 1, cache.getHits());
+            Assert.assertEquals(misses, cache.getMisses());
+
+            // A busy executor only means no pre-warming.
+            sResultsService.setPrewarming(1, runnable -> {
+                throw new RejectedExecutionException();
+            });
+            sCompetitionService.updateCompetition(competition.getId(), "Lazy Test 2", competition.getStartDate(), playerIds);
+            Assert.assertFalse(sResultsService.getSnapshot().getBuiltCompilers().containsKey(competition.getId()));
+        }
+        finally
+        {
+            sResultsService.setPrewarming(0, null);
+        }
+
+        verifyExceptionThrown(() -> sResultsService.setPrewarming(-1, Runnable::run), IllegalArgumentException.class, "Invalid number of competitions: -1");
+        verifyExceptionThrown(() -> sResultsService.setPrewarming(1, null), IllegalArgumentException.class, "Empty executor");
+    }
+
+    /**
+     * Verifies that a round change derives the competition's new compiler
+     * from the previous one, which the previous snapshot still uses unchanged.
+     *
+     * @throws PersistenceException error during test
+     */
+    @Test
+    public void verifyRoundChanges()
+        throws PersistenceException
+    {
+        int[] playerIds = new int[] { 1, 2 };
+        FinskaCompetition competition = sCompetitionService.createCompetition("Round Changes", sToday.plusDays(150), playerIds);
+        sRoundService.createRound(competition.getId(), competition.getStartDate(), playerIds,
+                                  Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+        IResultsCompiler compiler = sResultsService.getSnapshot().getCompiler(competition.getId());
+        String before = compiler.compileCurrentResults().toString();
+
+        sRoundService.createRound(competition.getId(), competition.getStartDate().plusDays(1), playerIds,
+                                  Arrays.asList(new MatchOutcome(new int[] { 2 }, false)));
+        ResultsSnapshot snapshot = sResultsService.getSnapshot();
+        Assert.assertTrue(snapshot.getBuiltCompilers().containsKey(competition.getId()));
+        IResultsCompiler derived = snapshot.getCompiler(competition.getId());
+        Assert.assertNotSame(compiler, derived);
+        Assert.assertEquals(before, compiler.compileCurrentResults().toString());
+        String after = derived.compileCurrentResults().toString();
+
+        // A full refresh builds the same results from scratch.
+        sResultsService.repositoryUpdated();
+        Assert.assertEquals(after, sResultsService.getSnapshot().getCompiler(competition.getId()).compileCurrentResults().toString());
+        Assert.assertEquals(before, derived.compilePreviousResults().toString());
+    }
+
+    /**
+     * Verifies that a match change updates the cached leader board for the
+     * competition's derived compiler rather than generating it again.
+     *
+     * @throws PersistenceException error during test
+     */
+    @Test
+    public void verifyMatchChanges()
+        throws PersistenceException
+    {
+        int[] playerIds = new int[] { 1, 2 };
+        FinskaCompetition competition = sCompetitionService.createCompetition("Match Changes", sToday.plusDays(180), playerIds);
+        FinskaRound r1 = sRoundService.createRound(competition.getId(), competition.getStartDate(), playerIds,
+                                                   Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+        FinskaRound r2 = sRoundService.createRound(competition.getId(), competition.getStartDate().plusDays(1), playerIds,
+                                                   Arrays.asList(new MatchOutcome(new int[] { 1 }, false)));
+        List<EntrantResult> leaderBoard = sResultsService.getLeaderBoard(competition.getId(), 2);
+        String before = leaderBoard.toString();
+        ResultsCache cache = sResultsService.getResultsCache();
+
+        // Player 2 wins the first round instead, which also changes the previous ranks.
+        sMatchService.updateMatch(competition.getId(), r1.getKey(), r1.getMatches().get(0).getKey(), new int[] { 2 }, false);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        List<EntrantResult> updated = sResultsService.getLeaderBoard(competition.getId(), 2);
+        Assert.assertEquals(hits + 1, cache.getHits());
+        Assert.assertEquals(misses, cache.getMisses());
+        Assert.assertEquals(before, leaderBoard.toString());
+        verifySameLeaderBoard(competition.getId(), 2, updated);
+
+        // A new match in the latest round.
+        sMatchService.createMatch(competition.getId(), r2.getKey(), new int[] { 2 }, true);
+        hits = cache.getHits();
+        updated = sResultsService.getLeaderBoard(competition.getId(), 2);
+        Assert.assertEquals(hits + 1, cache.getHits());
+        verifySameLeaderBoard(competition.getId(), 2, updated);
+    }
+
+    /**
+     * Verifies the given leader board matches the one a full refresh
+     * generates from scratch, including the previous ranks.
+     *
+     * @param competitionID the competition ID
+     * @param rounds the number of rounds
+     * @param leaderBoard the leader board to verify
+     *
+     * @throws PersistenceException error during refresh
+     */
+    private void verifySameLeaderBoard(int competitionID, int rounds, List<EntrantResult> leaderBoard)
+        throws PersistenceException
+    {
+        sResultsService.repositoryUpdated();
+        List<EntrantResult> expected = sResultsService.getLeaderBoard(competitionID, rounds);
+        Assert.assertEquals(expected.toString(), leaderBoard.toString());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertEquals(expected.get(i).getPreviousRank(), leaderBoard.get(i).getPreviousRank());
+        }
+    }
 }